@@ -0,0 +1,155 @@
+package tech.gitpicard.jbasic.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import tech.gitpicard.jbasic.Diagnostics;
+import tech.gitpicard.jbasic.parser.Lexer;
+
+/**
+ * Builds the source code that the benchmarks are run over. Each corpus
+ * leans heavily on one part of the lexer so that a change to that part
+ * shows up clearly. The generated ones are made from a fixed seed, so
+ * every run sees exactly the same source code.
+ */
+final class Corpora {
+	static final String IDENTIFIERS = "identifiers";
+	static final String STRINGS = "strings";
+	static final String COMMENTS = "comments";
+	static final String NUMBERS = "numbers";
+	static final String ERRORS = "errors";
+	static final String PROGRAM = "program";
+	
+	private static final String[] SYLLABLES = {
+		"count", "total", "item", "price", "name", "index", "row", "col",
+		"value", "sum", "max", "min", "left", "right", "node", "list"
+	};
+	private static final String[] WORDS = {
+		"the", "report", "is", "built", "from", "every", "record", "in",
+		"table", "and", "then", "sorted", "by", "price", "before", "printing"
+	};
+	
+	private Corpora() {
+	}
+	
+	/**
+	 * Build a corpus that has at least the given number of tokens in it.
+	 * @param kind Which corpus to build.
+	 * @param tokens The number of tokens needed.
+	 * @return The source code.
+	 */
+	static String build(String kind, int tokens) {
+		StringBuilder source = new StringBuilder();
+		Random random = new Random(42);
+		String program = kind.equals(PROGRAM) ? resource("program.bas") : null;
+		while (true) {
+			// Add a good sized batch of lines between counting tokens.
+			for (int i = 0; i < 1000; i++) {
+				if (program != null) {
+					source.append(program);
+					break;
+				}
+				line(kind, random, source);
+				source.append('\n');
+			}
+			
+			String src = source.toString();
+			if (Lexer.tokenizeAll(kind, src, new Diagnostics()).size() > tokens)
+				return src;
+		}
+	}
+	
+	private static String resource(String name) {
+		try (InputStream in = Corpora.class.getResourceAsStream(name)) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private static String pick(String[] words, Random random) {
+		return words[random.nextInt(words.length)];
+	}
+	
+	private static void identifier(Random random, StringBuilder out) {
+		out.append(pick(SYLLABLES, random));
+		int parts = random.nextInt(3);
+		for (int i = 0; i < parts; i++) {
+			String part = pick(SYLLABLES, random);
+			out.append(Character.toUpperCase(part.charAt(0))).append(part, 1, part.length());
+		}
+		if (random.nextInt(4) == 0)
+			out.append('_').append(random.nextInt(100));
+	}
+	
+	private static void line(String kind, Random random, StringBuilder out) {
+		switch (kind) {
+		case IDENTIFIERS:
+			out.append("LET ");
+			identifier(random, out);
+			out.append(" = ");
+			identifier(random, out);
+			for (int i = random.nextInt(4); i >= 0; i--) {
+				out.append(random.nextBoolean() ? " + " : " * ");
+				identifier(random, out);
+				out.append('.');
+				identifier(random, out);
+			}
+			break;
+		case STRINGS:
+			out.append("CALL print(\"");
+			for (int i = random.nextInt(8) + 2; i >= 0; i--)
+				out.append(pick(WORDS, random)).append(' ');
+			out.append(random.nextInt(4) == 0 ? "\\t\\\"done\\\"\", \"" : "\", \"");
+			out.append(pick(WORDS, random)).append("\")");
+			break;
+		case COMMENTS:
+			if (random.nextInt(4) == 0)
+				out.append("LET x = x + 1 ");
+			out.append("'");
+			for (int i = random.nextInt(12) + 4; i >= 0; i--)
+				out.append(' ').append(pick(WORDS, random));
+			break;
+		case NUMBERS:
+			out.append("CALL row(");
+			for (int i = 0; i < 8; i++) {
+				if (i > 0)
+					out.append(", ");
+				if (random.nextBoolean())
+					out.append(random.nextInt(1000000));
+				else
+					out.append(random.nextInt(10000)).append('.').append(random.nextInt(100000));
+			}
+			out.append(')');
+			break;
+		case ERRORS:
+			// Every line has a mistake in it, along with some ordinary tokens.
+			out.append("LET ");
+			identifier(random, out);
+			switch (random.nextInt(5)) {
+			case 0:
+				out.append(" = { 1 }");
+				break;
+			case 1:
+				out.append(" = \"never closed");
+				break;
+			case 2:
+				out.append(" = \"bad \\q escape\"");
+				break;
+			case 3:
+				out.append(" = 99999999999999999999 + 1");
+				break;
+			default:
+				out.append(" # ~ 2");
+				break;
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("unknown corpus " + kind);
+		}
+	}
+}
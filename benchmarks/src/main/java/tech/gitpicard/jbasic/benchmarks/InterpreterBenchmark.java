@@ -0,0 +1,72 @@
+package tech.gitpicard.jbasic.benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tech.gitpicard.jbasic.SyntaxException;
+import tech.gitpicard.jbasic.interpreter.Interpreter;
+import tech.gitpicard.jbasic.parser.Parser;
+import tech.gitpicard.jbasic.parser.SyntaxTree;
+
+/**
+ * Measures how quickly the interpreter runs a loop that only does integer
+ * or only does real arithmetic on locals, which is where the specialized
+ * arithmetic nodes matter. The score is in loop iterations per second, and
+ * with -prof gc, gc.alloc.rate.norm should be close to zero.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterpreterBenchmark {
+	static final int ITERATIONS = 1000000;
+	
+	@Param({ "0", "0.0" })
+	public String zero;
+	
+	private SyntaxTree tree;
+	private Interpreter interpreter;
+	
+	@Setup
+	public void setup() throws SyntaxException {
+		String one = zero.equals("0") ? "1" : "1.0";
+		String source =
+				"FUNCTION loop(n)\n" +
+				"\tLET total = " + zero + "\n" +
+				"\tLET x = " + zero + "\n" +
+				"\tLET i = 0\n" +
+				"\tWHILE i < n DO\n" +
+				"\t\tLET total = total + x * " + one + "\n" +
+				"\t\tLET x = x + " + one + "\n" +
+				"\t\tLET i = i + 1\n" +
+				"\tEND\n" +
+				"\tRETURN total\n" +
+				"END\n" +
+				"LET result = loop(" + ITERATIONS + ")\n";
+		tree = new Parser().parse("loop", source);
+		interpreter = new Interpreter(new PrintStream(OutputStream.nullOutputStream()));
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(ITERATIONS)
+	public Object loop() throws SyntaxException {
+		interpreter.run(tree);
+		return interpreter.getGlobal("result");
+	}
+}
@@ -0,0 +1,106 @@
+package tech.gitpicard.jbasic.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import tech.gitpicard.jbasic.Diagnostics;
+import tech.gitpicard.jbasic.SyntaxException;
+import tech.gitpicard.jbasic.parser.Lexer;
+import tech.gitpicard.jbasic.parser.TokenBuffer;
+
+/**
+ * Measures how quickly Lexer.next() turns source code into tokens. Every
+ * invocation lexes exactly TOKENS tokens, so the score is in tokens per
+ * second and the allocation reported by the GC profiler (-prof gc) as
+ * gc.alloc.rate.norm is in bytes per token. The bytes counter gives the
+ * amount of source code lexed per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LexerBenchmark {
+	static final int TOKENS = 100000;
+	
+	/**
+	 * Counts the bytes of source code that were lexed, which JMH reports
+	 * as a rate alongside the score.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counters {
+		public long bytes;
+		
+		@Setup(Level.Iteration)
+		public void reset() {
+			bytes = 0;
+		}
+	}
+	
+	@Param({ Corpora.IDENTIFIERS, Corpora.STRINGS, Corpora.COMMENTS, Corpora.NUMBERS, Corpora.ERRORS, Corpora.PROGRAM })
+	public String corpus;
+	
+	private String source;
+	private long sourceBytes;
+	
+	@Setup
+	public void setup() {
+		source = Corpora.build(corpus, TOKENS);
+		
+		// Work out how much of the source the first TOKENS tokens cover.
+		TokenBuffer tokens = Lexer.tokenizeAll(corpus, source, new Diagnostics());
+		int end = tokens.getStart(TOKENS - 1) + tokens.getLength(TOKENS - 1);
+		sourceBytes = source.substring(0, end).getBytes(StandardCharsets.UTF_8).length;
+	}
+	
+	/**
+	 * Lex with syntax errors collected as diagnostics.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(TOKENS)
+	public void next(Counters counters, Blackhole bh) throws SyntaxException {
+		Lexer lexer = new Lexer(null, new Diagnostics());
+		lexer.start(corpus, source);
+		for (int i = 0; i < TOKENS; i++)
+			bh.consume(lexer.next());
+		counters.bytes += sourceBytes;
+	}
+	
+	/**
+	 * Lex with syntax errors thrown, catching each one and carrying on the
+	 * way a caller without diagnostics has to.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(TOKENS)
+	public void nextThrowing(Counters counters, Blackhole bh) {
+		Lexer lexer = new Lexer();
+		lexer.start(corpus, source);
+		for (int i = 0; i < TOKENS; i++) {
+			try {
+				bh.consume(lexer.next());
+			}
+			catch (SyntaxException e) {
+				bh.consume(e);
+			}
+		}
+		counters.bytes += sourceBytes;
+	}
+}
@@ -0,0 +1,74 @@
+package tech.gitpicard.jbasic.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tech.gitpicard.jbasic.SyntaxException;
+import tech.gitpicard.jbasic.parser.Parser;
+import tech.gitpicard.jbasic.parser.SyntaxTree;
+
+/**
+ * Measures how quickly Parser.parse() builds syntax trees, lexing included.
+ * Every invocation parses the program corpus, which is made of whole copies
+ * of the sample program, so the score is in corpora per second. The lines
+ * counter gives the number of lines parsed per second. The lazy runs skip
+ * the bodies of functions instead of building them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+	static final int TOKENS = 500000;
+	
+	/**
+	 * Counts the lines of source code that were parsed, which JMH reports
+	 * as a rate alongside the score.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counters {
+		public long lines;
+		
+		@Setup(Level.Iteration)
+		public void reset() {
+			lines = 0;
+		}
+	}
+	
+	@Param({ "false", "true" })
+	public boolean lazy;
+	
+	private String source;
+	private long sourceLines;
+	private Parser parser;
+	
+	@Setup
+	public void setup() {
+		source = Corpora.build(Corpora.PROGRAM, TOKENS);
+		sourceLines = source.chars().filter(c -> c == '\n').count();
+		parser = new Parser();
+		parser.setLazy(lazy);
+	}
+	
+	@Benchmark
+	public SyntaxTree parse(Counters counters) throws SyntaxException {
+		counters.lines += sourceLines;
+		return parser.parse(Corpora.PROGRAM, source);
+	}
+}
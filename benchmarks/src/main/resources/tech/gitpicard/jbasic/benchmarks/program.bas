@@ -0,0 +1,73 @@
+' A small inventory program, written the way a person would write one.
+' It is repeated to make up the "program" corpus.
+IMPORT "io"
+
+CLASS Item
+	PUBLIC name
+	PUBLIC price
+	PUBLIC quantity
+
+	FUNCTION init(itemName, itemPrice, itemQuantity)
+		LET SELF.name = itemName
+		LET SELF.price = itemPrice
+		LET SELF.quantity = itemQuantity
+	END
+
+	FUNCTION total()
+		RETURN SELF.price * SELF.quantity
+	END
+END
+
+CLASS Perishable EXTENDS Item
+	PRIVATE days
+
+	FUNCTION init(itemName, itemPrice, itemQuantity, shelfLife)
+		CALL SUPER.init(itemName, itemPrice, itemQuantity)
+		LET SELF.days = shelfLife
+	END
+
+	FUNCTION total()
+		' Anything close to going off is sold at half price.
+		IF SELF.days < 3 THEN
+			RETURN SUPER.total() / 2
+		ELSEIF SELF.days < 7 THEN
+			RETURN SUPER.total() * 0.75
+		ELSE
+			RETURN SUPER.total()
+		END
+	END
+END
+
+FUNCTION report(items)
+	LET sum = 0
+	LET count = 0
+	FOR item IN items DO
+		IF item = NULL THEN
+			CONTINUE
+		END
+		LET sum = sum + item.total()
+		LET count = count + 1
+		CALL io.print("item " + item.name + "\t" + item.total())
+	END
+
+	LET average = 0.0
+	IF count > 0 AND NOT sum = 0 THEN
+		LET average = sum / count
+	END
+	CALL io.print("total: " + sum + ", average: " + average)
+	RETURN sum
+END
+
+LET items = NEW list()
+CALL items.add(NEW Item("hammer", 12.5, 4))
+CALL items.add(NEW Item("nails", 0.02, 1500))
+CALL items.add(NEW Perishable("milk", 1.25, 30, 5))
+CALL items.add(NEW Perishable("bread", 2.10, 12, 2))
+
+LET remaining = 10
+WHILE remaining > 0 OR FALSE DO
+	LET remaining = remaining - 1
+	IF report(items) > 1000 THEN
+		BREAK
+	END
+END
@@ -0,0 +1,163 @@
+package tech.gitpicard.jbasic;
+
+import java.util.Arrays;
+
+import tech.gitpicard.jbasic.parser.SourceFile;
+
+/**
+ * Collects syntax errors instead of having them thrown. Handing one of
+ * these to the lexer lets it keep going past every error in the source code
+ * without the cost of building an exception for each of them. The errors
+ * are stored in parallel arrays in the order they were reported, and can be
+ * turned into SyntaxException objects later if they are needed.
+ */
+public final class Diagnostics {
+	private String[] sourceNames;
+	private SourceFile[] sources;
+	private String[] messages;
+	private int[] lines;
+	private int[] columns;
+	private int count;
+	
+	/**
+	 * Create an empty collection of diagnostics.
+	 */
+	public Diagnostics() {
+		sourceNames = new String[8];
+		sources = new SourceFile[8];
+		messages = new String[8];
+		lines = new int[8];
+		columns = new int[8];
+		count = 0;
+	}
+	
+	/**
+	 * Record a syntax error.
+	 * @param name The name of the unit of source code the error is in.
+	 * @param message What went wrong.
+	 * @param ln The line the error is on.
+	 * @param col The column the error is in.
+	 */
+	public void report(String name, String message, int ln, int col) {
+		report(name, null, message, ln, col);
+	}
+	
+	/**
+	 * Record a syntax error in a source file, which lets the exception made
+	 * for it show the line that it is on.
+	 * @param file The source file the error is in.
+	 * @param message What went wrong.
+	 * @param ln The line the error is on.
+	 * @param col The column the error is in.
+	 */
+	public void report(SourceFile file, String message, int ln, int col) {
+		report(file.getName(), file, message, ln, col);
+	}
+	
+	private void report(String name, SourceFile file, String message, int ln, int col) {
+		if (count == messages.length) {
+			int capacity = count * 2;
+			sourceNames = Arrays.copyOf(sourceNames, capacity);
+			sources = Arrays.copyOf(sources, capacity);
+			messages = Arrays.copyOf(messages, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+			columns = Arrays.copyOf(columns, capacity);
+		}
+		
+		sourceNames[count] = name;
+		sources[count] = file;
+		messages[count] = message;
+		lines[count] = ln;
+		columns[count] = col;
+		count++;
+	}
+	
+	private int index(int i) {
+		if (i < 0 || i >= count)
+			throw new IndexOutOfBoundsException(i);
+		return i;
+	}
+	
+	/**
+	 * Get the number of errors that have been reported.
+	 * @return The number of errors.
+	 */
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Have any errors been reported?
+	 * @return True if there are no errors.
+	 */
+	public boolean isEmpty() {
+		return count == 0;
+	}
+	
+	/**
+	 * Get the name of the unit of source code that an error is in.
+	 * @param i The index of the error.
+	 * @return The name of the source code.
+	 */
+	public String getSourceName(int i) {
+		return sourceNames[index(i)];
+	}
+	
+	/**
+	 * Get the source file that an error is in.
+	 * @param i The index of the error.
+	 * @return The source file or null if only its name was reported.
+	 */
+	public SourceFile getSourceFile(int i) {
+		return sources[index(i)];
+	}
+	
+	/**
+	 * Get the message describing an error.
+	 * @param i The index of the error.
+	 * @return The message.
+	 */
+	public String getMessage(int i) {
+		return messages[index(i)];
+	}
+	
+	/**
+	 * Get the line that an error is on.
+	 * @param i The index of the error.
+	 * @return The line counting from one.
+	 */
+	public int getSourceLine(int i) {
+		return lines[index(i)];
+	}
+	
+	/**
+	 * Get the column that an error is in.
+	 * @param i The index of the error.
+	 * @return The column counting from one.
+	 */
+	public int getSourceColumn(int i) {
+		return columns[index(i)];
+	}
+	
+	/**
+	 * Make an exception for an error. The exception has no stack trace.
+	 * @param i The index of the error.
+	 * @return The exception.
+	 */
+	public SyntaxException toException(int i) {
+		int index = index(i);
+		if (sources[index] != null)
+			return new SyntaxException(sources[index], messages[index], lines[index], columns[index], false);
+		return new SyntaxException(sourceNames[index], messages[index], lines[index], columns[index], false);
+	}
+	
+	/**
+	 * Forget every error that has been reported.
+	 */
+	public void clear() {
+		Arrays.fill(sourceNames, 0, count, null);
+		Arrays.fill(sources, 0, count, null);
+		Arrays.fill(messages, 0, count, null);
+		count = 0;
+	}
+}
@@ -0,0 +1,44 @@
+package tech.gitpicard.jbasic;
+
+import tech.gitpicard.jbasic.parser.SourceFile;
+
+/**
+ * An error that stops a program while it is running, such as adding a number
+ * to NULL or calling a method that doesn't exist. It points at the node that
+ * went wrong the same way that a SyntaxException points at a token.
+ */
+public class InterpreterException extends RuntimeException {
+	private String fileName;
+	private int line;
+	private int column;
+	private transient SourceFile source;
+	
+	public InterpreterException(SourceFile file, String message, int ln, int col) {
+		// The stack trace would only point into the interpreter.
+		super(message, null, false, false);
+		
+		fileName = file.getName();
+		line = ln;
+		column = col;
+		source = file;
+	}
+	
+	public String getSourceName() {
+		return fileName;
+	}
+	
+	public int getSourceLine() {
+		return line;
+	}
+	
+	public int getSourceColumn() {
+		return column;
+	}
+	
+	public SourceFile getSourceFile() {
+		return source;
+	}
+	
+	private static final long serialVersionUID = 5129408372650147727L;
+
+}
@@ -1,9 +1,12 @@
 package tech.gitpicard.jbasic;
 
+import tech.gitpicard.jbasic.parser.SourceFile;
+
 public class SyntaxException extends Exception {
 	private String fileName;
 	private int line;
 	private int column;
+	private transient SourceFile source;
 	
 	public SyntaxException(String name, String message, int ln, int col) {
 		super(message);
@@ -13,6 +16,22 @@ public class SyntaxException extends Exception {
 		column = col;
 	}
 	
+	public SyntaxException(String name, String message, int ln, int col, boolean stackTrace) {
+		// Filling in the stack trace costs far more than the rest of the exception,
+		// and it only ever points into the lexer or parser anyway.
+		super(message, null, false, stackTrace);
+		
+		fileName = name;
+		line = ln;
+		column = col;
+	}
+	
+	public SyntaxException(SourceFile file, String message, int ln, int col, boolean stackTrace) {
+		this(file.getName(), message, ln, col, stackTrace);
+		
+		source = file;
+	}
+	
 	public String getSourceName() {
 		return fileName;
 	}
@@ -25,6 +44,27 @@ public class SyntaxException extends Exception {
 		return column;
 	}
 	
+	public SourceFile getSourceFile() {
+		return source;
+	}
+	
+	/**
+	 * Get the line that the error is on with a caret under the column, for
+	 * showing along with the message.
+	 * @return The snippet or null if the text of the source code isn't known.
+	 */
+	public String getSnippet() {
+		String text = source == null ? null : source.getLineText(line);
+		if (text == null)
+			return null;
+		
+		// Keep the tabs so that the caret lines up however they are shown.
+		StringBuilder snippet = new StringBuilder(text).append('\n');
+		for (int i = 0; i < column - 1 && i < text.length(); i++)
+			snippet.append(text.charAt(i) == '\t' ? '\t' : ' ');
+		return snippet.append('^').toString();
+	}
+	
 	private static final long serialVersionUID = -8952661043245572315L;
 
 }
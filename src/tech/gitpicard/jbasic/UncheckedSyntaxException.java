@@ -0,0 +1,19 @@
+package tech.gitpicard.jbasic;
+
+/**
+ * Wraps a SyntaxException so that it can be thrown from places that can't
+ * throw checked exceptions, such as a stream of tokens.
+ */
+public class UncheckedSyntaxException extends RuntimeException {
+	public UncheckedSyntaxException(SyntaxException cause) {
+		super(cause.getMessage(), cause, false, false);
+	}
+	
+	@Override
+	public SyntaxException getCause() {
+		return (SyntaxException)super.getCause();
+	}
+	
+	private static final long serialVersionUID = 3318842730167740916L;
+
+}
@@ -0,0 +1,209 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import tech.gitpicard.jbasic.parser.SyntaxTree;
+import tech.gitpicard.jbasic.parser.TokenType;
+
+/**
+ * PLUS, MINUS, STAR or SLASH. The node specializes itself to the types of
+ * the operands it sees the first time it runs. Specialized to integers or
+ * reals, it asks its operands for unboxed values with evaluateLong() or
+ * evaluateDouble() and does the arithmetic on those directly, so nested
+ * arithmetic and LET never box the values in between. Most arithmetic in a
+ * program only ever sees one pair of types, so it never has to work out
+ * which kind of arithmetic to do again. If the types ever change, the node
+ * goes back to handling any types, and stays that way so that it doesn't
+ * keep changing its mind.
+ */
+final class ArithmeticNode extends Expression {
+	private static final int UNINITIALIZED = 0;
+	private static final int INT = 1;
+	private static final int REAL = 2;
+	private static final int STRING = 3;
+	private static final int GENERIC = 4;
+	
+	private final TokenType operator;
+	private final Expression left;
+	private final Expression right;
+	private int state;
+	
+	ArithmeticNode(SyntaxTree t, int node, TokenType op, Expression l, Expression r) {
+		super(t, node);
+		operator = op;
+		left = l;
+		right = r;
+		state = UNINITIALIZED;
+	}
+	
+	@Override
+	Object evaluate(Frame frame) {
+		switch (state) {
+		case INT:
+			try {
+				return evaluateLong(frame);
+			}
+			catch (UnexpectedTypeException e) {
+				return e.getValue();
+			}
+		case REAL:
+			try {
+				return evaluateDouble(frame);
+			}
+			catch (UnexpectedTypeException e) {
+				return e.getValue();
+			}
+		case STRING: {
+			Object a = left.evaluate(frame);
+			Object b = right.evaluate(frame);
+			if (a instanceof String && b instanceof String)
+				return ((String)a).concat((String)b);
+			return generalize(a, b);
+		}
+		case GENERIC:
+			return generic(left.evaluate(frame), right.evaluate(frame));
+		default:
+			return specialize(left.evaluate(frame), right.evaluate(frame));
+		}
+	}
+	
+	@Override
+	long evaluateLong(Frame frame) throws UnexpectedTypeException {
+		if (state != INT)
+			return super.evaluateLong(frame);
+		
+		long a;
+		try {
+			a = left.evaluateLong(frame);
+		}
+		catch (UnexpectedTypeException e) {
+			return expectLong(generalize(e.getValue(), right.evaluate(frame)));
+		}
+		long b;
+		try {
+			b = right.evaluateLong(frame);
+		}
+		catch (UnexpectedTypeException e) {
+			return expectLong(generalize(a, e.getValue()));
+		}
+		return integer(a, b);
+	}
+	
+	@Override
+	double evaluateDouble(Frame frame) throws UnexpectedTypeException {
+		if (state != REAL)
+			return super.evaluateDouble(frame);
+		
+		double a;
+		try {
+			a = left.evaluateDouble(frame);
+		}
+		catch (UnexpectedTypeException e) {
+			return expectDouble(generalize(e.getValue(), right.evaluate(frame)));
+		}
+		double b;
+		try {
+			b = right.evaluateDouble(frame);
+		}
+		catch (UnexpectedTypeException e) {
+			return expectDouble(generalize(a, e.getValue()));
+		}
+		return real(a, b);
+	}
+	
+	private static long expectLong(Object value) throws UnexpectedTypeException {
+		if (value instanceof Long)
+			return (Long)value;
+		throw new UnexpectedTypeException(value);
+	}
+	
+	private static double expectDouble(Object value) throws UnexpectedTypeException {
+		if (value instanceof Double)
+			return (Double)value;
+		throw new UnexpectedTypeException(value);
+	}
+	
+	/**
+	 * The operands aren't the types that the node specialized to, so handle
+	 * any types from now on.
+	 */
+	private Object generalize(Object a, Object b) {
+		state = GENERIC;
+		return generic(a, b);
+	}
+	
+	/**
+	 * Choose what to specialize to from the first operands the node sees.
+	 */
+	private Object specialize(Object a, Object b) {
+		if (a instanceof Long && b instanceof Long)
+			state = INT;
+		else if (a instanceof Double && b instanceof Double)
+			state = REAL;
+		else if (a instanceof String && b instanceof String && operator == TokenType.PLUS)
+			state = STRING;
+		else
+			state = GENERIC;
+		return generic(a, b);
+	}
+	
+	private long integer(long a, long b) {
+		try {
+			switch (operator) {
+			case PLUS:
+				return Math.addExact(a, b);
+			case MINUS:
+				return Math.subtractExact(a, b);
+			case STAR:
+				return Math.multiplyExact(a, b);
+			default:
+				if (b == 0)
+					throw error("division by zero");
+				return a / b;
+			}
+		}
+		catch (ArithmeticException e) {
+			throw error("integer overflow");
+		}
+	}
+	
+	private double real(double a, double b) {
+		switch (operator) {
+		case PLUS:
+			return a + b;
+		case MINUS:
+			return a - b;
+		case STAR:
+			return a * b;
+		default:
+			return a / b;
+		}
+	}
+	
+	/**
+	 * Do the arithmetic for any types of operand.
+	 */
+	private Object generic(Object a, Object b) {
+		if (a instanceof Long && b instanceof Long)
+			return integer((Long)a, (Long)b);
+		if (a instanceof Number && b instanceof Number)
+			return real(((Number)a).doubleValue(), ((Number)b).doubleValue());
+		if (operator == TokenType.PLUS && (a instanceof String || b instanceof String))
+			return Values.toString(a).concat(Values.toString(b));
+		
+		String verb;
+		switch (operator) {
+		case PLUS:
+			verb = "add";
+			break;
+		case MINUS:
+			verb = "subtract";
+			break;
+		case STAR:
+			verb = "multiply";
+			break;
+		default:
+			verb = "divide";
+			break;
+		}
+		throw error("can't " + verb + " " + Values.typeName(a) + " and " + Values.typeName(b));
+	}
+}
@@ -0,0 +1,61 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import java.util.HashMap;
+
+/**
+ * A class that a program declared.
+ */
+final class BasicClass {
+	private final String name;
+	private final BasicClass superclass;
+	// Field initial values are worked out in the frame the class was declared in.
+	private final Frame frame;
+	private final String[] fields;
+	private final Expression[] values;
+	private final HashMap<String, Closure> methods;
+	
+	BasicClass(String n, BasicClass s, Frame f, String[] names, Expression[] vals) {
+		name = n;
+		superclass = s;
+		frame = f;
+		fields = names;
+		values = vals;
+		methods = new HashMap<>();
+	}
+	
+	void addMethod(FunctionCode code) {
+		methods.put(code.getName(), new Closure(code, frame, this));
+	}
+	
+	String getName() {
+		return name;
+	}
+	
+	BasicClass getSuperclass() {
+		return superclass;
+	}
+	
+	/**
+	 * Find a method in the class or the classes it extends.
+	 * @return The method or null if there isn't one.
+	 */
+	Closure findMethod(String method) {
+		for (BasicClass c = this; c != null; c = c.superclass) {
+			Closure closure = c.methods.get(method);
+			if (closure != null)
+				return closure;
+		}
+		return null;
+	}
+	
+	/**
+	 * Give the fields of a new object their initial values, starting with the
+	 * fields of the classes this one extends.
+	 */
+	void initialize(BasicObject object) {
+		if (superclass != null)
+			superclass.initialize(object);
+		for (int i = 0; i < fields.length; i++)
+			object.setField(fields[i], values[i] == null ? null : values[i].evaluate(frame));
+	}
+}
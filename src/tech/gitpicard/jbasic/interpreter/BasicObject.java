@@ -0,0 +1,32 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import java.util.HashMap;
+
+/**
+ * An object made from a class that a program declared.
+ */
+final class BasicObject {
+	private final BasicClass basicClass;
+	private final HashMap<String, Object> fields;
+	
+	BasicObject(BasicClass c) {
+		basicClass = c;
+		fields = new HashMap<>();
+	}
+	
+	BasicClass getBasicClass() {
+		return basicClass;
+	}
+	
+	boolean hasField(String name) {
+		return fields.containsKey(name);
+	}
+	
+	Object getField(String name) {
+		return fields.get(name);
+	}
+	
+	void setField(String name, Object value) {
+		fields.put(name, value);
+	}
+}
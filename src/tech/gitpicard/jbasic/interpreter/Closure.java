@@ -0,0 +1,48 @@
+package tech.gitpicard.jbasic.interpreter;
+
+/**
+ * A function as a value, along with the frame that it was declared in so that
+ * it can get at the locals of the functions around it.
+ */
+final class Closure {
+	private final FunctionCode code;
+	private final Frame frame;
+	// The class the function is a method of, or null.
+	private final BasicClass owner;
+	
+	Closure(FunctionCode c, Frame f, BasicClass o) {
+		code = c;
+		frame = f;
+		owner = o;
+	}
+	
+	String getName() {
+		return code.getName();
+	}
+	
+	/**
+	 * Call the function.
+	 * @param self The object a method is called on. Other functions keep the
+	 * SELF of the method they were declared in, if there is one.
+	 * @param args The arguments.
+	 * @param site The node making the call, for errors.
+	 * @return The value that the function returned, or null.
+	 */
+	Object call(BasicObject self, Object[] args, Node site) {
+		int count = code.getParameterCount();
+		if (args.length != count) {
+			throw site.error(code.getName() + " takes " + count + (count == 1 ? " argument" : " arguments") +
+					" but was given " + args.length);
+		}
+		
+		Frame callee;
+		if (owner != null)
+			callee = new Frame(code.getFrameSize(), frame, self, owner);
+		else
+			callee = new Frame(code.getFrameSize(), frame, frame.self, frame.owner);
+		for (int i = 0; i < count; i++)
+			callee.set(i, args[i]);
+		code.getBody().execute(callee);
+		return callee.result;
+	}
+}
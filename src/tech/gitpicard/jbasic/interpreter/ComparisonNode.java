@@ -0,0 +1,144 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import tech.gitpicard.jbasic.parser.SyntaxTree;
+import tech.gitpicard.jbasic.parser.TokenType;
+
+/**
+ * LESS_THAN, GREATER_THAN or EQUALS, which specializes itself to the types
+ * of its operands the same way that ArithmeticNode does. The result is only
+ * boxed when something other than a condition asks for it.
+ */
+final class ComparisonNode extends Expression {
+	private static final int UNINITIALIZED = 0;
+	private static final int INT = 1;
+	private static final int REAL = 2;
+	private static final int STRING = 3;
+	private static final int GENERIC = 4;
+	
+	private final TokenType operator;
+	private final Expression left;
+	private final Expression right;
+	private int state;
+	
+	ComparisonNode(SyntaxTree t, int node, TokenType op, Expression l, Expression r) {
+		super(t, node);
+		operator = op;
+		left = l;
+		right = r;
+		state = UNINITIALIZED;
+	}
+	
+	@Override
+	Object evaluate(Frame frame) {
+		return test(frame);
+	}
+	
+	@Override
+	boolean test(Frame frame) {
+		switch (state) {
+		case INT: {
+			long a;
+			try {
+				a = left.evaluateLong(frame);
+			}
+			catch (UnexpectedTypeException e) {
+				return generalize(e.getValue(), right.evaluate(frame));
+			}
+			long b;
+			try {
+				b = right.evaluateLong(frame);
+			}
+			catch (UnexpectedTypeException e) {
+				return generalize(a, e.getValue());
+			}
+			return compare(Long.compare(a, b));
+		}
+		case REAL: {
+			double a;
+			try {
+				a = left.evaluateDouble(frame);
+			}
+			catch (UnexpectedTypeException e) {
+				return generalize(e.getValue(), right.evaluate(frame));
+			}
+			double b;
+			try {
+				b = right.evaluateDouble(frame);
+			}
+			catch (UnexpectedTypeException e) {
+				return generalize(a, e.getValue());
+			}
+			// Compared this way, NaN is neither equal to nor less or more than
+			// anything.
+			return operator == TokenType.EQUALS ? a == b : operator == TokenType.LESS_THAN ? a < b : a > b;
+		}
+		case STRING: {
+			Object a = left.evaluate(frame);
+			Object b = right.evaluate(frame);
+			if (a instanceof String && b instanceof String)
+				return operator == TokenType.EQUALS ? a.equals(b) : compare(((String)a).compareTo((String)b));
+			return generalize(a, b);
+		}
+		case GENERIC:
+			return generic(left.evaluate(frame), right.evaluate(frame));
+		default:
+			return specialize(left.evaluate(frame), right.evaluate(frame));
+		}
+	}
+	
+	/**
+	 * The operands aren't the types that the node specialized to, so handle
+	 * any types from now on.
+	 */
+	private boolean generalize(Object a, Object b) {
+		state = GENERIC;
+		return generic(a, b);
+	}
+	
+	/**
+	 * Choose what to specialize to from the first operands the node sees.
+	 */
+	private boolean specialize(Object a, Object b) {
+		if (a instanceof Long && b instanceof Long)
+			state = INT;
+		else if (a instanceof Double && b instanceof Double)
+			state = REAL;
+		else if (a instanceof String && b instanceof String)
+			state = STRING;
+		else
+			state = GENERIC;
+		return generic(a, b);
+	}
+	
+	/**
+	 * Turn the result of a compareTo() into the result of the comparison.
+	 */
+	private boolean compare(int order) {
+		switch (operator) {
+		case LESS_THAN:
+			return order < 0;
+		case GREATER_THAN:
+			return order > 0;
+		default:
+			return order == 0;
+		}
+	}
+	
+	/**
+	 * Compare any types of operand.
+	 */
+	private boolean generic(Object a, Object b) {
+		if (operator == TokenType.EQUALS)
+			return Values.equal(a, b);
+		if (a instanceof Long && b instanceof Long)
+			return compare(Long.compare((Long)a, (Long)b));
+		if (a instanceof Number && b instanceof Number) {
+			double x = ((Number)a).doubleValue();
+			double y = ((Number)b).doubleValue();
+			return operator == TokenType.LESS_THAN ? x < y : x > y;
+		}
+		if (a instanceof String && b instanceof String)
+			return compare(((String)a).compareTo((String)b));
+		throw error("can't compare " + Values.typeName(a) + " and " + Values.typeName(b));
+	}
+}
@@ -0,0 +1,55 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import tech.gitpicard.jbasic.parser.SyntaxTree;
+
+/**
+ * A node that works out a value. Values are Long for integers, Double for
+ * reals, String, Boolean, null for NULL or one of the interpreter's own
+ * kinds of object.
+ */
+abstract class Expression extends Node {
+	Expression(SyntaxTree t, int node) {
+		super(t, node);
+	}
+	
+	/**
+	 * Work out the value of the expression.
+	 * @param frame The frame of the function that is running.
+	 * @return The value.
+	 */
+	abstract Object evaluate(Frame frame);
+	
+	/**
+	 * Work out the value of an expression that is expected to be an integer,
+	 * without boxing it if the node can help it.
+	 * @throws UnexpectedTypeException When the value isn't an integer.
+	 */
+	long evaluateLong(Frame frame) throws UnexpectedTypeException {
+		Object value = evaluate(frame);
+		if (value instanceof Long)
+			return (Long)value;
+		throw new UnexpectedTypeException(value);
+	}
+	
+	/**
+	 * Work out the value of an expression that is expected to be a real,
+	 * without boxing it if the node can help it.
+	 * @throws UnexpectedTypeException When the value isn't a real.
+	 */
+	double evaluateDouble(Frame frame) throws UnexpectedTypeException {
+		Object value = evaluate(frame);
+		if (value instanceof Double)
+			return (Double)value;
+		throw new UnexpectedTypeException(value);
+	}
+	
+	/**
+	 * Work out the value of an expression that has to be TRUE or FALSE.
+	 */
+	boolean test(Frame frame) {
+		Object value = evaluate(frame);
+		if (value instanceof Boolean)
+			return (Boolean)value;
+		throw error("expected TRUE or FALSE but got " + Values.typeName(value));
+	}
+}
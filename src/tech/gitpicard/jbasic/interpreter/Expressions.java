@@ -0,0 +1,415 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import tech.gitpicard.jbasic.parser.SyntaxTree;
+import tech.gitpicard.jbasic.parser.TokenType;
+
+/**
+ * The nodes for every kind of expression except arithmetic and comparisons,
+ * which have classes of their own.
+ */
+final class Expressions {
+	private Expressions() {
+	}
+	
+	/**
+	 * What a global holds before anything has been put in it.
+	 */
+	static final Object UNDEFINED = new Object();
+	
+	static Object[] arguments(Expression[] args, Frame frame) {
+		Object[] values = new Object[args.length];
+		for (int i = 0; i < args.length; i++)
+			values[i] = args[i].evaluate(frame);
+		return values;
+	}
+	
+	static final class Literal extends Expression {
+		private final Object value;
+		
+		Literal(SyntaxTree t, int node, Object v) {
+			super(t, node);
+			value = v;
+		}
+		
+		@Override
+		Object evaluate(Frame frame) {
+			return value;
+		}
+		
+		@Override
+		long evaluateLong(Frame frame) throws UnexpectedTypeException {
+			if (value instanceof Long)
+				return (Long)value;
+			throw new UnexpectedTypeException(value);
+		}
+		
+		@Override
+		double evaluateDouble(Frame frame) throws UnexpectedTypeException {
+			if (value instanceof Double)
+				return (Double)value;
+			throw new UnexpectedTypeException(value);
+		}
+	}
+	
+	/**
+	 * A name that can be given a value as well as read.
+	 */
+	abstract static class Variable extends Expression {
+		Variable(SyntaxTree t, int node) {
+			super(t, node);
+		}
+		
+		abstract void assign(Frame frame, Object value);
+		
+		void assignLong(Frame frame, long value) {
+			assign(frame, value);
+		}
+		
+		void assignDouble(Frame frame, double value) {
+			assign(frame, value);
+		}
+	}
+	
+	/**
+	 * A local of the function that is running.
+	 */
+	static final class Local extends Variable {
+		private final int slot;
+		
+		Local(SyntaxTree t, int node, int s) {
+			super(t, node);
+			slot = s;
+		}
+		
+		@Override
+		Object evaluate(Frame frame) {
+			return frame.get(slot);
+		}
+		
+		@Override
+		long evaluateLong(Frame frame) throws UnexpectedTypeException {
+			return frame.getLong(slot);
+		}
+		
+		@Override
+		double evaluateDouble(Frame frame) throws UnexpectedTypeException {
+			return frame.getDouble(slot);
+		}
+		
+		@Override
+		void assign(Frame frame, Object value) {
+			frame.set(slot, value);
+		}
+		
+		@Override
+		void assignLong(Frame frame, long value) {
+			frame.setLong(slot, value);
+		}
+		
+		@Override
+		void assignDouble(Frame frame, double value) {
+			frame.setDouble(slot, value);
+		}
+	}
+	
+	/**
+	 * A local of one of the functions around the one that is running.
+	 */
+	static final class Outer extends Variable {
+		private final int depth;
+		private final int slot;
+		
+		Outer(SyntaxTree t, int node, int d, int s) {
+			super(t, node);
+			depth = d;
+			slot = s;
+		}
+		
+		@Override
+		Object evaluate(Frame frame) {
+			return frame.outer(depth).get(slot);
+		}
+		
+		@Override
+		long evaluateLong(Frame frame) throws UnexpectedTypeException {
+			return frame.outer(depth).getLong(slot);
+		}
+		
+		@Override
+		double evaluateDouble(Frame frame) throws UnexpectedTypeException {
+			return frame.outer(depth).getDouble(slot);
+		}
+		
+		@Override
+		void assign(Frame frame, Object value) {
+			frame.outer(depth).set(slot, value);
+		}
+		
+		@Override
+		void assignLong(Frame frame, long value) {
+			frame.outer(depth).setLong(slot, value);
+		}
+		
+		@Override
+		void assignDouble(Frame frame, double value) {
+			frame.outer(depth).setDouble(slot, value);
+		}
+	}
+	
+	static final class Global extends Variable {
+		private final Object[] globals;
+		private final int index;
+		private final String name;
+		
+		Global(SyntaxTree t, int node, Object[] g, int i, String n) {
+			super(t, node);
+			globals = g;
+			index = i;
+			name = n;
+		}
+		
+		@Override
+		Object evaluate(Frame frame) {
+			Object value = globals[index];
+			if (value == UNDEFINED)
+				throw error(name + " is not defined");
+			return value;
+		}
+		
+		@Override
+		void assign(Frame frame, Object value) {
+			globals[index] = value;
+		}
+	}
+	
+	static final class Self extends Expression {
+		Self(SyntaxTree t, int node) {
+			super(t, node);
+		}
+		
+		@Override
+		Object evaluate(Frame frame) {
+			return frame.self;
+		}
+	}
+	
+	/**
+	 * SUPER anywhere other than before the name of a method being called.
+	 */
+	static final class Super extends Expression {
+		Super(SyntaxTree t, int node) {
+			super(t, node);
+		}
+		
+		@Override
+		Object evaluate(Frame frame) {
+			throw error("SUPER can only be used to call a method");
+		}
+	}
+	
+	static final class Negate extends Expression {
+		private final Expression operand;
+		
+		Negate(SyntaxTree t, int node, Expression o) {
+			super(t, node);
+			operand = o;
+		}
+		
+		@Override
+		Object evaluate(Frame frame) {
+			Object value = operand.evaluate(frame);
+			if (value instanceof Long) {
+				long n = (Long)value;
+				if (n == Long.MIN_VALUE)
+					throw error("integer overflow");
+				return -n;
+			}
+			if (value instanceof Double)
+				return -(Double)value;
+			throw error("can't negate " + Values.typeName(value));
+		}
+	}
+	
+	static final class Not extends Expression {
+		private final Expression operand;
+		
+		Not(SyntaxTree t, int node, Expression o) {
+			super(t, node);
+			operand = o;
+		}
+		
+		@Override
+		Object evaluate(Frame frame) {
+			return !operand.test(frame);
+		}
+		
+		@Override
+		boolean test(Frame frame) {
+			return !operand.test(frame);
+		}
+	}
+	
+	/**
+	 * AND or OR, which only works out the right operand if it has to.
+	 */
+	static final class Logical extends Expression {
+		private final boolean and;
+		private final Expression left;
+		private final Expression right;
+		
+		Logical(SyntaxTree t, int node, TokenType op, Expression l, Expression r) {
+			super(t, node);
+			and = op == TokenType.AND;
+			left = l;
+			right = r;
+		}
+		
+		@Override
+		Object evaluate(Frame frame) {
+			return test(frame);
+		}
+		
+		@Override
+		boolean test(Frame frame) {
+			if (and)
+				return left.test(frame) && right.test(frame);
+			return left.test(frame) || right.test(frame);
+		}
+	}
+	
+	static final class Member extends Expression {
+		private final Expression object;
+		private final String name;
+		
+		Member(SyntaxTree t, int node, Expression o, String n) {
+			super(t, node);
+			object = o;
+			name = n;
+		}
+		
+		@Override
+		Object evaluate(Frame frame) {
+			Object value = object.evaluate(frame);
+			if (value instanceof BasicObject) {
+				BasicObject o = (BasicObject)value;
+				Object field = o.getField(name);
+				if (field != null || o.hasField(name))
+					return field;
+			}
+			throw error(Values.typeName(value) + " has no field " + name);
+		}
+	}
+	
+	/**
+	 * A call to a function that isn't a method.
+	 */
+	static final class Call extends Expression {
+		private final Expression function;
+		private final Expression[] args;
+		
+		Call(SyntaxTree t, int node, Expression f, Expression[] a) {
+			super(t, node);
+			function = f;
+			args = a;
+		}
+		
+		@Override
+		Object evaluate(Frame frame) {
+			Object value = function.evaluate(frame);
+			if (!(value instanceof Closure))
+				throw error("can't call " + Values.typeName(value));
+			return ((Closure)value).call(null, arguments(args, frame), this);
+		}
+	}
+	
+	/**
+	 * A call to a method, or to a function kept in a field. The node remembers
+	 * the last class it found a method in, and the method it found, since the
+	 * objects that one call meets are nearly always of the same class.
+	 */
+	static final class MethodCall extends Expression {
+		// Null for a method of SUPER.
+		private final Expression object;
+		private final String name;
+		private final Expression[] args;
+		private BasicClass cachedClass;
+		private Closure cachedMethod;
+		
+		MethodCall(SyntaxTree t, int node, Expression o, String n, Expression[] a) {
+			super(t, node);
+			object = o;
+			name = n;
+			args = a;
+		}
+		
+		@Override
+		Object evaluate(Frame frame) {
+			if (object == null)
+				return callSuper(frame);
+			
+			Object receiver = object.evaluate(frame);
+			if (receiver instanceof BasicObject) {
+				BasicObject o = (BasicObject)receiver;
+				BasicClass c = o.getBasicClass();
+				Closure method = cachedMethod;
+				if (c != cachedClass) {
+					method = c.findMethod(name);
+					if (method != null) {
+						cachedClass = c;
+						cachedMethod = method;
+					}
+				}
+				if (method != null)
+					return method.call(o, arguments(args, frame), this);
+				
+				Object field = o.getField(name);
+				if (field instanceof Closure)
+					return ((Closure)field).call(null, arguments(args, frame), this);
+				throw error(Values.typeName(receiver) + " has no method " + name);
+			}
+			if (receiver instanceof HostObject)
+				return ((HostObject)receiver).invoke(name, arguments(args, frame), this);
+			throw error("can't call a method of " + Values.typeName(receiver));
+		}
+		
+		private Object callSuper(Frame frame) {
+			BasicClass superclass = frame.owner.getSuperclass();
+			if (superclass == null)
+				throw error(frame.owner.getName() + " doesn't extend a class");
+			Closure method = superclass.findMethod(name);
+			if (method == null)
+				throw error(superclass.getName() + " has no method " + name);
+			return method.call(frame.self, arguments(args, frame), this);
+		}
+	}
+	
+	static final class New extends Expression {
+		private final Expression basicClass;
+		private final Expression[] args;
+		
+		New(SyntaxTree t, int node, Expression c, Expression[] a) {
+			super(t, node);
+			basicClass = c;
+			args = a;
+		}
+		
+		@Override
+		Object evaluate(Frame frame) {
+			Object value = basicClass.evaluate(frame);
+			if (value instanceof HostClass)
+				return ((HostClass)value).construct(arguments(args, frame), this);
+			if (!(value instanceof BasicClass))
+				throw error("can't make an object from " + Values.typeName(value));
+			
+			BasicClass c = (BasicClass)value;
+			BasicObject object = new BasicObject(c);
+			c.initialize(object);
+			Closure init = c.findMethod("init");
+			if (init != null)
+				init.call(object, arguments(args, frame), this);
+			else if (args.length > 0)
+				throw error(c.getName() + " has no init method to take arguments");
+			return object;
+		}
+	}
+}
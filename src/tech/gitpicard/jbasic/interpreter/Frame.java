@@ -0,0 +1,86 @@
+package tech.gitpicard.jbasic.interpreter;
+
+/**
+ * The locals of one call to a function, in the slots that the resolver gave
+ * them. A frame links to the frame of the function that the called function
+ * was declared in, which is where the locals of the functions around it are.
+ *
+ * Integers and reals are kept unboxed in a second array, with a marker in
+ * the slot itself saying which of the two it is, so that arithmetic on
+ * locals doesn't make a new Long or Double every time it stores its result.
+ */
+final class Frame {
+	private static final Object[] EMPTY = new Object[0];
+	private static final long[] EMPTY_PRIMITIVES = new long[0];
+	// Markers for a slot whose value is in primitives.
+	private static final Object LONG = new Object();
+	private static final Object DOUBLE = new Object();
+	
+	private final Object[] slots;
+	private final long[] primitives;
+	final Frame parent;
+	// The object that SELF is and the class whose method is running, or null
+	// outside of methods.
+	final BasicObject self;
+	final BasicClass owner;
+	// The value that a RETURN gave.
+	Object result;
+	
+	Frame(int size, Frame p, BasicObject s, BasicClass o) {
+		slots = size == 0 ? EMPTY : new Object[size];
+		primitives = size == 0 ? EMPTY_PRIMITIVES : new long[size];
+		parent = p;
+		self = s;
+		owner = o;
+	}
+	
+	/**
+	 * Get the frame that is a number of functions out from this one.
+	 */
+	Frame outer(int depth) {
+		Frame frame = this;
+		for (int i = 0; i < depth; i++)
+			frame = frame.parent;
+		return frame;
+	}
+	
+	Object get(int slot) {
+		Object value = slots[slot];
+		if (value == LONG)
+			return primitives[slot];
+		if (value == DOUBLE)
+			return Double.longBitsToDouble(primitives[slot]);
+		return value;
+	}
+	
+	long getLong(int slot) throws UnexpectedTypeException {
+		if (slots[slot] == LONG)
+			return primitives[slot];
+		throw new UnexpectedTypeException(get(slot));
+	}
+	
+	double getDouble(int slot) throws UnexpectedTypeException {
+		if (slots[slot] == DOUBLE)
+			return Double.longBitsToDouble(primitives[slot]);
+		throw new UnexpectedTypeException(get(slot));
+	}
+	
+	void set(int slot, Object value) {
+		if (value instanceof Long)
+			setLong(slot, (Long)value);
+		else if (value instanceof Double)
+			setDouble(slot, (Double)value);
+		else
+			slots[slot] = value;
+	}
+	
+	void setLong(int slot, long value) {
+		slots[slot] = LONG;
+		primitives[slot] = value;
+	}
+	
+	void setDouble(int slot, double value) {
+		slots[slot] = DOUBLE;
+		primitives[slot] = Double.doubleToRawLongBits(value);
+	}
+}
@@ -0,0 +1,42 @@
+package tech.gitpicard.jbasic.interpreter;
+
+/**
+ * What every closure made from one FUNCTION shares. The body is only built
+ * the first time the function is called, so functions that are never called
+ * cost next to nothing.
+ */
+final class FunctionCode {
+	private final NodeBuilder builder;
+	private final int node;
+	private final String name;
+	private final int parameters;
+	private final int frameSize;
+	private Statement body;
+	
+	FunctionCode(NodeBuilder b, int n, String nm, int params, int size) {
+		builder = b;
+		node = n;
+		name = nm;
+		parameters = params;
+		frameSize = size;
+		body = null;
+	}
+	
+	String getName() {
+		return name;
+	}
+	
+	int getParameterCount() {
+		return parameters;
+	}
+	
+	int getFrameSize() {
+		return frameSize;
+	}
+	
+	Statement getBody() {
+		if (body == null)
+			body = builder.body(node);
+		return body;
+	}
+}
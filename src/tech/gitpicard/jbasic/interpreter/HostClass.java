@@ -0,0 +1,15 @@
+package tech.gitpicard.jbasic.interpreter;
+
+/**
+ * A class that the interpreter provides to programs, which NEW makes host
+ * objects from.
+ */
+interface HostClass {
+	/**
+	 * Make a new object.
+	 * @param args The arguments given to NEW.
+	 * @param site The NEW node, for errors.
+	 * @return The new object.
+	 */
+	Object construct(Object[] args, Node site);
+}
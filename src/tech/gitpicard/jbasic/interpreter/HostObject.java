@@ -0,0 +1,21 @@
+package tech.gitpicard.jbasic.interpreter;
+
+/**
+ * An object that the interpreter provides to programs, such as a list or a
+ * module, with methods written in Java.
+ */
+interface HostObject {
+	/**
+	 * Get the name of the type of the object for error messages.
+	 */
+	String getTypeName();
+	
+	/**
+	 * Call one of the object's methods.
+	 * @param method The name of the method.
+	 * @param args The arguments.
+	 * @param site The node making the call, for errors.
+	 * @return The value that the method returned, or null.
+	 */
+	Object invoke(String method, Object[] args, Node site);
+}
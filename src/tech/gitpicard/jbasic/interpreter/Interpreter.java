@@ -0,0 +1,90 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+
+import tech.gitpicard.jbasic.IllegalOperationException;
+import tech.gitpicard.jbasic.InterpreterException;
+import tech.gitpicard.jbasic.SyntaxException;
+import tech.gitpicard.jbasic.parser.NodeKind;
+import tech.gitpicard.jbasic.parser.SyntaxTree;
+
+/**
+ * Runs programs by walking a tree of nodes built from their syntax trees.
+ * The names in a program are resolved to slots and globals first, so that
+ * no variable is ever looked up by its name while the program runs.
+ * Arithmetic and comparisons specialize themselves to the types of their
+ * operands the first time they run, so a loop that only ever sees integers
+ * does integer arithmetic without working out which kind of arithmetic to
+ * do each time around.
+ *
+ * Programs can use the list class, which NEW list() makes lists with that
+ * have add, get, set and size methods and that FOR loops over, and can
+ * IMPORT "io" for its print method.
+ */
+public final class Interpreter {
+	private final Resolver resolver;
+	private final HashMap<String, Object> builtins;
+	private final HashMap<String, Object> modules;
+	private Scopes scopes;
+	private Object[] globals;
+	
+	/**
+	 * Create an interpreter that prints to standard output.
+	 */
+	public Interpreter() {
+		this(System.out);
+	}
+	
+	/**
+	 * Create an interpreter.
+	 * @param out Where the io module prints to.
+	 */
+	public Interpreter(PrintStream out) {
+		resolver = new Resolver();
+		builtins = new HashMap<>();
+		builtins.put("list", ListObject.CLASS);
+		modules = new HashMap<>();
+		modules.put("io", new IoModule(out));
+	}
+	
+	/**
+	 * Run a program.
+	 * @param tree The syntax tree of the program, which can't have any ERROR
+	 * nodes in it.
+	 * @throws SyntaxException When resolving the program finds a statement
+	 * that is somewhere it can't be.
+	 * @throws InterpreterException When the program goes wrong while it runs.
+	 */
+	public void run(SyntaxTree tree) throws SyntaxException {
+		Scopes s = resolver.resolve(tree);
+		for (int node = 0; node < tree.size(); node++) {
+			if (tree.getKind(node) == NodeKind.ERROR)
+				throw new IllegalOperationException("can't run a syntax tree with syntax errors in it");
+		}
+		
+		Object[] g = new Object[s.getGlobalCount()];
+		for (int i = 0; i < g.length; i++)
+			g[i] = builtins.getOrDefault(s.getGlobalName(i), Expressions.UNDEFINED);
+		scopes = s;
+		globals = g;
+		new NodeBuilder(s, g, modules).program().execute(new Frame(0, null, null, null));
+	}
+	
+	/**
+	 * Get the value of a global of the last program that was run. Integers are
+	 * Long, reals are Double, strings are String and booleans are Boolean.
+	 * @param name The name of the global.
+	 * @return The value, or null if the global is NULL or was never given a
+	 * value.
+	 */
+	public Object getGlobal(String name) {
+		if (scopes == null)
+			throw new IllegalOperationException("no program has been run");
+		for (int i = 0; i < globals.length; i++) {
+			if (scopes.getGlobalName(i).equals(name))
+				return globals[i] == Expressions.UNDEFINED ? null : globals[i];
+		}
+		return null;
+	}
+}
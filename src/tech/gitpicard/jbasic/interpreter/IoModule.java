@@ -0,0 +1,32 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import java.io.PrintStream;
+
+/**
+ * The io module, which programs get with IMPORT "io".
+ */
+final class IoModule implements HostObject {
+	private final PrintStream out;
+	
+	IoModule(PrintStream o) {
+		out = o;
+	}
+	
+	@Override
+	public String getTypeName() {
+		return "the io module";
+	}
+	
+	@Override
+	public Object invoke(String method, Object[] args, Node site) {
+		if (!method.equals("print"))
+			throw site.error("the io module has no method " + method);
+		
+		// Every argument is printed on one line with nothing between them.
+		StringBuilder line = new StringBuilder();
+		for (Object arg : args)
+			line.append(Values.toString(arg));
+		out.println(line);
+		return null;
+	}
+}
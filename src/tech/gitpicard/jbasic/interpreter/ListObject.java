@@ -0,0 +1,66 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A list, made with NEW list(), that FOR can loop over.
+ */
+final class ListObject implements HostObject {
+	/**
+	 * The class that makes lists.
+	 */
+	static final HostClass CLASS = (args, site) -> {
+		if (args.length != 0)
+			throw site.error("list takes no arguments");
+		return new ListObject();
+	};
+	
+	private final ArrayList<Object> items;
+	
+	ListObject() {
+		items = new ArrayList<>();
+	}
+	
+	List<Object> getItems() {
+		return items;
+	}
+	
+	@Override
+	public String getTypeName() {
+		return "a list";
+	}
+	
+	private int index(Object[] args, int n, Node site) {
+		if (args.length != n)
+			throw site.error("expected " + n + (n == 1 ? " argument" : " arguments") + " but was given " + args.length);
+		if (!(args[0] instanceof Long))
+			throw site.error("expected an integer index but got " + Values.typeName(args[0]));
+		long index = (Long)args[0];
+		if (index < 0 || index >= items.size())
+			throw site.error("index " + index + " is outside of a list of " + items.size());
+		return (int)index;
+	}
+	
+	@Override
+	public Object invoke(String method, Object[] args, Node site) {
+		switch (method) {
+		case "add":
+			if (args.length != 1)
+				throw site.error("expected 1 argument but was given " + args.length);
+			items.add(args[0]);
+			return null;
+		case "get":
+			return items.get(index(args, 1, site));
+		case "set":
+			items.set(index(args, 2, site), args[1]);
+			return null;
+		case "size":
+			if (args.length != 0)
+				throw site.error("expected 0 arguments but was given " + args.length);
+			return (long)items.size();
+		default:
+			throw site.error("a list has no method " + method);
+		}
+	}
+}
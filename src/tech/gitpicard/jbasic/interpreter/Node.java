@@ -0,0 +1,25 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import tech.gitpicard.jbasic.InterpreterException;
+import tech.gitpicard.jbasic.parser.SyntaxTree;
+
+/**
+ * A node of the tree that the interpreter runs. It is built from a node of
+ * the syntax tree, and remembers which one so that errors can point at it.
+ */
+abstract class Node {
+	private final SyntaxTree tree;
+	private final int syntax;
+	
+	Node(SyntaxTree t, int node) {
+		tree = t;
+		syntax = node;
+	}
+	
+	/**
+	 * Make an error that points at the node.
+	 */
+	InterpreterException error(String msg) {
+		return new InterpreterException(tree.getSourceFile(), msg, tree.getSourceLine(syntax), tree.getSourceColumn(syntax));
+	}
+}
@@ -0,0 +1,216 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import tech.gitpicard.jbasic.IllegalOperationException;
+import tech.gitpicard.jbasic.SyntaxException;
+import tech.gitpicard.jbasic.UncheckedSyntaxException;
+import tech.gitpicard.jbasic.parser.NodeKind;
+import tech.gitpicard.jbasic.parser.SyntaxTree;
+import tech.gitpicard.jbasic.parser.TokenType;
+
+/**
+ * Builds the nodes that the interpreter runs from a resolved syntax tree.
+ * The body of each function is only built when the function is first called.
+ */
+final class NodeBuilder {
+	private final SyntaxTree tree;
+	private final Scopes scopes;
+	private final Object[] globals;
+	private final Map<String, Object> modules;
+	
+	NodeBuilder(Scopes s, Object[] g, Map<String, Object> m) {
+		tree = s.getTree();
+		scopes = s;
+		globals = g;
+		modules = m;
+	}
+	
+	/**
+	 * Build the statements of the whole program.
+	 */
+	Statement program() {
+		return block(tree.getRoot());
+	}
+	
+	/**
+	 * Build the body of a FUNCTION.
+	 */
+	Statement body(int function) {
+		try {
+			return block(tree.getBody(function));
+		}
+		catch (SyntaxException e) {
+			// The resolver has already parsed every body.
+			throw new UncheckedSyntaxException(e);
+		}
+	}
+	
+	private Statement block(int node) {
+		Statement[] statements = new Statement[tree.getChildCount(node)];
+		int i = 0;
+		for (int child = tree.getFirstChild(node); child >= 0; child = tree.getNextSibling(child))
+			statements[i++] = statement(child);
+		return new Statements.Block(tree, node, statements);
+	}
+	
+	private Expression[] expressions(int first) {
+		ArrayList<Expression> list = new ArrayList<>();
+		for (int node = first; node >= 0; node = tree.getNextSibling(node))
+			list.add(expression(node));
+		return list.toArray(new Expression[0]);
+	}
+	
+	private Expressions.Variable variable(int node) {
+		if (scopes.isGlobal(node)) {
+			int index = scopes.getGlobal(node);
+			return new Expressions.Global(tree, node, globals, index, scopes.getGlobalName(index));
+		}
+		int depth = scopes.getDepth(node);
+		if (depth == 0)
+			return new Expressions.Local(tree, node, scopes.getSlot(node));
+		return new Expressions.Outer(tree, node, depth, scopes.getSlot(node));
+	}
+	
+	private FunctionCode function(int node) {
+		int parameters = tree.getFirstChild(node);
+		return new FunctionCode(this, node, tree.getContent(node), tree.getChildCount(parameters), scopes.getFrameSize(node));
+	}
+	
+	private Statement classDeclaration(int node) {
+		Expression superclass = null;
+		ArrayList<String> fields = new ArrayList<>();
+		ArrayList<Expression> values = new ArrayList<>();
+		ArrayList<FunctionCode> methods = new ArrayList<>();
+		for (int member = tree.getFirstChild(node); member >= 0; member = tree.getNextSibling(member)) {
+			switch (tree.getKind(member)) {
+			case NAME:
+				superclass = variable(member);
+				break;
+			case FIELD: {
+				int value = tree.getFirstChild(member);
+				fields.add(tree.getContent(member));
+				values.add(value < 0 ? null : expression(value));
+				break;
+			}
+			default:
+				methods.add(function(member));
+				break;
+			}
+		}
+		return new Statements.ClassDeclaration(tree, node, variable(node), tree.getContent(node), superclass,
+				fields.toArray(new String[0]), values.toArray(new Expression[0]), methods.toArray(new FunctionCode[0]));
+	}
+	
+	private Statement statement(int node) {
+		int first = tree.getFirstChild(node);
+		switch (tree.getKind(node)) {
+		case IMPORT: {
+			String name = tree.getContent(node);
+			return new Statements.Import(tree, node, variable(node), modules.get(name), name);
+		}
+		case LET: {
+			Expression value = expression(tree.getNextSibling(first));
+			if (tree.getKind(first) == NodeKind.NAME)
+				return new Statements.Let(tree, node, variable(first), value);
+			return new Statements.SetField(tree, node, expression(tree.getFirstChild(first)), tree.getContent(first), value);
+		}
+		case CALL:
+			return new Statements.Call(tree, node, expression(first));
+		case IF: {
+			int body = tree.getNextSibling(first);
+			int otherwise = tree.getNextSibling(body);
+			Statement other = null;
+			if (otherwise >= 0)
+				other = tree.getKind(otherwise) == NodeKind.IF ? statement(otherwise) : block(otherwise);
+			return new Statements.If(tree, node, expression(first), block(body), other);
+		}
+		case WHILE:
+			return new Statements.While(tree, node, expression(first), block(tree.getNextSibling(first)));
+		case FOR: {
+			int collection = tree.getNextSibling(first);
+			return new Statements.For(tree, node, variable(first), expression(collection), block(tree.getNextSibling(collection)));
+		}
+		case CONTINUE:
+			return new Statements.Jump(tree, node, Statement.CONTINUE);
+		case BREAK:
+			return new Statements.Jump(tree, node, Statement.BREAK);
+		case RETURN:
+			return new Statements.Return(tree, node, first < 0 ? null : expression(first));
+		case FUNCTION:
+			return new Statements.FunctionDeclaration(tree, node, variable(node), function(node));
+		case CLASS:
+			return classDeclaration(node);
+		default:
+			throw new IllegalOperationException("can't run a " + tree.getKind(node) + " node");
+		}
+	}
+	
+	private Expression expression(int node) {
+		int first = tree.getFirstChild(node);
+		switch (tree.getKind(node)) {
+		case LITERAL:
+			return new Expressions.Literal(tree, node, literal(node));
+		case NAME:
+			return variable(node);
+		case SELF:
+			return new Expressions.Self(tree, node);
+		case SUPER:
+			return new Expressions.Super(tree, node);
+		case UNARY:
+			if (tree.getTokenType(node) == TokenType.NOT)
+				return new Expressions.Not(tree, node, expression(first));
+			return new Expressions.Negate(tree, node, expression(first));
+		case BINARY: {
+			TokenType operator = tree.getTokenType(node);
+			Expression left = expression(first);
+			Expression right = expression(tree.getNextSibling(first));
+			switch (operator) {
+			case PLUS:
+			case MINUS:
+			case STAR:
+			case SLASH:
+				return new ArithmeticNode(tree, node, operator, left, right);
+			case LESS_THAN:
+			case GREATER_THAN:
+			case EQUALS:
+				return new ComparisonNode(tree, node, operator, left, right);
+			default:
+				return new Expressions.Logical(tree, node, operator, left, right);
+			}
+		}
+		case MEMBER:
+			return new Expressions.Member(tree, node, expression(first), tree.getContent(node));
+		case INVOCATION: {
+			Expression[] args = expressions(tree.getNextSibling(first));
+			if (tree.getKind(first) != NodeKind.MEMBER)
+				return new Expressions.Call(tree, node, expression(first), args);
+			int object = tree.getFirstChild(first);
+			Expression receiver = tree.getKind(object) == NodeKind.SUPER ? null : expression(object);
+			return new Expressions.MethodCall(tree, node, receiver, tree.getContent(first), args);
+		}
+		case NEW:
+			return new Expressions.New(tree, node, variable(node), expressions(first));
+		default:
+			throw new IllegalOperationException("can't run a " + tree.getKind(node) + " node");
+		}
+	}
+	
+	private Object literal(int node) {
+		switch (tree.getTokenType(node)) {
+		case INT_LITERAL:
+			return tree.getIntValue(node);
+		case REAL_LITERAL:
+			return tree.getRealValue(node);
+		case TRUE_LITERAL:
+			return Boolean.TRUE;
+		case FALSE_LITERAL:
+			return Boolean.FALSE;
+		case NULL_LITERAL:
+			return null;
+		default:
+			return tree.getContent(node);
+		}
+	}
+}
@@ -0,0 +1,439 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import java.util.Arrays;
+
+import tech.gitpicard.jbasic.IllegalOperationException;
+import tech.gitpicard.jbasic.SyntaxException;
+import tech.gitpicard.jbasic.parser.NodeKind;
+import tech.gitpicard.jbasic.parser.SymbolTable;
+import tech.gitpicard.jbasic.parser.SyntaxTree;
+
+/**
+ * Works out which variable every name in a syntax tree refers to, so that
+ * running the program never has to look a variable up by its name. The rules
+ * are these.
+ *
+ * Outside of functions every variable is a global, and a name that isn't
+ * declared anywhere that can be seen is a global too, which is how functions
+ * and classes declared further down and the built in names are found.
+ *
+ * Inside of a function, the parameters and each name that is given a value
+ * by LET, FOR, FUNCTION, CLASS or IMPORT for the first time are locals. A
+ * local can be seen from where it is declared to the end of the block it is
+ * declared in, which includes functions nested in that block. The locals of
+ * a function each get a slot in the frame of the function's calls, and a
+ * slot is used again once the block it was declared in is over, unless a
+ * nested function captured it.
+ *
+ * The resolver also checks that BREAK and CONTINUE are inside of a loop,
+ * RETURN is inside of a function and SELF and SUPER are inside of a method,
+ * and that no function has more locals or is nested more deeply than a
+ * binding in the scopes has room for.
+ * Function bodies that a lazy parser skipped are parsed as they are reached,
+ * since every name in them has to be resolved. A resolver can be used for
+ * any number of syntax trees, one after the other.
+ */
+public final class Resolver {
+	/**
+	 * The locals of a function that is being resolved.
+	 */
+	private static final class Function {
+		final Function parent;
+		// The first of the function's entries on the stack of declared locals.
+		final int firstEntry;
+		final boolean method;
+		// How many functions this one is nested inside of.
+		final int depth;
+		int nextSlot;
+		int frameSize;
+		// Slots below this one are never used again, because a nested
+		// function captured one of them.
+		int pinned;
+		
+		Function(Function p, int first, boolean m) {
+			parent = p;
+			firstEntry = first;
+			method = m;
+			depth = p == null ? 0 : p.depth + 1;
+			nextSlot = 0;
+			frameSize = 0;
+			pinned = 0;
+		}
+	}
+	
+	private SyntaxTree tree;
+	private SymbolTable symbols;
+	private Scopes scopes;
+	// The index of the global for each symbol id, or -1 if it has none yet.
+	private int[] globals;
+	// The innermost entry for each symbol id, or -1 if it isn't a local.
+	private int[] innermost;
+	// The locals that can be seen, innermost last, as parallel arrays. Each
+	// entry also has the entry with the same symbol that it hides, or -1.
+	private int[] entrySymbols;
+	private int[] slots;
+	private int[] declarations;
+	private int[] hidden;
+	private int entryCount;
+	// The function being resolved, or null outside of functions.
+	private Function function;
+	private int loops;
+	
+	/**
+	 * Create a new resolver.
+	 */
+	public Resolver() {
+		globals = new int[0];
+		innermost = new int[0];
+		entrySymbols = new int[16];
+		slots = new int[16];
+		declarations = new int[16];
+		hidden = new int[16];
+	}
+	
+	/**
+	 * Resolve every name in a syntax tree.
+	 * @param t The syntax tree, which should have no ERROR nodes in it and
+	 * must have been parsed with a symbol table.
+	 * @return Where each variable is.
+	 * @throws SyntaxException When a statement is somewhere it can't be, or
+	 * a function body that hadn't been parsed yet has a syntax error in it.
+	 */
+	public Scopes resolve(SyntaxTree t) throws SyntaxException {
+		if (t.getSymbolTable() == null)
+			throw new IllegalOperationException("the syntax tree has no symbol table");
+		
+		tree = t;
+		symbols = t.getSymbolTable();
+		scopes = new Scopes(t);
+		Arrays.fill(globals, -1);
+		ensureSymbol(symbols.size() - 1);
+		entryCount = 0;
+		function = null;
+		loops = 0;
+		try {
+			statements(t.getRoot());
+			return scopes;
+		}
+		finally {
+			forget(0);
+			tree = null;
+			symbols = null;
+		}
+	}
+	
+	/**
+	 * Make room in the tables indexed by symbol id for an id.
+	 */
+	private void ensureSymbol(int id) {
+		if (id < innermost.length)
+			return;
+		int old = innermost.length;
+		int capacity = Math.max(id + 1, old * 2);
+		globals = Arrays.copyOf(globals, capacity);
+		innermost = Arrays.copyOf(innermost, capacity);
+		Arrays.fill(globals, old, capacity, -1);
+		Arrays.fill(innermost, old, capacity, -1);
+	}
+	
+	/**
+	 * Get the symbol id of the name that a node declares or refers to. An
+	 * IMPORT names its module with a string, which is given an id here.
+	 */
+	private int symbol(int node) {
+		int id;
+		if (tree.getKind(node) == NodeKind.IMPORT)
+			id = symbols.intern(tree.getContent(node));
+		else
+			id = tree.getSymbol(node);
+		ensureSymbol(id);
+		return id;
+	}
+	
+	private SyntaxException error(String msg, int node) {
+		return new SyntaxException(tree.getSourceFile(), msg, tree.getSourceLine(node), tree.getSourceColumn(node), false);
+	}
+	
+	private int global(int symbol) {
+		int index = globals[symbol];
+		if (index < 0) {
+			index = scopes.addGlobal(symbols.getName(symbol));
+			globals[symbol] = index;
+		}
+		return index;
+	}
+	
+	/**
+	 * Bind a node to the innermost local with a symbol.
+	 * @return True if there is a local with that symbol.
+	 */
+	private boolean bindLocal(int node, int symbol) {
+		int entry = innermost[symbol];
+		if (entry < 0)
+			return false;
+		
+		// Move out to the function that the entry belongs to.
+		Function f = function;
+		int depth = 0;
+		while (entry < f.firstEntry) {
+			f = f.parent;
+			depth++;
+		}
+		scopes.bindLocal(node, depth, slots[entry]);
+		if (depth > 0) {
+			scopes.setCaptured(declarations[entry]);
+			f.pinned = Math.max(f.pinned, slots[entry] + 1);
+		}
+		return true;
+	}
+	
+	/**
+	 * Bind a node to the innermost variable with a name, which is a global if
+	 * there isn't a local with that name.
+	 */
+	private void bind(int node) {
+		int symbol = symbol(node);
+		if (!bindLocal(node, symbol))
+			scopes.bindGlobal(node, global(symbol));
+	}
+	
+	/**
+	 * Bind a node to a new variable, which is a global outside of functions.
+	 */
+	private void declare(int node) throws SyntaxException {
+		declare(node, symbol(node));
+	}
+	
+	private void declare(int node, int symbol) throws SyntaxException {
+		if (function == null) {
+			scopes.bindGlobal(node, global(symbol));
+			return;
+		}
+		if (function.nextSlot == Scopes.MAX_SLOTS)
+			throw error("too many variables in a function", node);
+		
+		if (entryCount == entrySymbols.length) {
+			int capacity = entryCount * 2;
+			entrySymbols = Arrays.copyOf(entrySymbols, capacity);
+			slots = Arrays.copyOf(slots, capacity);
+			declarations = Arrays.copyOf(declarations, capacity);
+			hidden = Arrays.copyOf(hidden, capacity);
+		}
+		int slot = function.nextSlot++;
+		function.frameSize = Math.max(function.frameSize, function.nextSlot);
+		entrySymbols[entryCount] = symbol;
+		slots[entryCount] = slot;
+		declarations[entryCount] = node;
+		hidden[entryCount] = innermost[symbol];
+		innermost[symbol] = entryCount;
+		entryCount++;
+		scopes.bindLocal(node, 0, slot);
+	}
+	
+	/**
+	 * Give a value to a name, which declares it unless it is already a local
+	 * that can be seen. Outside of functions it is always a global.
+	 */
+	private void assign(int node) throws SyntaxException {
+		int symbol = symbol(node);
+		if (function == null || !bindLocal(node, symbol))
+			declare(node, symbol);
+	}
+	
+	/**
+	 * Forget the locals declared since entryCount was mark, uncovering the
+	 * ones that they hid.
+	 */
+	private void forget(int mark) {
+		for (int i = entryCount - 1; i >= mark; i--)
+			innermost[entrySymbols[i]] = hidden[i];
+		entryCount = mark;
+	}
+	
+	/**
+	 * Forget the locals declared since entryCount was mark, and use their
+	 * slots again from slot on if nothing captured them.
+	 */
+	private void endScope(int mark, int slot) {
+		forget(mark);
+		if (function != null)
+			function.nextSlot = Math.max(slot, function.pinned);
+	}
+	
+	/**
+	 * Resolve the statements of a BLOCK in a scope of their own.
+	 */
+	private void block(int block) throws SyntaxException {
+		int mark = entryCount;
+		int slot = function == null ? 0 : function.nextSlot;
+		statements(block);
+		endScope(mark, slot);
+	}
+	
+	private void statements(int parent) throws SyntaxException {
+		for (int node = tree.getFirstChild(parent); node >= 0; node = tree.getNextSibling(node))
+			statement(node);
+	}
+	
+	private void statement(int node) throws SyntaxException {
+		int first = tree.getFirstChild(node);
+		switch (tree.getKind(node)) {
+		case IMPORT:
+			assign(node);
+			break;
+		case LET: {
+			expression(tree.getNextSibling(first));
+			if (tree.getKind(first) == NodeKind.NAME)
+				assign(first);
+			else
+				expression(first);
+			break;
+		}
+		case CALL:
+			expression(first);
+			break;
+		case IF: {
+			expression(first);
+			int body = tree.getNextSibling(first);
+			block(body);
+			int otherwise = tree.getNextSibling(body);
+			if (otherwise >= 0) {
+				if (tree.getKind(otherwise) == NodeKind.IF)
+					statement(otherwise);
+				else
+					block(otherwise);
+			}
+			break;
+		}
+		case WHILE:
+			expression(first);
+			loop(tree.getNextSibling(first), -1);
+			break;
+		case FOR: {
+			// A FOR with an error in its first line only has the ERROR and body.
+			if (tree.getKind(first) == NodeKind.ERROR) {
+				loop(tree.getNextSibling(first), -1);
+				break;
+			}
+			int collection = tree.getNextSibling(first);
+			expression(collection);
+			loop(tree.getNextSibling(collection), first);
+			break;
+		}
+		case CONTINUE:
+		case BREAK:
+			if (loops == 0)
+				throw error(tree.getKind(node) + " outside of a loop", node);
+			break;
+		case RETURN:
+			if (function == null)
+				throw error("RETURN outside of a function", node);
+			if (first >= 0)
+				expression(first);
+			break;
+		case FUNCTION:
+			assign(node);
+			function(node, false);
+			break;
+		case CLASS:
+			assign(node);
+			classBody(node);
+			break;
+		default:
+			// An ERROR node, which has nothing in it to resolve.
+			break;
+		}
+	}
+	
+	/**
+	 * Resolve the body of a loop, declaring its loop variable if it has one in
+	 * the same scope as the body.
+	 */
+	private void loop(int body, int variable) throws SyntaxException {
+		int mark = entryCount;
+		int slot = function == null ? 0 : function.nextSlot;
+		if (variable >= 0)
+			declare(variable);
+		loops++;
+		block(body);
+		loops--;
+		endScope(mark, slot);
+	}
+	
+	private void function(int node, boolean method) throws SyntaxException {
+		Function outer = function;
+		if (outer != null && outer.depth == Scopes.MAX_DEPTH)
+			throw error("functions are nested too deeply", node);
+		int outerLoops = loops;
+		function = new Function(outer, entryCount, method || (outer != null && outer.method));
+		loops = 0;
+		try {
+			int parameters = tree.getFirstChild(node);
+			if (tree.getKind(parameters) == NodeKind.PARAMETERS) {
+				for (int p = tree.getFirstChild(parameters); p >= 0; p = tree.getNextSibling(p))
+					declare(p);
+			}
+			block(tree.getBody(node));
+			scopes.setFrameSize(node, function.frameSize);
+		}
+		finally {
+			forget(function.firstEntry);
+			function = outer;
+			loops = outerLoops;
+		}
+	}
+	
+	private void classBody(int node) throws SyntaxException {
+		for (int member = tree.getFirstChild(node); member >= 0; member = tree.getNextSibling(member)) {
+			switch (tree.getKind(member)) {
+			case NAME:
+				// The class that this one extends.
+				bind(member);
+				break;
+			case FIELD: {
+				// Initial values are worked out where the class is declared.
+				int value = tree.getFirstChild(member);
+				if (value >= 0)
+					expression(value);
+				break;
+			}
+			case FUNCTION:
+				function(member, true);
+				break;
+			default:
+				break;
+			}
+		}
+	}
+	
+	private void expression(int node) throws SyntaxException {
+		switch (tree.getKind(node)) {
+		case NAME:
+			bind(node);
+			break;
+		case SELF:
+		case SUPER:
+			if (function == null || !function.method)
+				throw error(tree.getKind(node) + " outside of a method", node);
+			break;
+		case NEW:
+			bind(node);
+			children(node);
+			break;
+		case UNARY:
+		case BINARY:
+		case MEMBER:
+		case INVOCATION:
+			children(node);
+			break;
+		default:
+			// Literals and ERROR nodes.
+			break;
+		}
+	}
+	
+	private void children(int node) throws SyntaxException {
+		for (int child = tree.getFirstChild(node); child >= 0; child = tree.getNextSibling(child))
+			expression(child);
+	}
+}
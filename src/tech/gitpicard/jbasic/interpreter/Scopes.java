@@ -0,0 +1,193 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import tech.gitpicard.jbasic.IllegalOperationException;
+import tech.gitpicard.jbasic.parser.NodeKind;
+import tech.gitpicard.jbasic.parser.SyntaxTree;
+
+/**
+ * What the resolver found out about the variables in a syntax tree. Every
+ * node that names a variable, which is a NAME, the FUNCTION, CLASS or IMPORT
+ * that declares one, or the class of a NEW, is bound either to a global by
+ * its index or to a slot in the frame of a function call. A local is found by
+ * going out depth frames from the frame of the function the node is in, so
+ * zero is the function's own frame, and taking the slot in that frame. Every
+ * FUNCTION also has the number of slots that its frame needs.
+ */
+public final class Scopes {
+	// A node that isn't bound to anything.
+	private static final int NONE = -1;
+	/**
+	 * The most slots that a frame can have.
+	 */
+	static final int MAX_SLOTS = 1 << 16;
+	/**
+	 * The most functions that can be nested inside of each other.
+	 */
+	static final int MAX_DEPTH = (1 << 15) - 1;
+	
+	private final SyntaxTree tree;
+	// Locals are depth << 16 | slot, and globals are -2 - index.
+	private int[] bindings;
+	private int[] frameSizes;
+	private final BitSet captured;
+	private final ArrayList<String> globals;
+	
+	Scopes(SyntaxTree t) {
+		tree = t;
+		bindings = new int[t.size()];
+		frameSizes = new int[t.size()];
+		Arrays.fill(bindings, NONE);
+		captured = new BitSet();
+		globals = new ArrayList<>();
+	}
+	
+	private void ensure(int node) {
+		if (node >= bindings.length) {
+			// Lazily parsed function bodies add nodes while the tree is resolved.
+			int capacity = Math.max(node + 1, tree.size());
+			int old = bindings.length;
+			bindings = Arrays.copyOf(bindings, capacity);
+			frameSizes = Arrays.copyOf(frameSizes, capacity);
+			Arrays.fill(bindings, old, capacity, NONE);
+		}
+	}
+	
+	void bindLocal(int node, int depth, int slot) {
+		ensure(node);
+		bindings[node] = depth << 16 | slot;
+	}
+	
+	void bindGlobal(int node, int index) {
+		ensure(node);
+		bindings[node] = -2 - index;
+	}
+	
+	void setCaptured(int node) {
+		captured.set(node);
+	}
+	
+	void setFrameSize(int function, int size) {
+		ensure(function);
+		frameSizes[function] = size;
+	}
+	
+	int addGlobal(String name) {
+		globals.add(name);
+		return globals.size() - 1;
+	}
+	
+	private int binding(int node) {
+		if (node < 0 || node >= tree.size())
+			throw new IndexOutOfBoundsException(node);
+		int binding = node < bindings.length ? bindings[node] : NONE;
+		if (binding == NONE)
+			throw new IllegalOperationException("node is not bound to a variable");
+		return binding;
+	}
+	
+	/**
+	 * Get the syntax tree that was resolved.
+	 * @return The syntax tree.
+	 */
+	public SyntaxTree getTree() {
+		return tree;
+	}
+	
+	/**
+	 * Is a node bound to a variable?
+	 * @param node The index of the node.
+	 * @return True if the node is bound to a global or a local.
+	 */
+	public boolean isBound(int node) {
+		return node >= 0 && node < bindings.length && bindings[node] != NONE;
+	}
+	
+	/**
+	 * Is a node bound to a global?
+	 * @param node The index of the node.
+	 * @return True for a global, false for a local.
+	 */
+	public boolean isGlobal(int node) {
+		return binding(node) < NONE;
+	}
+	
+	/**
+	 * Get how many frames out from the current one the local that a node is
+	 * bound to is.
+	 * @param node The index of the node.
+	 * @return The depth, which is zero for the current function's own locals.
+	 */
+	public int getDepth(int node) {
+		int binding = binding(node);
+		if (binding < NONE)
+			throw new IllegalOperationException("node is bound to a global");
+		return binding >>> 16;
+	}
+	
+	/**
+	 * Get the slot in its frame of the local that a node is bound to.
+	 * @param node The index of the node.
+	 * @return The slot counting from zero.
+	 */
+	public int getSlot(int node) {
+		int binding = binding(node);
+		if (binding < NONE)
+			throw new IllegalOperationException("node is bound to a global");
+		return binding & 0xffff;
+	}
+	
+	/**
+	 * Get the index of the global that a node is bound to.
+	 * @param node The index of the node.
+	 * @return The index counting from zero.
+	 */
+	public int getGlobal(int node) {
+		int binding = binding(node);
+		if (binding > NONE)
+			throw new IllegalOperationException("node is bound to a local");
+		return -2 - binding;
+	}
+	
+	/**
+	 * Is the local that a node declares used by a function nested inside of
+	 * the one it belongs to? The frame holding a captured local has to be kept
+	 * for as long as the nested function is.
+	 * @param node The index of the node that declares the local.
+	 * @return True if the local is captured.
+	 */
+	public boolean isCaptured(int node) {
+		return captured.get(node);
+	}
+	
+	/**
+	 * Get the number of slots that calls to a function need in their frames.
+	 * @param function The index of the FUNCTION node.
+	 * @return The number of slots.
+	 */
+	public int getFrameSize(int function) {
+		if (tree.getKind(function) != NodeKind.FUNCTION)
+			throw new IllegalOperationException("node is not a function");
+		return function < frameSizes.length ? frameSizes[function] : 0;
+	}
+	
+	/**
+	 * Get the number of globals that the tree uses.
+	 * @return The number of globals.
+	 */
+	public int getGlobalCount() {
+		return globals.size();
+	}
+	
+	/**
+	 * Get the name of a global.
+	 * @param index The index of the global.
+	 * @return The name of the global.
+	 */
+	public String getGlobalName(int index) {
+		return globals.get(index);
+	}
+}
@@ -0,0 +1,38 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import tech.gitpicard.jbasic.parser.SyntaxTree;
+
+/**
+ * A node that does something. Rather than throwing exceptions to leave loops
+ * and functions, each statement says how it finished, so that the statements
+ * around it know whether to keep going.
+ */
+abstract class Statement extends Node {
+	/**
+	 * The statement finished and the next one should run.
+	 */
+	static final int NEXT = 0;
+	/**
+	 * A BREAK ran, so the loop it is in should stop.
+	 */
+	static final int BREAK = 1;
+	/**
+	 * A CONTINUE ran, so the loop it is in should start its next time around.
+	 */
+	static final int CONTINUE = 2;
+	/**
+	 * A RETURN ran and left the value in the frame.
+	 */
+	static final int RETURN = 3;
+	
+	Statement(SyntaxTree t, int node) {
+		super(t, node);
+	}
+	
+	/**
+	 * Run the statement.
+	 * @param frame The frame of the function that is running.
+	 * @return NEXT, BREAK, CONTINUE or RETURN.
+	 */
+	abstract int execute(Frame frame);
+}
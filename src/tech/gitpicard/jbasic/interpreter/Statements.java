@@ -0,0 +1,314 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import java.util.List;
+
+import tech.gitpicard.jbasic.interpreter.Expressions.Variable;
+import tech.gitpicard.jbasic.parser.SyntaxTree;
+
+/**
+ * The nodes for every kind of statement.
+ */
+final class Statements {
+	private Statements() {
+	}
+	
+	static final class Block extends Statement {
+		private final Statement[] statements;
+		
+		Block(SyntaxTree t, int node, Statement[] s) {
+			super(t, node);
+			statements = s;
+		}
+		
+		@Override
+		int execute(Frame frame) {
+			for (Statement statement : statements) {
+				int result = statement.execute(frame);
+				if (result != NEXT)
+					return result;
+			}
+			return NEXT;
+		}
+	}
+	
+	/**
+	 * LET with a variable to give a value to. Like arithmetic, it specializes
+	 * itself to the type of the first value it sees, so that an integer or
+	 * real can go from the expression to the variable without being boxed.
+	 */
+	static final class Let extends Statement {
+		private static final int UNINITIALIZED = 0;
+		private static final int INT = 1;
+		private static final int REAL = 2;
+		private static final int GENERIC = 3;
+		
+		private final Variable variable;
+		private final Expression value;
+		private int state;
+		
+		Let(SyntaxTree t, int node, Variable var, Expression v) {
+			super(t, node);
+			variable = var;
+			value = v;
+			state = UNINITIALIZED;
+		}
+		
+		@Override
+		int execute(Frame frame) {
+			switch (state) {
+			case INT:
+				try {
+					variable.assignLong(frame, value.evaluateLong(frame));
+				}
+				catch (UnexpectedTypeException e) {
+					state = GENERIC;
+					variable.assign(frame, e.getValue());
+				}
+				return NEXT;
+			case REAL:
+				try {
+					variable.assignDouble(frame, value.evaluateDouble(frame));
+				}
+				catch (UnexpectedTypeException e) {
+					state = GENERIC;
+					variable.assign(frame, e.getValue());
+				}
+				return NEXT;
+			case GENERIC:
+				variable.assign(frame, value.evaluate(frame));
+				return NEXT;
+			default: {
+				Object v = value.evaluate(frame);
+				state = v instanceof Long ? INT : v instanceof Double ? REAL : GENERIC;
+				variable.assign(frame, v);
+				return NEXT;
+			}
+			}
+		}
+	}
+	
+	/**
+	 * LET with a field of an object to give a value to.
+	 */
+	static final class SetField extends Statement {
+		private final Expression object;
+		private final String name;
+		private final Expression value;
+		
+		SetField(SyntaxTree t, int node, Expression o, String n, Expression v) {
+			super(t, node);
+			object = o;
+			name = n;
+			value = v;
+		}
+		
+		@Override
+		int execute(Frame frame) {
+			Object target = object.evaluate(frame);
+			if (!(target instanceof BasicObject))
+				throw error("can't set a field of " + Values.typeName(target));
+			((BasicObject)target).setField(name, value.evaluate(frame));
+			return NEXT;
+		}
+	}
+	
+	static final class Call extends Statement {
+		private final Expression call;
+		
+		Call(SyntaxTree t, int node, Expression c) {
+			super(t, node);
+			call = c;
+		}
+		
+		@Override
+		int execute(Frame frame) {
+			call.evaluate(frame);
+			return NEXT;
+		}
+	}
+	
+	static final class If extends Statement {
+		private final Expression condition;
+		private final Statement then;
+		// Null if there is no ELSE or ELSEIF.
+		private final Statement otherwise;
+		
+		If(SyntaxTree t, int node, Expression c, Statement th, Statement o) {
+			super(t, node);
+			condition = c;
+			then = th;
+			otherwise = o;
+		}
+		
+		@Override
+		int execute(Frame frame) {
+			if (condition.test(frame))
+				return then.execute(frame);
+			return otherwise == null ? NEXT : otherwise.execute(frame);
+		}
+	}
+	
+	static final class While extends Statement {
+		private final Expression condition;
+		private final Statement body;
+		
+		While(SyntaxTree t, int node, Expression c, Statement b) {
+			super(t, node);
+			condition = c;
+			body = b;
+		}
+		
+		@Override
+		int execute(Frame frame) {
+			while (condition.test(frame)) {
+				int result = body.execute(frame);
+				if (result == BREAK)
+					break;
+				if (result == RETURN)
+					return RETURN;
+			}
+			return NEXT;
+		}
+	}
+	
+	static final class For extends Statement {
+		private final Variable variable;
+		private final Expression collection;
+		private final Statement body;
+		
+		For(SyntaxTree t, int node, Variable var, Expression c, Statement b) {
+			super(t, node);
+			variable = var;
+			collection = c;
+			body = b;
+		}
+		
+		@Override
+		int execute(Frame frame) {
+			Object value = collection.evaluate(frame);
+			if (!(value instanceof ListObject))
+				throw error("can't loop over " + Values.typeName(value));
+			
+			// Items added to the list by the body are looped over as well.
+			List<Object> items = ((ListObject)value).getItems();
+			for (int i = 0; i < items.size(); i++) {
+				variable.assign(frame, items.get(i));
+				int result = body.execute(frame);
+				if (result == BREAK)
+					break;
+				if (result == RETURN)
+					return RETURN;
+			}
+			return NEXT;
+		}
+	}
+	
+	/**
+	 * BREAK or CONTINUE.
+	 */
+	static final class Jump extends Statement {
+		private final int result;
+		
+		Jump(SyntaxTree t, int node, int r) {
+			super(t, node);
+			result = r;
+		}
+		
+		@Override
+		int execute(Frame frame) {
+			return result;
+		}
+	}
+	
+	static final class Return extends Statement {
+		// Null if no value is returned.
+		private final Expression value;
+		
+		Return(SyntaxTree t, int node, Expression v) {
+			super(t, node);
+			value = v;
+		}
+		
+		@Override
+		int execute(Frame frame) {
+			frame.result = value == null ? null : value.evaluate(frame);
+			return RETURN;
+		}
+	}
+	
+	static final class FunctionDeclaration extends Statement {
+		private final Variable variable;
+		private final FunctionCode code;
+		
+		FunctionDeclaration(SyntaxTree t, int node, Variable var, FunctionCode c) {
+			super(t, node);
+			variable = var;
+			code = c;
+		}
+		
+		@Override
+		int execute(Frame frame) {
+			variable.assign(frame, new Closure(code, frame, null));
+			return NEXT;
+		}
+	}
+	
+	static final class ClassDeclaration extends Statement {
+		private final Variable variable;
+		private final String name;
+		// Null if the class doesn't extend another.
+		private final Expression superclass;
+		private final String[] fields;
+		private final Expression[] values;
+		private final FunctionCode[] methods;
+		
+		ClassDeclaration(SyntaxTree t, int node, Variable var, String n, Expression s, String[] f, Expression[] v, FunctionCode[] m) {
+			super(t, node);
+			variable = var;
+			name = n;
+			superclass = s;
+			fields = f;
+			values = v;
+			methods = m;
+		}
+		
+		@Override
+		int execute(Frame frame) {
+			BasicClass parent = null;
+			if (superclass != null) {
+				Object value = superclass.evaluate(frame);
+				if (!(value instanceof BasicClass))
+					throw error("can't extend " + Values.typeName(value));
+				parent = (BasicClass)value;
+			}
+			
+			BasicClass c = new BasicClass(name, parent, frame, fields, values);
+			for (FunctionCode method : methods)
+				c.addMethod(method);
+			variable.assign(frame, c);
+			return NEXT;
+		}
+	}
+	
+	static final class Import extends Statement {
+		private final Variable variable;
+		// Null if there is no module with the name.
+		private final Object module;
+		private final String name;
+		
+		Import(SyntaxTree t, int node, Variable var, Object m, String n) {
+			super(t, node);
+			variable = var;
+			module = m;
+			name = n;
+		}
+		
+		@Override
+		int execute(Frame frame) {
+			if (module == null)
+				throw error("there is no module named " + name);
+			variable.assign(frame, module);
+			return NEXT;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package tech.gitpicard.jbasic.interpreter;
+
+/**
+ * Thrown by Expression.evaluateLong() or evaluateDouble() when the value
+ * wasn't the type that was asked for, so that the node that asked can stop
+ * expecting it. It carries the value, since the expression has already been
+ * worked out and can't be worked out again.
+ */
+final class UnexpectedTypeException extends Exception {
+	private final transient Object value;
+	
+	UnexpectedTypeException(Object v) {
+		// Nodes catch these straight away, so a stack trace is never needed.
+		super(null, null, false, false);
+		value = v;
+	}
+	
+	Object getValue() {
+		return value;
+	}
+	
+	private static final long serialVersionUID = -1290457712836406112L;
+
+}
@@ -0,0 +1,71 @@
+package tech.gitpicard.jbasic.interpreter;
+
+import java.util.List;
+
+/**
+ * Things that can be done to any value.
+ */
+final class Values {
+	private Values() {
+	}
+	
+	/**
+	 * Get the name of the type of a value for error messages.
+	 */
+	static String typeName(Object value) {
+		if (value == null)
+			return "NULL";
+		if (value instanceof Long)
+			return "an integer";
+		if (value instanceof Double)
+			return "a real";
+		if (value instanceof String)
+			return "a string";
+		if (value instanceof Boolean)
+			return "a boolean";
+		if (value instanceof Closure)
+			return "a function";
+		if (value instanceof BasicClass || value instanceof HostClass)
+			return "a class";
+		if (value instanceof BasicObject)
+			return "an object of class " + ((BasicObject)value).getBasicClass().getName();
+		if (value instanceof HostObject)
+			return ((HostObject)value).getTypeName();
+		return value.getClass().getSimpleName();
+	}
+	
+	/**
+	 * Turn a value into the string that adding it to a string gives.
+	 */
+	static String toString(Object value) {
+		if (value == null)
+			return "NULL";
+		if (value instanceof Boolean)
+			return (Boolean)value ? "TRUE" : "FALSE";
+		if (value instanceof ListObject) {
+			StringBuilder out = new StringBuilder("[");
+			List<Object> items = ((ListObject)value).getItems();
+			for (int i = 0; i < items.size(); i++) {
+				if (i > 0)
+					out.append(", ");
+				out.append(toString(items.get(i)));
+			}
+			return out.append(']').toString();
+		}
+		if (value instanceof Closure || value instanceof BasicClass || value instanceof HostClass || value instanceof BasicObject)
+			return "<" + typeName(value) + ">";
+		return value.toString();
+	}
+	
+	/**
+	 * Are two values equal? Integers and reals with the same value are equal,
+	 * and objects are only equal to themselves.
+	 */
+	static boolean equal(Object a, Object b) {
+		if (a instanceof Long && b instanceof Long)
+			return ((Long)a).longValue() == ((Long)b).longValue();
+		if (a instanceof Number && b instanceof Number)
+			return ((Number)a).doubleValue() == ((Number)b).doubleValue();
+		return a == null ? b == null : a.equals(b);
+	}
+}
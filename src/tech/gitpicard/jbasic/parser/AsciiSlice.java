@@ -0,0 +1,54 @@
+package tech.gitpicard.jbasic.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A read only view of ASCII characters stored in a byte buffer. This
+ * lets the lexer hand out the content of tokens found in a memory mapped
+ * file without copying the bytes onto the heap until they are needed.
+ */
+final class AsciiSlice implements CharSequence {
+	private final ByteBuffer bytes;
+	private final int offset;
+	private final int length;
+	
+	/**
+	 * Create a view over the bytes[off, off + len). Every byte in the
+	 * range must be ASCII.
+	 * @param src The buffer holding the characters.
+	 * @param off The index of the first character in the buffer.
+	 * @param len The number of characters in the view.
+	 */
+	AsciiSlice(ByteBuffer src, int off, int len) {
+		bytes = src;
+		offset = off;
+		length = len;
+	}
+	
+	@Override
+	public int length() {
+		return length;
+	}
+	
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException(index);
+		return (char)bytes.get(offset + index);
+	}
+	
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException();
+		return new AsciiSlice(bytes, offset + start, end - start);
+	}
+	
+	@Override
+	public String toString() {
+		byte[] copy = new byte[length];
+		bytes.get(offset, copy);
+		return new String(copy, StandardCharsets.ISO_8859_1);
+	}
+}
@@ -0,0 +1,59 @@
+package tech.gitpicard.jbasic.parser;
+
+/**
+ * Sorts characters into the classes that the lexer cares about. Nearly all
+ * source code is ASCII, so the classes of the first 128 characters are worked
+ * out once and kept in a table, which turns each test into one array load and
+ * a mask. Other characters fall back to the Unicode lookups in Character,
+ * which the table is built from, so both give the same answers.
+ */
+final class CharClass {
+	static final int WHITESPACE = 1;
+	static final int DIGIT = 2;
+	static final int IDENTIFIER_START = 4;
+	static final int IDENTIFIER_PART = 8;
+	
+	private static final byte[] ASCII = new byte[128];
+	
+	static {
+		for (char c = 0; c < ASCII.length; c++)
+			ASCII[c] = (byte)lookup(c);
+	}
+	
+	private CharClass() {
+	}
+	
+	private static int lookup(char c) {
+		int classes = 0;
+		if (Character.isWhitespace(c))
+			classes |= WHITESPACE;
+		if (Character.isDigit(c))
+			classes |= DIGIT;
+		if (Character.isLetter(c))
+			classes |= IDENTIFIER_START;
+		if (Character.isLetterOrDigit(c) || c == '_')
+			classes |= IDENTIFIER_PART;
+		return classes;
+	}
+	
+	/**
+	 * Get every class that a character belongs to.
+	 * @param c The character.
+	 * @return The classes of the character or'd together.
+	 */
+	static int of(char c) {
+		return c < 128 ? ASCII[c] : lookup(c);
+	}
+	
+	static boolean isWhitespace(char c) {
+		return c < 128 ? (ASCII[c] & WHITESPACE) != 0 : Character.isWhitespace(c);
+	}
+	
+	static boolean isDigit(char c) {
+		return c < 128 ? (ASCII[c] & DIGIT) != 0 : Character.isDigit(c);
+	}
+	
+	static boolean isIdentifierPart(char c) {
+		return c < 128 ? (ASCII[c] & IDENTIFIER_PART) != 0 : Character.isLetterOrDigit(c) || c == '_';
+	}
+}
@@ -0,0 +1,86 @@
+package tech.gitpicard.jbasic.parser;
+
+/**
+ * Finds the end of the runs of characters that the lexer spends most of its
+ * time skipping over: indentation, the body of a comment and the rest of an
+ * identifier. This class does it one character at a time in tight loops.
+ * A subclass that looks at many characters at once with the vector API is
+ * used instead when the system property jbasic.vector is set to true and the
+ * jdk.incubator.vector module has been added to the JVM. It is not on by
+ * default because it only pays off for runs much longer than the ones found
+ * in most source code.
+ */
+class CharScanner {
+	private static final CharScanner instance = choose();
+	
+	CharScanner() {
+	}
+	
+	private static CharScanner choose() {
+		if (Boolean.parseBoolean(System.getProperty("jbasic.vector", "false"))
+				&& ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+			try {
+				// Only touch the vector code by name, so that nothing from the
+				// module is needed when it isn't there.
+				Class<?> c = Class.forName("tech.gitpicard.jbasic.parser.VectorCharScanner");
+				CharScanner scanner = (CharScanner)c.getDeclaredConstructor().newInstance();
+				if (scanner.isUseful())
+					return scanner;
+			}
+			catch (ReflectiveOperationException | LinkageError e) {
+				// Fall back to scanning one character at a time.
+			}
+		}
+		return new CharScanner();
+	}
+	
+	/**
+	 * Get the scanner that the lexer should use.
+	 * @return The fastest scanner that works on this JVM.
+	 */
+	static CharScanner get() {
+		return instance;
+	}
+	
+	/**
+	 * Is this scanner any faster than the one that works a character at a time?
+	 */
+	boolean isUseful() {
+		return true;
+	}
+	
+	/**
+	 * Skip over spaces and tabs.
+	 * @return The index of the first character in buf[from, to) that is not a
+	 * space or a tab, or to if there is none.
+	 */
+	int skipSpaces(char[] buf, int from, int to) {
+		int i = from;
+		while (i < to && (buf[i] == ' ' || buf[i] == '\t'))
+			i++;
+		return i;
+	}
+	
+	/**
+	 * Find the next new line.
+	 * @return The index of the first '\n' in buf[from, to), or to if there is none.
+	 */
+	int findNewLine(char[] buf, int from, int to) {
+		int i = from;
+		while (i < to && buf[i] != '\n')
+			i++;
+		return i;
+	}
+	
+	/**
+	 * Skip over ASCII letters, digits and underscores.
+	 * @return The index of the first character in buf[from, to) that can't be
+	 * part of an ASCII identifier, or to if there is none.
+	 */
+	int skipIdentifier(char[] buf, int from, int to) {
+		int i = from;
+		while (i < to && buf[i] < 128 && CharClass.isIdentifierPart(buf[i]))
+			i++;
+		return i;
+	}
+}
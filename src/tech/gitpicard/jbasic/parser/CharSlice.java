@@ -0,0 +1,50 @@
+package tech.gitpicard.jbasic.parser;
+
+/**
+ * A view of part of a character array that can be pointed somewhere else.
+ * The lexer keeps one of these to hand out the content of the current token
+ * without allocating anything, so whatever it shows changes as the lexer
+ * moves on.
+ */
+final class CharSlice implements CharSequence {
+	private char[] buffer;
+	private int offset;
+	private int length;
+	
+	/**
+	 * Point the view at buf[off, off + len).
+	 * @param buf The characters to view.
+	 * @param off The index of the first character in the view.
+	 * @param len The number of characters in the view.
+	 */
+	void set(char[] buf, int off, int len) {
+		buffer = buf;
+		offset = off;
+		length = len;
+	}
+	
+	@Override
+	public int length() {
+		return length;
+	}
+	
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException(index);
+		return buffer[offset + index];
+	}
+	
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		// The view will be moved, so anything taken out of it has to be a copy.
+		if (start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException();
+		return new String(buffer, offset + start, end - start);
+	}
+	
+	@Override
+	public String toString() {
+		return new String(buffer, offset, length);
+	}
+}
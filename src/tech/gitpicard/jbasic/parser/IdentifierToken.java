@@ -0,0 +1,18 @@
+package tech.gitpicard.jbasic.parser;
+
+/**
+ * An identifier along with the id that a symbol table gave its name.
+ */
+final class IdentifierToken extends TextToken {
+	private int symbol;
+	
+	IdentifierToken(Lexeme lex, int off, String name, int id) {
+		super(lex, off, name);
+		symbol = id;
+	}
+	
+	@Override
+	public int getSymbol() {
+		return symbol;
+	}
+}
@@ -0,0 +1,125 @@
+package tech.gitpicard.jbasic.parser;
+
+import java.util.Locale;
+
+/**
+ * Recognizes keywords without regard to case. The table is built from the
+ * token types that have a keyword and uses a perfect hash, so looking up a
+ * word costs one probe into the table followed by one comparison. Words
+ * that are too short or too long to be a keyword are rejected before any
+ * hashing is done. Nothing is allocated during a lookup.
+ */
+final class KeywordTable {
+	private static final TokenType[] table;
+	private static final char[][] spellings;
+	private static final int multiplier;
+	private static final int shift;
+	private static final int minLength;
+	private static final int maxLength;
+	
+	static {
+		int min = Integer.MAX_VALUE;
+		int max = 0;
+		int count = 0;
+		for (TokenType t : TokenType.values()) {
+			if (t.getKeyword() != null) {
+				min = Math.min(min, t.getKeyword().length());
+				max = Math.max(max, t.getKeyword().length());
+				count++;
+			}
+		}
+		
+		// Search for a multiplier that spreads every keyword into its own slot.
+		// Start with a table at least twice as big as the number of keywords and
+		// grow it if no multiplier can be found, which keeps this quick no matter
+		// how many keywords get added.
+		int bits = 1;
+		while ((1 << bits) < count * 2)
+			bits++;
+		
+		TokenType[] slots = null;
+		int m = 0;
+		search:
+		for (;; bits++) {
+			for (int seed = 1; seed < 1 << 16; seed++) {
+				m = seed * 0x9E3779B1 | 1;
+				slots = new TokenType[1 << bits];
+				boolean collision = false;
+				for (TokenType t : TokenType.values()) {
+					String word = t.getKeyword();
+					if (word == null)
+						continue;
+					
+					int index = (hash(word.toCharArray(), 0, word.length()) * m) >>> (32 - bits);
+					if (slots[index] != null) {
+						collision = true;
+						break;
+					}
+					slots[index] = t;
+				}
+				
+				if (!collision)
+					break search;
+			}
+		}
+		
+		table = slots;
+		multiplier = m;
+		shift = 32 - bits;
+		minLength = min;
+		maxLength = max;
+		
+		// Keep the folded spelling next to each slot so the final comparison
+		// does not have to fold the keyword as well.
+		spellings = new char[slots.length][];
+		for (int i = 0; i < slots.length; i++) {
+			if (slots[i] != null)
+				spellings[i] = slots[i].getKeyword().toLowerCase(Locale.ROOT).toCharArray();
+		}
+	}
+	
+	private KeywordTable() {
+	}
+	
+	/**
+	 * Fold a character into the lower case form that keywords are compared in.
+	 * Two characters are equal ignoring case in the same way as with
+	 * String.equalsIgnoreCase() when they fold to the same character.
+	 */
+	private static char fold(char c) {
+		if (c < 128)
+			return c >= 'A' && c <= 'Z' ? (char)(c | 0x20) : c;
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+	
+	private static int hash(char[] buf, int off, int len) {
+		int h = len;
+		for (int i = 0; i < len; i++)
+			h = h * 31 + fold(buf[off + i]);
+		return h;
+	}
+	
+	/**
+	 * Find the keyword spelled by buf[off, off + len).
+	 * @param buf The characters to look at.
+	 * @param off The index of the first character.
+	 * @param len The number of characters in the word.
+	 * @return The token type of the keyword or null if the word is not one.
+	 */
+	static TokenType lookup(char[] buf, int off, int len) {
+		if (len < minLength || len > maxLength)
+			return null;
+		
+		int index = (hash(buf, off, len) * multiplier) >>> shift;
+		char[] word = spellings[index];
+		if (word == null || word.length != len)
+			return null;
+		
+		for (int i = 0; i < len; i++) {
+			if (fold(buf[off + i]) != word[i])
+				return null;
+		}
+		
+		return table[index];
+	}
+}
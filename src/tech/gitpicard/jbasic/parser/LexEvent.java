@@ -0,0 +1,48 @@
+package tech.gitpicard.jbasic.parser;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for each unit of source code that a lexer works
+ * through, from the call to start() until the EOF token. The event's duration
+ * is the time that took and the fields say what the source code was made of,
+ * so slow loads can be matched up with what was in them. Lexers only count
+ * tokens for the event while a recording has it turned on.
+ */
+@Name("jbasic.Lex")
+@Label("Lex")
+@Category("JBASIC")
+@Description("A unit of source code being lexed")
+@StackTrace(false)
+final class LexEvent extends jdk.jfr.Event {
+	@Label("Source")
+	String source;
+	
+	@Label("Characters")
+	long characters;
+	
+	@Label("Tokens")
+	long tokens;
+	
+	@Label("Lines")
+	long lines;
+	
+	@Label("Identifiers")
+	long identifiers;
+	
+	@Label("Keywords")
+	long keywords;
+	
+	@Label("Literals")
+	long literals;
+	
+	@Label("Operators")
+	long operators;
+	
+	@Label("Errors")
+	long errors;
+}
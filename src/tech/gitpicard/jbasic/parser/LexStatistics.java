@@ -0,0 +1,140 @@
+package tech.gitpicard.jbasic.parser;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Adds up what lexers have seen: how many tokens of each type, how many
+ * characters, which syntax errors and how long each unit of source code
+ * took. Give one to any number of lexers with Lexer.setStatistics(), and
+ * take a snapshot() to read a consistent set of numbers while they keep
+ * going. Lexers without statistics don't pay for any of this.
+ */
+public final class LexStatistics {
+	private static final TokenType[] TYPES = TokenType.values();
+	
+	private long[] tokenCounts;
+	private long characters;
+	private long units;
+	private long nanos;
+	private long maxNanos;
+	private Map<String, Long> errors;
+	
+	/**
+	 * Create statistics with nothing counted yet.
+	 */
+	public LexStatistics() {
+		tokenCounts = new long[TYPES.length];
+		errors = new HashMap<>();
+	}
+	
+	/**
+	 * Add the counts for a unit of source code that a lexer has finished.
+	 */
+	synchronized void addUnit(long[] counts, long chars, long time) {
+		for (int i = 0; i < counts.length; i++)
+			tokenCounts[i] += counts[i];
+		characters += chars;
+		units++;
+		nanos += time;
+		maxNanos = Math.max(maxNanos, time);
+	}
+	
+	/**
+	 * Count a syntax error.
+	 */
+	synchronized void addError(String message) {
+		errors.merge(message, 1L, Long::sum);
+	}
+	
+	/**
+	 * Make a copy of the statistics that lexers won't add to.
+	 * @return The copy.
+	 */
+	public synchronized LexStatistics snapshot() {
+		LexStatistics copy = new LexStatistics();
+		copy.tokenCounts = tokenCounts.clone();
+		copy.characters = characters;
+		copy.units = units;
+		copy.nanos = nanos;
+		copy.maxNanos = maxNanos;
+		copy.errors = new HashMap<>(errors);
+		return copy;
+	}
+	
+	/**
+	 * Forget everything that has been counted.
+	 */
+	public synchronized void reset() {
+		tokenCounts = new long[TYPES.length];
+		characters = 0;
+		units = 0;
+		nanos = 0;
+		maxNanos = 0;
+		errors = new HashMap<>();
+	}
+	
+	/**
+	 * Get the number of tokens of one type that were found.
+	 * @param t The type of token.
+	 * @return The number of tokens.
+	 */
+	public synchronized long getTokenCount(TokenType t) {
+		return tokenCounts[t.ordinal()];
+	}
+	
+	/**
+	 * Get the number of tokens of every type that were found, including the
+	 * EOF token at the end of each unit.
+	 * @return The number of tokens.
+	 */
+	public synchronized long getTokenCount() {
+		long total = 0;
+		for (long count : tokenCounts)
+			total += count;
+		return total;
+	}
+	
+	/**
+	 * Get the number of characters of source code that were lexed.
+	 * @return The number of characters.
+	 */
+	public synchronized long getCharacters() {
+		return characters;
+	}
+	
+	/**
+	 * Get the number of units of source code that were lexed to the end.
+	 * @return The number of units.
+	 */
+	public synchronized long getUnits() {
+		return units;
+	}
+	
+	/**
+	 * Get the total time spent on units of source code, from the call to
+	 * start() until the EOF token was found. When the tokens are used as they
+	 * come, this includes the time spent using them.
+	 * @return The time in nanoseconds.
+	 */
+	public synchronized long getNanos() {
+		return nanos;
+	}
+	
+	/**
+	 * Get the longest time spent on one unit of source code.
+	 * @return The time in nanoseconds.
+	 */
+	public synchronized long getMaxNanos() {
+		return maxNanos;
+	}
+	
+	/**
+	 * Get the number of syntax errors that were found with each message.
+	 * @return The number of errors for each message.
+	 */
+	public synchronized Map<String, Long> getErrors() {
+		return Collections.unmodifiableMap(new HashMap<>(errors));
+	}
+}
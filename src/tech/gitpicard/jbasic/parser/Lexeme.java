@@ -0,0 +1,64 @@
+package tech.gitpicard.jbasic.parser;
+
+/**
+ * The part of a token that does not depend on where it was found. The
+ * lexer keeps one lexeme per token type for each unit of source code and
+ * shares it between all of the tokens of that type, so it must never
+ * change once it has been made. When the source file doesn't keep its
+ * lines, each token has a lexeme of its own that also holds its line and
+ * column.
+ */
+final class Lexeme {
+	private final TokenType type;
+	private final SourceFile source;
+	private final String content;
+	private final int line;
+	private final int column;
+	
+	/**
+	 * Create a new lexeme for tokens that are found through their offset.
+	 * @param t The type of the tokens.
+	 * @param file The source code that the tokens are from.
+	 * @param s The content of the tokens or null if each token has its own.
+	 */
+	Lexeme(TokenType t, SourceFile file, String s) {
+		this(t, file, s, 0, 0);
+	}
+	
+	/**
+	 * Create a new lexeme for a single token at a known line and column.
+	 * @param ln The line counting from one, or zero to use the offset.
+	 * @param col The column counting from one.
+	 */
+	Lexeme(TokenType t, SourceFile file, String s, int ln, int col) {
+		type = t;
+		source = file;
+		content = s;
+		line = ln;
+		column = col;
+	}
+	
+	TokenType getType() {
+		return type;
+	}
+	
+	SourceFile getSource() {
+		return source;
+	}
+	
+	String getContent() {
+		return content;
+	}
+	
+	/**
+	 * Get the line of the token, or zero if it has to be worked out from the
+	 * token's offset.
+	 */
+	int getLine() {
+		return line;
+	}
+	
+	int getColumn() {
+		return column;
+	}
+}
@@ -1,7 +1,24 @@
 package tech.gitpicard.jbasic.parser;
 
-import java.util.Stack;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import jdk.jfr.EventType;
+
+import tech.gitpicard.jbasic.Diagnostics;
 import tech.gitpicard.jbasic.IllegalOperationException;
 import tech.gitpicard.jbasic.SyntaxException;
 
@@ -13,9 +30,65 @@ import tech.gitpicard.jbasic.SyntaxException;
  * parser to build a tree.
  */
 public final class Lexer {
+	/**
+	 * Goes up by one whenever a change to the lexer changes the tokens that
+	 * it finds, or a change to TokenBuffer changes how they are written out,
+	 * so that tokens cached by an older lexer aren't used.
+	 */
+	static final int VERSION = 3;
+	private static final int BUFFER_SIZE = 8192;
+	// Looked up once, so that starting a unit only makes an event when a
+	// recording wants it.
+	private static final EventType LEX_EVENT = EventType.getEventType(LexEvent.class);
+	private static final CharScanner SCANNER = CharScanner.get();
+	private static final int MIN_CHUNK_SIZE = 64 * 1024;
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	
+	private SymbolTable symbols;
+	private Diagnostics diagnostics;
+	private LexStatistics statistics;
+	// Only set while statistics or a recording want the unit counted.
+	private long[] tokenCounts;
+	private long errorCount;
+	private long unitStart;
+	private int unitOffset;
+	private LexEvent event;
 	private boolean running;
-	private String sourceName;
-	private Stack<Character> source;
+	private SourceFile source;
+	// Whether the source file keeps a table of where each line starts.
+	private boolean keepLines;
+	private Lexeme[] lexemes;
+	private String text;
+	// The offset where source code given as a string ends.
+	private int textEnd;
+	private Reader reader;
+	private ByteBuffer bytes;
+	private int bytePosition;
+	private char[] buffer;
+	private int position;
+	private int limit;
+	private int bufferOffset;
+	private int tokenStart;
+	private TokenType tokenType;
+	private int tokenOffset;
+	private int tokenLength;
+	// Where the line that the last NEW_LINE token ended starts.
+	private int newLineOffset;
+	private int tokenLine;
+	private int tokenColumn;
+	private boolean tokenEscaped;
+	private long tokenValue;
+	private int tokenSymbol;
+	private CharSlice tokenView;
+	private StringBuilder tokenUnescaped;
+	// The characters in buffer[asciiStart, asciiLimit) were copied one for one
+	// from bytes[asciiStart + byteDelta, asciiLimit + byteDelta).
+	private int asciiStart;
+	private int asciiLimit;
+	private int byteDelta;
 	private int line;
 	private int column;
 	
@@ -23,46 +96,469 @@ public final class Lexer {
 	 * Create a new lexer with no source code.
 	 */
 	public Lexer() {
+		this(null);
+	}
+	
+	/**
+	 * Create a new lexer with no source code that gives identifiers ids
+	 * from a symbol table. The same table can be given to many lexers.
+	 * @param table The symbol table to add identifiers to.
+	 */
+	public Lexer(SymbolTable table) {
+		this(table, null);
+	}
+	
+	/**
+	 * Create a new lexer with no source code that records syntax errors
+	 * rather than throwing them. Each error is reported to the diagnostics
+	 * and the characters in error come back from next() as an ERROR token,
+	 * so a whole unit of source code can be lexed no matter how many errors
+	 * there are in it.
+	 * @param table The symbol table to add identifiers to, or null.
+	 * @param diag Where to report syntax errors, or null to throw them.
+	 */
+	public Lexer(SymbolTable table, Diagnostics diag) {
+		symbols = table;
+		diagnostics = diag;
 		running = false;
+		tokenView = new CharSlice();
+		tokenUnescaped = new StringBuilder();
+	}
+	
+	/**
+	 * Is there at least one more character waiting at the cursor? When the
+	 * buffer has been used up, it is refilled from the source before answering.
+	 * @return True if buffer[position] holds an unconsumed character.
+	 */
+	private boolean hasMore() {
+		return position < limit || fill();
 	}
 	
-	private Token consumeWhitespace() {
+	private boolean fill() {
+		// Check that there is anything left to read.
+		if (reader == null && bytes == null && (text == null || bufferOffset + limit == textEnd))
+			return false;
+		
+		// Everything before the cursor has already been turned into tokens, except
+		// for the token that is being scanned right now. Slide that to the front of
+		// the buffer so it stays in one piece, and make room if it is a big one.
+		int keep = tokenStart < 0 ? position : tokenStart;
+		if (keep > 0) {
+			System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+			bufferOffset += keep;
+			position -= keep;
+			limit -= keep;
+			if (tokenStart >= 0)
+				tokenStart -= keep;
+			asciiStart = Math.max(asciiStart - keep, 0);
+			asciiLimit = Math.max(asciiLimit - keep, 0);
+			byteDelta += keep;
+		}
+		if (buffer.length - limit < 2)
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		
+		int count;
+		if (text != null) {
+			// The string is already in memory, so just copy the next piece of it.
+			int from = bufferOffset + limit;
+			count = Math.min(buffer.length - limit, textEnd - from);
+			text.getChars(from, from + count, buffer, limit);
+		}
+		else if (bytes != null)
+			count = decode(limit, buffer.length - limit);
+		else {
+			try {
+				// Keep reading until at least one character shows up.
+				do {
+					count = reader.read(buffer, limit, buffer.length - limit);
+				} while (count == 0);
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		if (count <= 0) {
+			reader = null;
+			bytes = null;
+			return false;
+		}
+		
+		limit += count;
+		return true;
+	}
+	
+	/**
+	 * Decode UTF-8 from the byte source into the buffer. Each call either copies a
+	 * run of plain ASCII or decodes a run of multi-byte characters, but never both,
+	 * so that the ASCII runs can be tracked as a straight mapping back to the bytes.
+	 * Malformed sequences are replaced with U+FFFD.
+	 * @param off Where in the buffer to start writing.
+	 * @param len The room in the buffer. Must be at least two.
+	 * @return The number of characters written or -1 when there are no more bytes.
+	 */
+	private int decode(int off, int len) {
+		int byteLimit = bytes.limit();
+		if (bytePosition >= byteLimit)
+			return -1;
+		
+		int n = off;
+		int end = off + len;
+		if (bytes.get(bytePosition) >= 0) {
+			// Start a new ASCII run unless this one carries straight on from the last.
+			if (asciiLimit != off || off + byteDelta != bytePosition) {
+				asciiStart = off;
+				byteDelta = bytePosition - off;
+			}
+			
+			while (n < end && bytePosition < byteLimit) {
+				byte b = bytes.get(bytePosition);
+				if (b < 0)
+					break;
+				buffer[n++] = (char)b;
+				bytePosition++;
+			}
+			
+			asciiLimit = n;
+			return n - off;
+		}
+		
+		// Leave one slot spare so that a surrogate pair always fits.
+		while (n < end - 1 && bytePosition < byteLimit) {
+			int b = bytes.get(bytePosition);
+			if (b >= 0)
+				break;
+			
+			int cp = decodeSequence(b & 0xFF, byteLimit);
+			if (Character.isBmpCodePoint(cp))
+				buffer[n++] = (char)cp;
+			else {
+				buffer[n++] = Character.highSurrogate(cp);
+				buffer[n++] = Character.lowSurrogate(cp);
+			}
+		}
+		
+		return n - off;
+	}
+	
+	private int decodeSequence(int b, int byteLimit) {
+		int count;
+		int cp;
+		int min;
+		if (b >= 0xC2 && b <= 0xDF) {
+			count = 1;
+			cp = b & 0x1F;
+			min = 0x80;
+		}
+		else if (b >= 0xE0 && b <= 0xEF) {
+			count = 2;
+			cp = b & 0x0F;
+			min = 0x800;
+		}
+		else if (b >= 0xF0 && b <= 0xF4) {
+			count = 3;
+			cp = b & 0x07;
+			min = 0x10000;
+		}
+		else {
+			bytePosition++;
+			return 0xFFFD;
+		}
+		
+		int p = bytePosition + 1;
+		for (int i = 0; i < count; i++, p++) {
+			if (p >= byteLimit || (bytes.get(p) & 0xC0) != 0x80) {
+				// Skip only the bytes that looked like they belonged together.
+				bytePosition = p;
+				return 0xFFFD;
+			}
+			cp = (cp << 6) | (bytes.get(p) & 0x3F);
+		}
+		
+		bytePosition = p;
+		// Overlong forms, surrogates and anything past U+10FFFF are not valid UTF-8.
+		if (cp < min || cp > Character.MAX_CODE_POINT || (cp >= 0xD800 && cp <= 0xDFFF))
+			return 0xFFFD;
+		return cp;
+	}
+	
+	/**
+	 * Get the content of a token that sits in buffer[begin, end). When the
+	 * whole source code is at hand, the content is handed out as a view over
+	 * the source and only becomes a string if somebody asks for it. This is
+	 * also done for tokens that were copied straight from ASCII in a byte
+	 * source. Only streamed source code, whose buffer gets reused, has to be
+	 * copied.
+	 */
+	private CharSequence content(int begin, int end) {
+		if (text != null)
+			return new SourceSlice(text, bufferOffset + begin, end - begin);
+		if (bytes != null && begin >= asciiStart && end <= asciiLimit)
+			return new AsciiSlice(bytes, begin + byteDelta, end - begin);
+		return new String(buffer, begin, end - begin);
+	}
+	
+	/**
+	 * Get the lexeme shared by every token of the given type in this source.
+	 */
+	private Lexeme lexeme(TokenType t) {
+		// Without a table of lines, each token has to remember where it is.
+		if (!keepLines)
+			return new Lexeme(t, source, t.getSpelling(), tokenLine, tokenColumn);
+		
+		Lexeme lex = lexemes[t.ordinal()];
+		if (lex == null) {
+			lex = new Lexeme(t, source, t.getSpelling());
+			lexemes[t.ordinal()] = lex;
+		}
+		return lex;
+	}
+	
+	private Token token(TokenType t) {
+		// A NEW_LINE token object is put at the start of the line it ends, so
+		// that its offset gives the line and column it is reported at.
+		if (t == TokenType.NEW_LINE)
+			return new Token(lexeme(t), newLineOffset);
+		return new Token(lexeme(t), tokenOffset);
+	}
+	
+	private Token token(TokenType t, CharSequence content) {
+		return new TextToken(lexeme(t), tokenOffset, content);
+	}
+	
+	private int offset() {
+		return bufferOffset + position;
+	}
+	
+	/**
+	 * Skip over white space until reaching a new line, which is a token of its own.
+	 * @return True if a NEW_LINE token was found.
+	 */
+	private boolean consumeWhitespace() {
 		// Parse any white space that could be waiting here.
-		while (!source.empty() && Character.isWhitespace(source.peek())) {
-			char c = source.pop();
+		while (hasMore()) {
+			// Indentation comes in long runs, so skip those in one go.
+			int end = SCANNER.skipSpaces(buffer, position, limit);
+			column += end - position;
+			position = end;
+			if (position == limit)
+				continue;
+			if (!CharClass.isWhitespace(buffer[position]))
+				break;
+			
+			char c = buffer[position++];
 			column++;
 			// Keep track of where we are when we hit a new line.
 			if (c == '\n') {
+				newLineOffset = offset() - column + 1;
 				line++;
 				column = 1;
-				return new Token(TokenType.NEW_LINE, sourceName, line - 1, column, "\n");
+				if (keepLines)
+					source.addLine(offset());
+				tokenOffset = offset() - 1;
+				found(TokenType.NEW_LINE, line - 1, column);
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private void reset(String name) {
+		running = true;
+		source = new SourceFile(name);
+		keepLines = false;
+		lexemes = new Lexeme[TokenType.values().length];
+		tokenType = null;
+		text = null;
+		reader = null;
+		bytes = null;
+		bufferOffset = 0;
+		tokenStart = -1;
+		asciiStart = 0;
+		asciiLimit = 0;
+		byteDelta = 0;
+		line = 1;
+		column = 1;
+		unitOffset = 0;
+		
+		// Counting costs a little on every token, so only do it for someone.
+		tokenCounts = null;
+		event = null;
+		if (LEX_EVENT.isEnabled()) {
+			event = new LexEvent();
+			event.begin();
+		}
+		if (statistics != null || event != null) {
+			tokenCounts = new long[TokenType.values().length];
+			errorCount = 0;
+			unitStart = System.nanoTime();
+		}
+	}
+	
+	/**
+	 * Hand the counts for the unit of source code that was just finished to
+	 * the statistics and the recording.
+	 */
+	private void finish() {
+		long nanos = System.nanoTime() - unitStart;
+		long characters = offset() - unitOffset;
+		if (statistics != null)
+			statistics.addUnit(tokenCounts, characters, nanos);
+		
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.source = source.getName();
+				event.characters = characters;
+				event.errors = errorCount;
+				for (TokenType t : TokenType.values()) {
+					long count = tokenCounts[t.ordinal()];
+					event.tokens += count;
+					if (t == TokenType.NEW_LINE)
+						event.lines += count;
+					else if (t == TokenType.IDENTIFIER)
+						event.identifiers += count;
+					else if (t.isLiteral())
+						event.literals += count;
+					else if (t.getKeyword() != null)
+						event.keywords += count;
+					else if (t.getSpelling() != null && t != TokenType.EOF)
+						event.operators += count;
+				}
+				event.commit();
 			}
 		}
 		
-		return null;
+		tokenCounts = null;
+		event = null;
 	}
 	
 	/**
 	 * Starts parsing source code for tokens. Any source code
 	 * left over from previous parsing will be discarded. The
-	 * source code is transformed into a stack that will be
-	 * iterated character by character for tokens.
+	 * source code is copied a piece at a time into a small
+	 * character array that is walked with a cursor, so the
+	 * lexer never holds a second copy of the whole source.
 	 * @param name The name of the unit of source code to lex.
 	 * @param src The source code to lex.
 	 */
 	public void start(String name, String src) {
-		running = true;
-		sourceName = name;
-		source = new Stack<>();
-		line = 1;
-		column = 1;
+		start(name, src, 0, src.length(), 1);
+	}
+	
+	/**
+	 * Starts parsing the source code in src[begin, end) for tokens. The range
+	 * must start at the beginning of a line, which is numbered firstLine.
+	 * Offsets are counted from the start of src.
+	 */
+	void start(String name, String src, int begin, int end, int firstLine) {
+		reset(name);
+		source = new SourceFile(name, src, firstLine, begin);
+		keepLines = true;
+		line = firstLine;
 		
-		// Push the source code onto the stack so that we can
-		// go through the characters and sequentially parse tokens
-		// from it. We will need to push them on in reverse since
-		// a stack is a first-in last-out data structure.
-		for (int i = src.length() - 1; i >= 0; i--)
-			source.push(src.charAt(i));
+		// The cursor moves forward through the buffer as characters are
+		// consumed, and the buffer is refilled from the string the same way
+		// as from a stream. The content of tokens is taken from the original
+		// string.
+		text = src;
+		textEnd = end;
+		buffer = new char[Math.min(BUFFER_SIZE, end - begin + 2)];
+		bufferOffset = begin;
+		unitOffset = begin;
+		position = 0;
+		limit = 0;
+	}
+	
+	/**
+	 * Starts parsing source code for tokens as it is read from a stream. Any
+	 * source code left over from previous parsing will be discarded. Characters
+	 * are pulled through a fixed size buffer that is refilled as the lexer reaches
+	 * the end of it, so memory use does not grow with the size of the source and
+	 * tokens are available as soon as their characters have arrived. The reader
+	 * is not closed by the lexer. Errors reading from it are thrown from next()
+	 * as an UncheckedIOException.
+	 * @param name The name of the unit of source code to lex.
+	 * @param src The reader that the source code will be read from.
+	 */
+	public void start(String name, Reader src) {
+		reset(name);
+		reader = src;
+		buffer = new char[BUFFER_SIZE];
+		position = 0;
+		limit = 0;
+	}
+	
+	/**
+	 * Starts parsing UTF-8 encoded source code for tokens as it is read from
+	 * a channel. See start(String, Reader) for how the source is buffered.
+	 * @param name The name of the unit of source code to lex.
+	 * @param src The channel that the source code will be read from.
+	 */
+	public void start(String name, ReadableByteChannel src) {
+		start(name, src, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Starts parsing source code for tokens as it is read from a channel. See
+	 * start(String, Reader) for how the source is buffered.
+	 * @param name The name of the unit of source code to lex.
+	 * @param src The channel that the source code will be read from.
+	 * @param charset The encoding of the bytes in the channel.
+	 */
+	public void start(String name, ReadableByteChannel src, Charset charset) {
+		start(name, Channels.newReader(src, charset.newDecoder(), BUFFER_SIZE));
+	}
+	
+	/**
+	 * Starts parsing UTF-8 encoded source code for tokens straight out of a byte
+	 * buffer, usually one that has been memory mapped from a file. The bytes
+	 * between the buffer's position and limit are decoded a small piece at a time
+	 * as the lexer gets to them, and plain ASCII is copied across without any
+	 * decoding at all. The content of identifiers and literals made only of ASCII
+	 * is left in the byte buffer until Token.getContent() is called, so the buffer
+	 * must not be modified while the tokens are still in use. The position of the
+	 * buffer is not changed. As with a stream, the source file doesn't keep
+	 * a table of lines.
+	 * @param name The name of the unit of source code to lex.
+	 * @param src The UTF-8 encoded source code to lex.
+	 */
+	public void start(String name, ByteBuffer src) {
+		start(name, src, false);
+	}
+	
+	/**
+	 * Starts lexing a byte buffer, with a table of lines in the source file if
+	 * lines is set.
+	 */
+	private void start(String name, ByteBuffer src, boolean lines) {
+		reset(name);
+		if (lines) {
+			source = new SourceFile(name, null, 1, 0);
+			keepLines = true;
+		}
+		bytes = src;
+		bytePosition = src.position();
+		buffer = new char[BUFFER_SIZE];
+		position = 0;
+		limit = 0;
+	}
+	
+	/**
+	 * Starts parsing a UTF-8 encoded source file for tokens by memory mapping it
+	 * and lexing the mapped bytes. See start(String, ByteBuffer) for details.
+	 * The name of the source code will be the path of the file. The whole file
+	 * is mapped at once, so unlike a stream its source file keeps a table of
+	 * lines.
+	 * @param file The source file to lex. It must be smaller than 2GB.
+	 * @throws IOException If the file could not be opened or mapped.
+	 */
+	public void start(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// The mapping stays valid after the channel has been closed.
+			start(file.toString(), channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), true);
+		}
 	}
 	
 	/**
@@ -71,76 +567,608 @@ public final class Lexer {
 	 * in the source code. If a syntax error is encountered, the lexer
 	 * will attempt to advance past the error to keep lexing. This will
 	 * allow for multiple syntax errors to be found rather than just one.
+	 * If the lexer has diagnostics, the error is reported to them and an
+	 * ERROR token is returned instead of throwing.
 	 * One the end of the code is reached, a EOF token is returned.
 	 * @return The next token in the source code.
-	 * @throws SyntaxException When a syntax error is encountered.
+	 * @throws SyntaxException When a syntax error is encountered and there are
+	 * no diagnostics to report it to.
 	 */
 	public Token next() throws SyntaxException {
 		if (!running)
 			throw new IllegalOperationException("lexer has no source code to tokenize");
 		
-		Token t = consumeWhitespace();
-		if (t != null)
-			return t;
+		TokenType t = scanCounted();
+		if (t.getSpelling() != null)
+			return token(t);
+		if (t == TokenType.INT_LITERAL || t == TokenType.REAL_LITERAL)
+			return new NumberToken(lexeme(t), tokenOffset, text(), tokenValue);
+		if (t == TokenType.IDENTIFIER && symbols != null) {
+			// Every identifier with the same name shares the string in the table.
+			String name = symbols.getName(tokenSymbol);
+			return new IdentifierToken(lexeme(t), tokenOffset, name, tokenSymbol);
+		}
+		return token(t, text());
+	}
+	
+	/**
+	 * Move on to the next token in the source code without making a Token
+	 * object for it. The token can then be looked at with the getToken methods,
+	 * which reuse the lexer's own state, so walking over source code this way
+	 * allocates nothing for each token. Syntax errors are dealt with the same
+	 * way as with next(), and the two can be mixed.
+	 * @return The type of the token that was found.
+	 * @throws SyntaxException When a syntax error is encountered and there are
+	 * no diagnostics to report it to.
+	 */
+	public TokenType advance() throws SyntaxException {
+		if (!running)
+			throw new IllegalOperationException("lexer has no source code to tokenize");
+		return scanCounted();
+	}
+	
+	private void checkToken() {
+		if (tokenType == null)
+			throw new IllegalOperationException("lexer has not found a token yet");
+	}
+	
+	/**
+	 * Get the type of the token that was found last.
+	 * @return The type of the token.
+	 */
+	public TokenType getTokenType() {
+		checkToken();
+		return tokenType;
+	}
+	
+	/**
+	 * Get the offset of the first character of the token that was found last,
+	 * counted in characters from the start of the source code. For string
+	 * literals this is the opening quote.
+	 * @return The offset of the token.
+	 */
+	public int getTokenStart() {
+		checkToken();
+		return tokenOffset;
+	}
+	
+	/**
+	 * Get the number of characters of source code that the token that was
+	 * found last covers. For string literals this includes the quotes.
+	 * @return The length of the token.
+	 */
+	public int getTokenLength() {
+		checkToken();
+		return tokenLength;
+	}
+	
+	/**
+	 * Get the line that the token that was found last is on.
+	 * @return The line counting from one.
+	 */
+	public int getTokenLine() {
+		checkToken();
+		return tokenLine;
+	}
+	
+	/**
+	 * Get the column that the token that was found last is in.
+	 * @return The column counting from one.
+	 */
+	public int getTokenColumn() {
+		checkToken();
+		return tokenColumn;
+	}
+	
+	/**
+	 * Get the content of the token that was found last, the same as
+	 * Token.getText() would give. The lexer hands out the same view every time
+	 * and points it at the next token when it moves on, so call toString() on
+	 * it to keep the content.
+	 * @return The content of the token.
+	 */
+	public CharSequence getTokenText() {
+		checkToken();
+		if (tokenType.getSpelling() != null)
+			return tokenType.getSpelling();
+		
+		int begin = tokenStart;
+		int end = position;
+		if (tokenType == TokenType.STR_LITERAL) {
+			// Leave off the quotes.
+			begin++;
+			end--;
+			if (tokenEscaped) {
+				tokenView.set(buffer, 0, limit);
+				tokenUnescaped.setLength(0);
+				unescape(tokenView, begin, end, tokenUnescaped);
+				return tokenUnescaped;
+			}
+		}
+		tokenView.set(buffer, begin, end - begin);
+		return tokenView;
+	}
+	
+	/**
+	 * Get the value of the integer literal that was found last.
+	 * @return The value of the literal.
+	 */
+	public long getTokenIntValue() {
+		if (getTokenType() != TokenType.INT_LITERAL)
+			throw new IllegalOperationException("token is not an integer literal");
+		return tokenValue;
+	}
+	
+	/**
+	 * Get the value of the real literal that was found last.
+	 * @return The value of the literal.
+	 */
+	public double getTokenRealValue() {
+		if (getTokenType() != TokenType.REAL_LITERAL)
+			throw new IllegalOperationException("token is not a real literal");
+		return Double.longBitsToDouble(tokenValue);
+	}
+	
+	/**
+	 * Get the id that the symbol table gave to the identifier that was found last.
+	 * @return The symbol id or -1 if the token is not an identifier or the lexer
+	 * has no symbol table.
+	 */
+	public int getTokenSymbol() {
+		if (getTokenType() != TokenType.IDENTIFIER || symbols == null)
+			return -1;
+		return tokenSymbol;
+	}
+	
+	/**
+	 * Tokenize a whole unit of source code at once. The tokens are stored in
+	 * a compact buffer rather than as separate objects, which is better suited
+	 * to tools that walk over the same tokens again and again.
+	 * @param name The name of the unit of source code to lex.
+	 * @param src The source code to lex.
+	 * @return Every token in the source code, ending with the EOF token.
+	 * @throws SyntaxException When a syntax error is encountered.
+	 */
+	public static TokenBuffer tokenizeAll(String name, String src) throws SyntaxException {
+		return tokenize(name, src, 0, src.length(), true, null);
+	}
+	
+	/**
+	 * Tokenize a whole unit of source code at once, reporting syntax errors to
+	 * the diagnostics rather than throwing them. The characters in error are
+	 * kept in the buffer as ERROR tokens.
+	 * @param name The name of the unit of source code to lex.
+	 * @param src The source code to lex.
+	 * @param diag Where to report syntax errors.
+	 * @return Every token in the source code, ending with the EOF token.
+	 */
+	public static TokenBuffer tokenizeAll(String name, String src, Diagnostics diag) {
+		try {
+			return tokenize(name, src, 0, src.length(), true, diag);
+		}
+		catch (SyntaxException e) {
+			// Errors are only thrown when there is nowhere to report them.
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Tokenize src[begin, end), which must start at the beginning of a line.
+	 * @param last Whether the range is at the end of the source code, which
+	 * is the only time that the EOF token is kept.
+	 * @param diag Where to report syntax errors, or null to throw them.
+	 */
+	private static TokenBuffer tokenize(String name, String src, int begin, int end, boolean last, Diagnostics diag) throws SyntaxException {
+		Lexer lexer = new Lexer(null, diag);
+		lexer.start(name, src, begin, end, 1);
+		
+		// Guess at the number of tokens so the arrays rarely have to grow.
+		TokenBuffer tokens = new TokenBuffer(name, src, (end - begin) / 4 + 16);
+		while (true) {
+			TokenType t = lexer.scanCounted();
+			if (t == TokenType.EOF && !last)
+				break;
+			
+			long value = t == TokenType.INT_LITERAL || t == TokenType.REAL_LITERAL ? lexer.tokenValue : 0;
+			tokens.add(t, lexer.tokenOffset, lexer.tokenLength, lexer.tokenLine, lexer.tokenColumn, value);
+			if (t == TokenType.EOF)
+				break;
+		}
+		
+		return tokens;
+	}
+	
+	/**
+	 * Tokenize a whole unit of source code at once using the threads of a
+	 * fork/join pool. String literals and comments never carry on past the
+	 * end of a line, so the source code is split into chunks of whole lines
+	 * that are lexed at the same time and then joined back together, with line
+	 * numbers fixed up to count from the start of the source. The tokens are
+	 * the same as the ones from tokenizeAll(). If there are syntax errors, the
+	 * one nearest the start of the source code is thrown. Small sources are
+	 * simply tokenized on the calling thread.
+	 * @param name The name of the unit of source code to lex.
+	 * @param src The source code to lex.
+	 * @param pool The pool to run the lexers in.
+	 * @return Every token in the source code, ending with the EOF token.
+	 * @throws SyntaxException When a syntax error is encountered.
+	 */
+	public static TokenBuffer tokenizeParallel(String name, String src, ForkJoinPool pool) throws SyntaxException {
+		// Make a few chunks per thread so that threads that finish early can
+		// steal work, but don't bother splitting up anything too small.
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, src.length() / (pool.getParallelism() * 4) + 1);
+		if (pool.getParallelism() < 2 || src.length() < chunkSize * 2)
+			return tokenizeAll(name, src);
+		
+		// Cut the source code just after the first new line past each chunk size.
+		int[] bounds = new int[src.length() / chunkSize + 2];
+		int chunks = 0;
+		int begin = 0;
+		while (begin < src.length()) {
+			int newLine = src.indexOf('\n', begin + chunkSize - 1);
+			int end = newLine < 0 ? src.length() : newLine + 1;
+			bounds[chunks++] = begin;
+			begin = end;
+		}
+		bounds[chunks] = src.length();
+		
+		LexTask task = new LexTask(name, src, bounds, 0, chunks, new TokenBuffer[chunks], new SyntaxException[chunks]);
+		pool.invoke(task);
+		
+		TokenBuffer tokens = new TokenBuffer(name, src, 0);
+		int lineShift = 0;
+		for (int i = 0; i < chunks; i++) {
+			SyntaxException e = task.errors[i];
+			if (e != null)
+				throw new SyntaxException(new SourceFile(name, src), e.getMessage(), e.getSourceLine() + lineShift, e.getSourceColumn(), false);
+			
+			tokens.addAll(task.results[i], lineShift);
+			// Every chunk but the last ends with a new line, and that is the last
+			// line the chunk covers.
+			lineShift = tokens.getSourceLine(tokens.size() - 1);
+		}
+		
+		return tokens;
+	}
+	
+	/**
+	 * Tokenize a whole unit of source code at once using the threads of the
+	 * common fork/join pool. See tokenizeParallel(String, String, ForkJoinPool).
+	 * @param name The name of the unit of source code to lex.
+	 * @param src The source code to lex.
+	 * @return Every token in the source code, ending with the EOF token.
+	 * @throws SyntaxException When a syntax error is encountered.
+	 */
+	public static TokenBuffer tokenizeParallel(String name, String src) throws SyntaxException {
+		return tokenizeParallel(name, src, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Update the tokens of a unit of source code after part of it was replaced.
+	 * Tokens never cross from one line to the next, so only the lines that the
+	 * edit touches are lexed again. The tokens after the edit are moved to their
+	 * new lines and offsets without being lexed.
+	 * @param previous The tokens of the whole source code before the edit, as
+	 * returned by tokenizeAll(), tokenizeParallel() or this method.
+	 * @param offset Where in the old source code the edit starts.
+	 * @param removed The number of characters that were taken out.
+	 * @param inserted The text that was put in their place.
+	 * @return The new tokens along with the range of tokens that changed.
+	 * @throws SyntaxException When a syntax error is encountered in the edited lines.
+	 */
+	public static TokenEdit relex(TokenBuffer previous, int offset, int removed, String inserted) throws SyntaxException {
+		String old = previous.getSource();
+		if (!previous.isWhole())
+			throw new IllegalOperationException("only the tokens of a whole unit of source code can be lexed again");
+		if (offset < 0 || removed < 0 || offset + removed > old.length())
+			throw new IndexOutOfBoundsException("edit [" + offset + ", " + (offset + removed) + ") of " + old.length() + " characters");
+		
+		String src = old.substring(0, offset) + inserted + old.substring(offset + removed);
+		int shift = inserted.length() - removed;
+		
+		// Widen the edit out to whole lines.
+		int begin = old.lastIndexOf('\n', offset - 1) + 1;
+		int oldEnd = old.indexOf('\n', offset + removed);
+		oldEnd = oldEnd < 0 ? old.length() : oldEnd + 1;
+		int newEnd = oldEnd + shift;
+		
+		// The tokens before the first line are kept, and so are the ones after the
+		// last line, unless the edit reaches the end where the EOF token is.
+		int from = previous.indexAt(begin);
+		int to = newEnd == src.length() ? previous.size() : previous.indexAt(oldEnd);
+		
+		// Tokens before a line always end with that line's NEW_LINE token.
+		int firstLine = from == 0 ? 1 : previous.getSourceLine(from - 1) + 1;
+		TokenBuffer lines = tokenize(previous.getSourceName(), src, begin, newEnd, newEnd == src.length(), null);
+		
+		int lineShift = 0;
+		for (int i = 0; i < inserted.length(); i++) {
+			if (inserted.charAt(i) == '\n')
+				lineShift++;
+		}
+		for (int i = offset; i < offset + removed; i++) {
+			if (old.charAt(i) == '\n')
+				lineShift--;
+		}
+		
+		TokenBuffer replacement = new TokenBuffer(previous.getSourceName(), src, lines.size());
+		replacement.addAll(lines, firstLine - 1);
+		TokenBuffer tokens = previous.splice(from, to, replacement, src, shift, lineShift);
+		return new TokenEdit(tokens, from, to, from + replacement.size());
+	}
+	
+	/**
+	 * Lexes a run of chunks, splitting the run in half until there is only
+	 * one chunk left to lex.
+	 */
+	private static final class LexTask extends RecursiveAction {
+		private final String name;
+		private final String src;
+		private final int[] bounds;
+		private final int from;
+		private final int to;
+		final TokenBuffer[] results;
+		final SyntaxException[] errors;
+		
+		LexTask(String n, String s, int[] b, int f, int t, TokenBuffer[] r, SyntaxException[] e) {
+			name = n;
+			src = s;
+			bounds = b;
+			from = f;
+			to = t;
+			results = r;
+			errors = e;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new LexTask(name, src, bounds, from, middle, results, errors),
+						new LexTask(name, src, bounds, middle, to, results, errors));
+				return;
+			}
+			
+			try {
+				boolean last = to == results.length;
+				results[from] = tokenize(name, src, bounds[from], bounds[to], last, null);
+			}
+			catch (SyntaxException e) {
+				errors[from] = e;
+			}
+		}
+		
+		private static final long serialVersionUID = 5920417261398874522L;
+	}
+	
+	/**
+	 * Get the content of the token that scan() just found.
+	 */
+	private CharSequence text() {
+		if (tokenType == TokenType.STR_LITERAL) {
+			// Leave off the quotes.
+			if (tokenEscaped)
+				return unescape(CharBuffer.wrap(buffer), tokenStart + 1, position - 1);
+			return content(tokenStart + 1, position - 1);
+		}
+		return content(tokenStart, position);
+	}
+	
+	/**
+	 * Apply the escape sequences in the body of a string literal that has
+	 * already been checked by the lexer.
+	 * @param src The source code holding the string literal.
+	 * @param begin The index of the first character after the opening quote.
+	 * @param end The index of the closing quote.
+	 * @return The content of the string literal.
+	 */
+	static String unescape(CharSequence src, int begin, int end) {
+		StringBuilder content = new StringBuilder(end - begin);
+		unescape(src, begin, end, content);
+		return content.toString();
+	}
+	
+	/**
+	 * Apply the escape sequences in the body of a string literal, adding the
+	 * result to the end of a string builder.
+	 */
+	private static void unescape(CharSequence src, int begin, int end, StringBuilder content) {
+		for (int i = begin; i < end; i++) {
+			char c = src.charAt(i);
+			if (c != '\\') {
+				content.append(c);
+				continue;
+			}
+			
+			// Insert the correct ASCII character for the escape code.
+			switch (src.charAt(++i)) {
+			case 'n':
+				content.append('\n');
+				break;
+			case 'r':
+				content.append('\r');
+				break;
+			case 't':
+				content.append('\t');
+				break;
+			default:
+				// The only other escapes are for a backslash or a quote, which
+				// stand for themselves.
+				content.append(src.charAt(i));
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Deal with a syntax error in the token being scanned. Without diagnostics
+	 * the error is thrown. Otherwise it is reported and the characters that have
+	 * been consumed for the token become an ERROR token.
+	 * @param msg What went wrong.
+	 * @param ln The line to report the error on.
+	 * @param col The column to report the error in.
+	 * @param start The column the token started in.
+	 * @return The ERROR token type.
+	 * @throws SyntaxException When there are no diagnostics to report to.
+	 */
+	private TokenType error(String msg, int ln, int col, int start) throws SyntaxException {
+		if (tokenCounts != null) {
+			errorCount++;
+			if (statistics != null)
+				statistics.addError(msg);
+		}
+		if (diagnostics == null)
+			throw new SyntaxException(source, msg, ln, col, false);
+		
+		diagnostics.report(source, msg, ln, col);
+		return found(TokenType.ERROR, line, start);
+	}
+	
+	private TokenType found(TokenType t, int ln, int col) {
+		tokenType = t;
+		tokenLine = ln;
+		tokenColumn = col;
+		tokenLength = offset() - tokenOffset;
+		return t;
+	}
+	
+	/**
+	 * Scan over the next token and count it if anyone wants it counted. The
+	 * check is made here rather than in scan(), which would need it at every
+	 * one of its exits.
+	 */
+	private TokenType scanCounted() throws SyntaxException {
+		TokenType t = scan();
+		if (tokenCounts != null) {
+			tokenCounts[t.ordinal()]++;
+			if (t == TokenType.EOF)
+				finish();
+		}
+		return t;
+	}
+	
+	/**
+	 * Scan over the next token in the source code. Rather than building a token,
+	 * this leaves the type, position and extent of the token in the token fields
+	 * so that callers that don't need a Token object don't have to pay for one.
+	 * The characters of the token are kept in buffer[tokenStart, position) until
+	 * the next time this is called.
+	 * @return The type of token that was found.
+	 * @throws SyntaxException When a syntax error is encountered.
+	 */
+	private TokenType scan() throws SyntaxException {
+		tokenStart = -1;
+		if (consumeWhitespace())
+			return tokenType;
 		
 		// Check if we are finished.
-		if (source.empty()) {
+		if (!hasMore()) {
 			running = false;
-			return new Token(TokenType.EOF, sourceName, line, column, "");
+			tokenOffset = offset();
+			return found(TokenType.EOF, line, column);
 		}
 		
 		// Consume a comment if there is one chilling here.
-		if (source.peek() == '\'') {
-			while (!source.empty() && source.peek() != '\n') {
-				source.pop();
-				column++;
+		if (buffer[position] == '\'') {
+			while (hasMore()) {
+				int end = SCANNER.findNewLine(buffer, position, limit);
+				column += end - position;
+				position = end;
+				if (position < limit)
+					break;
 			}
 		}
 		
-		t = consumeWhitespace();
-		if (t != null)
-			return t;
+		if (consumeWhitespace())
+			return tokenType;
 		
 		// Check if we are finished.
-		if (source.empty()) {
+		if (!hasMore()) {
 			running = false;
-			return new Token(TokenType.EOF, sourceName, line, column, "");
-		}		
+			tokenOffset = offset();
+			return found(TokenType.EOF, line, column);
+		}
+		
+		tokenStart = position;
+		tokenOffset = offset();
 		
-		if (Character.isDigit(source.peek())) {
+		// Look the character up once to see what kind of token it can start.
+		int classes = CharClass.of(buffer[position]);
+		if ((classes & CharClass.DIGIT) != 0) {
 			// We have found a number literal. It could still be a integer
 			// or a floating pointer number.
 			int start = column;
-			StringBuilder buffer = new StringBuilder();
 			boolean isInt = true;	// Keeps track of if we have hit a period yet or not.
+			// Work out the value while going over the digits so that nobody has to
+			// parse the number again later. All of the digits are gathered into one
+			// integer and the number of them after the period is counted.
+			long mantissa = 0;
+			int scale = 0;
+			boolean exact = true;
 			
-			while (!source.empty() && (Character.isDigit(source.peek()) || (isInt && source.peek() == '.'))) {
+			while (hasMore() && (CharClass.isDigit(buffer[position]) || (isInt && buffer[position] == '.'))) {
 				column++;
-				buffer.append(source.peek());
-				if (source.pop() == '.')
+				char c = buffer[position++];
+				if (c == '.') {
 					isInt = false;
+					continue;
+				}
+				
+				int digit = c >= '0' && c <= '9' ? c - '0' : Character.digit(c, 10);
+				if (mantissa > (Long.MAX_VALUE - digit) / 10)
+					exact = false;
+				else
+					mantissa = mantissa * 10 + digit;
+				if (!isInt)
+					scale++;
+			}
+			
+			if (isInt) {
+				if (!exact)
+					return error("integer literal is too big", line, start, start);
+				tokenValue = mantissa;
+				return found(TokenType.INT_LITERAL, line, start);
+			}
+			
+			double real;
+			if (exact && mantissa <= 1L << 53 && scale < POWERS_OF_TEN.length) {
+				// Both numbers are exact doubles, so one division rounds correctly.
+				real = mantissa / POWERS_OF_TEN[scale];
+			}
+			else {
+				// Leave the rare long numbers to the library, with the digits made
+				// into plain ASCII for it first.
+				StringBuilder digits = new StringBuilder(position - tokenStart);
+				for (int i = tokenStart; i < position; i++) {
+					char c = buffer[i];
+					digits.append(c == '.' ? c : (char)('0' + Character.digit(c, 10)));
+				}
+				real = Double.parseDouble(digits.toString());
+				if (Double.isInfinite(real))
+					return error("real literal is too big", line, start, start);
 			}
 			
-			return new Token(isInt ? TokenType.INT_LITERAL : TokenType.REAL_LITERAL, sourceName, line, start, buffer.toString());
+			tokenValue = Double.doubleToRawLongBits(real);
+			return found(TokenType.REAL_LITERAL, line, start);
 		}
-		else if (source.peek() == '"') {
+		else if (buffer[position] == '"') {
 			// Move past the opening quotes since they are not apart of the content.
 			int start = column++;
-			source.pop();
-			StringBuilder buffer = new StringBuilder();
+			position++;
+			tokenEscaped = false;
 			
 			while (true) {
 				// We hit the end of the string without there being an end quote
 				// so we will trigger a syntax error.
-				if (source.empty())
-					throw new SyntaxException(sourceName, "expected \"", line, column);
-				char c = source.pop();
-				// We also don't allow new lines without a ending quote.
-				if (c == '\n') {
-					line++;
-					column = 1;
-					throw new SyntaxException(sourceName, "expected \"", line, column);
-				}
+				if (!hasMore())
+					return error("expected \"", line, column, start);
+				char c = buffer[position];
+				// We also don't allow new lines without a ending quote. The new line
+				// is left to be a token of its own so that lexing carries on with
+				// the next line.
+				if (c == '\n')
+					return error("expected \"", line + 1, 1, start);
+				position++;
 				
 				column++;
 				
@@ -148,58 +1176,47 @@ public final class Lexer {
 				if (c == '"')
 					break;
 				else if (c == '\\') {
-					// Handle the logic for string escape sequences.
-					if (source.empty())
-						throw new SyntaxException(sourceName, "expected an escape character", line, column);
-					char next = source.pop();
+					// Handle the logic for string escape sequences. They are only
+					// checked here and applied when the content is asked for.
+					if (!hasMore())
+						return error("expected an escape character", line, column, start);
+					char next = buffer[position];
+					if (next == '\n')
+						return error("unexpected escape character\n", line + 1, 1, start);
+					position++;
 					column++;
+					tokenEscaped = true;
 					
-					// Insert the correct ASCII character for the escape code that we found
-					// in the source.
 					switch (next) {
 					case 'n':
-						buffer.append('\n');
-						break;
 					case 'r':
-						buffer.append('\r');
-						break;
 					case 't':
-						buffer.append('\t');
-						break;
 					case '\\':
-						buffer.append('\\');
-						break;
 					case '"':
-						buffer.append('"');
 						break;
-					case '\n':
-						// New lines are not allowed which is why they fall through
-						// to the default error case but we need special logic here to
-						// make sure that we keep a correct line numbering count.
-						line++;
-						column = 1;
 					default:
-						String msg = "unexpected escape character" + next;
-						throw new SyntaxException(sourceName, msg, line, column);
+						return error("unexpected escape character" + next, line, column, start);
 					}
 				}
-				else {
-					// The character is a part of the string literal so add it in.
-					buffer.append(c);
-				}
 			}
 			
-			return new Token(TokenType.STR_LITERAL, sourceName, line, start, buffer.toString());
+			return found(TokenType.STR_LITERAL, line, start);
 		}
-		else if (Character.isLetter(source.peek())) {
+		else if ((classes & CharClass.IDENTIFIER_START) != 0) {
 			// This indicates an identifier or a keyword.
 			int start = column;
-			StringBuilder buffer = new StringBuilder();
 			
-			while (!source.empty()) {
-				char c = source.peek();
-				if (Character.isLetterOrDigit(c) || c == '_') {
-					buffer.append(source.pop());
+			while (hasMore()) {
+				// Most identifiers are plain ASCII, which can be skipped in one go.
+				int end = SCANNER.skipIdentifier(buffer, position, limit);
+				column += end - position;
+				position = end;
+				if (position == limit)
+					continue;
+				
+				char c = buffer[position];
+				if (CharClass.isIdentifierPart(c)) {
+					position++;
 					column++;
 				}
 				// What we have no longer matches the identifier or keyword
@@ -209,114 +1226,98 @@ public final class Lexer {
 			}
 			
 			// Check to see if what we have is a keyword or constant value.
-			String str = buffer.toString();
-			
-			if (str.equalsIgnoreCase("true"))
-				return new Token(TokenType.TRUE_LITERAL, sourceName, line, start, "TRUE");
-			else if (str.equalsIgnoreCase("false"))
-				return new Token(TokenType.FALSE_LITERAL, sourceName, line, start, "FALSE");
-			else if (str.equalsIgnoreCase("null"))
-				return new Token(TokenType.NULL_LITERAL, sourceName, line, start, "NULL");
-			// Handle all the keywords...
-			else if (str.equalsIgnoreCase("if"))
-				return new Token(TokenType.IF, sourceName, line, start, "IF");
-			else if (str.equalsIgnoreCase("then"))
-				return new Token(TokenType.THEN, sourceName, line, start, "THEN");
-			else if (str.equalsIgnoreCase("else"))
-				return new Token(TokenType.ELSE, sourceName, line, start, "ELSE");
-			else if (str.equalsIgnoreCase("elseif"))
-				return new Token(TokenType.ELSEIF, sourceName, line, start, "ELSEIF");
-			else if (str.equalsIgnoreCase("end"))
-				return new Token(TokenType.END, sourceName, line, start, "END");
-			else if (str.equalsIgnoreCase("while"))
-				return new Token(TokenType.WHILE, sourceName, line, start, "WHILE");
-			else if (str.equalsIgnoreCase("do"))
-				return new Token(TokenType.DO, sourceName, line, start, "DO");
-			else if (str.equalsIgnoreCase("for"))
-				return new Token(TokenType.FOR, sourceName, line, start, "FOR");
-			else if (str.equalsIgnoreCase("in"))
-				return new Token(TokenType.IN, sourceName, line, start, "IN");
-			else if (str.equalsIgnoreCase("continue"))
-				return new Token(TokenType.CONTINUE, sourceName, line, start, "CONTINUE");
-			else if (str.equalsIgnoreCase("break"))
-				return new Token(TokenType.BREAK, sourceName, line, start, "BREAK");
-			else if (str.equalsIgnoreCase("return"))
-				return new Token(TokenType.RETURN, sourceName, line, start, "RETURN");
-			else if (str.equalsIgnoreCase("function"))
-				return new Token(TokenType.FUNCTION, sourceName, line, start, "FUNCTION");
-			else if (str.equalsIgnoreCase("import"))
-				return new Token(TokenType.IMPORT, sourceName, line, start, "IMPORT");
-			else if (str.equalsIgnoreCase("let"))
-				return new Token(TokenType.LET, sourceName, line, start, "LET");
-			else if (str.equalsIgnoreCase("call"))
-				return new Token(TokenType.CALL, sourceName, line, start, "CALL");
-			else if (str.equalsIgnoreCase("new"))
-				return new Token(TokenType.NEW, sourceName, line, start, "NEW");
-			else if (str.equalsIgnoreCase("class"))
-				return new Token(TokenType.CLASS, sourceName, line, start, "CLASS");
-			else if (str.equalsIgnoreCase("private"))
-				return new Token(TokenType.PRIVATE, sourceName, line, start, "PRIVATE");
-			else if (str.equalsIgnoreCase("protected"))
-				return new Token(TokenType.PROTECTED, sourceName, line, start, "PROTECTED");
-			else if (str.equalsIgnoreCase("public"))
-				return new Token(TokenType.PUBLIC, sourceName, line, start, "PUBLIC");
-			else if (str.equalsIgnoreCase("extends"))
-				return new Token(TokenType.EXTENDS, sourceName, line, start, "EXTENDS");
-			else if (str.equalsIgnoreCase("super"))
-				return new Token(TokenType.SUPER, sourceName, line, start, "SUPER");
-			else if (str.equalsIgnoreCase("self"))
-				return new Token(TokenType.SELF, sourceName, line, start, "SELF");
-			else if (str.equalsIgnoreCase("and"))
-				return new Token(TokenType.AND, sourceName, line, start, "AND");
-			else if (str.equalsIgnoreCase("or"))
-				return new Token(TokenType.OR, sourceName, line, start, "OR");
-			else if (str.equalsIgnoreCase("not"))
-				return new Token(TokenType.NOT, sourceName, line, start, "NOT");
+			TokenType keyword = KeywordTable.lookup(buffer, tokenStart, position - tokenStart);
+			if (keyword != null)
+				return found(keyword, line, start);
 			
-			return new Token(TokenType.IDENTIFIER, sourceName, line, start, str);
+			if (symbols != null)
+				tokenSymbol = symbols.intern(buffer, tokenStart, position - tokenStart);
+			return found(TokenType.IDENTIFIER, line, start);
 		}
 		else {
-			// Test for special characters. We can go ahead and pop the character
-			// from the stack because if we don't use it here, then we where unable
-			// to identify it and it will be an error that gets discarded anyways.
-			char c = source.pop();
+			// Test for special characters. We can go ahead and consume the character
+			// because if we don't use it here, then we where unable to identify it
+			// and it will be an error that gets discarded anyways.
+			char c = buffer[position++];
 			column++;
 			
 			switch (c) {
 			case '.':
-				return new Token(TokenType.DOT, sourceName, line, column - 1, ".");
+				return found(TokenType.DOT, line, column - 1);
 			case '+':
-				return new Token(TokenType.PLUS, sourceName, line, column - 1, "+");
+				return found(TokenType.PLUS, line, column - 1);
 			case '-':
-				return new Token(TokenType.MINUS, sourceName, line, column - 1, "-");
+				return found(TokenType.MINUS, line, column - 1);
 			case '*':
-				return new Token(TokenType.STAR, sourceName, line, column - 1, "*");
+				return found(TokenType.STAR, line, column - 1);
 			case '/':
-				return new Token(TokenType.SLASH, sourceName, line, column - 1, "/");
+				return found(TokenType.SLASH, line, column - 1);
 			case '=':
-				return new Token(TokenType.EQUALS, sourceName, line, column - 1, "=");
+				return found(TokenType.EQUALS, line, column - 1);
 			case '<':
-				return new Token(TokenType.LESS_THAN, sourceName, line, column - 1, "<");
+				return found(TokenType.LESS_THAN, line, column - 1);
 			case '>':
-				return new Token(TokenType.GREATER_THAN, sourceName, line, column - 1, ">");
+				return found(TokenType.GREATER_THAN, line, column - 1);
 			case ',':
-				return new Token(TokenType.COMMA, sourceName, line, column - 1, ",");
+				return found(TokenType.COMMA, line, column - 1);
 			case '(':
-				return new Token(TokenType.LEFT_PARAN, sourceName, line, column - 1, "(");
+				return found(TokenType.LEFT_PARAN, line, column - 1);
 			case ')':
-				return new Token(TokenType.RIGHT_PARAN, sourceName, line, column - 1, ")");
+				return found(TokenType.RIGHT_PARAN, line, column - 1);
 			default:
 				// If we make it here, that means we where unable to identify what kind
-				// of token we have. We will throw an exception and consume the token. This
+				// of token we have. We will report an error and consume the token. This
 				// is done so that lexing can continue after hitting an error. This lets the
 				// interpreter report all the syntax errors rather than just the one that stopped
 				// the program.
-				String msg = "unexpected " + c;
-				throw new SyntaxException(sourceName, msg, line, column);
+				return error("unexpected " + c, line, column, column - 1);
 			}
 		}
 	}
 	
+	/**
+	 * Count what this lexer finds in the statistics. This takes effect from
+	 * the next call to start(), and the counts for a unit of source code are
+	 * added once its EOF token has been found.
+	 * @param stats The statistics to add to, or null to stop counting.
+	 */
+	public void setStatistics(LexStatistics stats) {
+		statistics = stats;
+	}
+	
+	/**
+	 * Get the statistics that this lexer counts what it finds in.
+	 * @return The statistics or null if there are none.
+	 */
+	public LexStatistics getStatistics() {
+		return statistics;
+	}
+	
+	/**
+	 * Get the diagnostics that syntax errors are reported to.
+	 * @return The diagnostics or null if syntax errors are thrown.
+	 */
+	public Diagnostics getDiagnostics() {
+		return diagnostics;
+	}
+	
+	/**
+	 * Get the source file of the unit of source code being lexed, which the
+	 * lexer adds lines to as it finds them unless the source code is streamed.
+	 * @return The source file or null if the lexer hasn't been started.
+	 */
+	public SourceFile getSourceFile() {
+		return source;
+	}
+	
+	/**
+	 * Get the symbol table that identifiers are added to.
+	 * @return The symbol table or null if identifiers are not given ids.
+	 */
+	public SymbolTable getSymbolTable() {
+		return symbols;
+	}
+	
 	/**
 	 * Does the lexer still have source code left to tokenize?
 	 * @return True if there is still unlexed code.
@@ -0,0 +1,122 @@
+package tech.gitpicard.jbasic.parser;
+
+/**
+ * The kinds of node in a syntax tree. Each kind says which token the node
+ * points at and what its children are, in order.
+ */
+public enum NodeKind {
+	/**
+	 * A whole unit of source code. The children are its statements.
+	 */
+	PROGRAM,
+	/**
+	 * The statements in the body of an IF, WHILE, FOR or FUNCTION.
+	 */
+	BLOCK,
+	/**
+	 * The string literal naming the module to import, with no children.
+	 */
+	IMPORT,
+	/**
+	 * LET, with the NAME or MEMBER being assigned to and then the value.
+	 */
+	LET,
+	/**
+	 * CALL, with the INVOCATION being called.
+	 */
+	CALL,
+	/**
+	 * IF or ELSEIF, with the condition, the BLOCK to run when it is true and
+	 * then, optionally, a BLOCK for ELSE or an IF for ELSEIF.
+	 */
+	IF,
+	/**
+	 * WHILE, with the condition and the BLOCK to run.
+	 */
+	WHILE,
+	/**
+	 * FOR, with the NAME of the loop variable, the expression to loop over
+	 * and the BLOCK to run.
+	 */
+	FOR,
+	/**
+	 * CONTINUE with no children.
+	 */
+	CONTINUE,
+	/**
+	 * BREAK with no children.
+	 */
+	BREAK,
+	/**
+	 * RETURN, with the value to return if there is one.
+	 */
+	RETURN,
+	/**
+	 * The name of a function, with its PARAMETERS and its BLOCK, or UNPARSED
+	 * if a lazy parser skipped the body. SyntaxTree.getBody() gets the BLOCK
+	 * either way.
+	 */
+	FUNCTION,
+	/**
+	 * The opening parenthesis of a function, with a NAME for each parameter.
+	 */
+	PARAMETERS,
+	/**
+	 * The name of a class, with the NAME of the class it extends if there is
+	 * one and then a FIELD or FUNCTION for each member.
+	 */
+	CLASS,
+	/**
+	 * The name of a field of a class, with its initial value if it has one.
+	 */
+	FIELD,
+	/**
+	 * A literal value with no children.
+	 */
+	LITERAL,
+	/**
+	 * An identifier with no children.
+	 */
+	NAME,
+	/**
+	 * SELF with no children.
+	 */
+	SELF,
+	/**
+	 * SUPER with no children.
+	 */
+	SUPER,
+	/**
+	 * A prefix operator, MINUS or NOT, with its operand.
+	 */
+	UNARY,
+	/**
+	 * An infix operator with its left and right operands.
+	 */
+	BINARY,
+	/**
+	 * The name of a member, with the object it is a member of.
+	 */
+	MEMBER,
+	/**
+	 * The opening parenthesis of a call, with the function being called and
+	 * then each argument.
+	 */
+	INVOCATION,
+	/**
+	 * The name of a class being made with NEW, with each argument.
+	 */
+	NEW,
+	/**
+	 * Stands in for source code with a syntax error in it, pointing at the
+	 * token where the error was found, with no children. A statement with an
+	 * error in its first line keeps its body, with an ERROR in place of the
+	 * children that come before the body.
+	 */
+	ERROR,
+	/**
+	 * Stands in for the body of a function that hasn't been parsed yet,
+	 * pointing at the first token of the body, with no children.
+	 */
+	UNPARSED
+}
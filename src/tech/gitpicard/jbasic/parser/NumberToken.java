@@ -0,0 +1,28 @@
+package tech.gitpicard.jbasic.parser;
+
+/**
+ * A number literal along with the value the lexer worked out for it.
+ */
+final class NumberToken extends TextToken {
+	// Real numbers are stored as their raw bits.
+	private long value;
+	
+	NumberToken(Lexeme lex, int off, CharSequence s, long v) {
+		super(lex, off, s);
+		value = v;
+	}
+	
+	@Override
+	public long getIntValue() {
+		if (getType() != TokenType.INT_LITERAL)
+			return super.getIntValue();
+		return value;
+	}
+	
+	@Override
+	public double getRealValue() {
+		if (getType() != TokenType.REAL_LITERAL)
+			return super.getRealValue();
+		return Double.longBitsToDouble(value);
+	}
+}
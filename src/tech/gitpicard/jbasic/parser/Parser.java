@@ -0,0 +1,767 @@
+package tech.gitpicard.jbasic.parser;
+
+import tech.gitpicard.jbasic.Diagnostics;
+import tech.gitpicard.jbasic.SyntaxException;
+
+/**
+ * Builds the abstract syntax tree of a unit of source code. The parser is
+ * recursive descent for statements and uses precedence climbing for
+ * expressions. It pulls tokens from a lexer one at a time with the lexer's
+ * cursor, so no Token objects are made, and never needs to look more than
+ * one token ahead. Each token is added to a TokenBuffer as it is pulled,
+ * and the nodes of the tree point into that buffer. A parser can be used
+ * for any number of units of source code, one after the other.
+ *
+ * A parser with diagnostics reports every syntax error in one pass instead
+ * of stopping at the first. After an error it skips ahead to the next place
+ * where parsing can safely pick up again, which is the start of the next
+ * line or an END, ELSEIF, ELSE, FUNCTION or CLASS, and leaves an ERROR node
+ * in the tree in place of what it skipped. An error in the first line of an
+ * IF, WHILE, FOR, FUNCTION or CLASS only skips the rest of that line, so the
+ * body is still checked and the END still matched.
+ *
+ * A lazy parser only scans the body of each function to find its END, by
+ * counting the IF, WHILE, FOR, FUNCTION and CLASS keywords that each need an
+ * END of their own, and leaves an UNPARSED node in place of the body. The
+ * tokens of the body are still kept, so the tree can build the body later
+ * when SyntaxTree.getBody() first asks for it. Most of the functions in a
+ * library are never called, so this saves making nodes for them. Syntax
+ * errors in a body that hasn't been parsed are not found until it is.
+ */
+public final class Parser {
+	private Lexer lexer;
+	private Diagnostics diagnostics;
+	private TokenBuffer tokens;
+	private SyntaxTree tree;
+	private boolean lazy;
+	// True while tokens are pulled from the lexer rather than read back from
+	// a finished TokenBuffer.
+	private boolean pulling;
+	// The index in tokens of the token being looked at, and its type.
+	private int current;
+	private TokenType type;
+	
+	/**
+	 * Create a new parser with a symbol table of its own.
+	 */
+	public Parser() {
+		this(new SymbolTable());
+	}
+	
+	/**
+	 * Create a new parser that gives identifiers ids from a symbol table.
+	 * @param table The symbol table to add identifiers to.
+	 */
+	public Parser(SymbolTable table) {
+		this(table, null);
+	}
+	
+	/**
+	 * Create a new parser that reports syntax errors, from both the lexer and
+	 * the parser, to diagnostics rather than throwing them.
+	 * @param table The symbol table to add identifiers to, or null.
+	 * @param diag Where to report syntax errors, or null to throw them.
+	 */
+	public Parser(SymbolTable table, Diagnostics diag) {
+		lexer = new Lexer(table, diag);
+		diagnostics = diag;
+		lazy = false;
+		pulling = false;
+	}
+	
+	/**
+	 * Choose whether to leave the bodies of functions to be parsed when they
+	 * are first needed.
+	 * @param enable True to parse function bodies lazily.
+	 */
+	public void setLazy(boolean enable) {
+		lazy = enable;
+	}
+	
+	/**
+	 * Does the parser leave the bodies of functions to be parsed later?
+	 * @return True if function bodies are parsed lazily.
+	 */
+	public boolean isLazy() {
+		return lazy;
+	}
+	
+	/**
+	 * Parse a whole unit of source code.
+	 * @param name The name of the unit of source code to parse.
+	 * @param src The source code to parse.
+	 * @return The syntax tree. If there were syntax errors it has ERROR nodes
+	 * in it and should not be run.
+	 * @throws SyntaxException When a syntax error is encountered and there are
+	 * no diagnostics to report it to.
+	 */
+	public SyntaxTree parse(String name, String src) throws SyntaxException {
+		lexer.start(name, src);
+		// Guess at the sizes so the arrays rarely have to grow.
+		tokens = new TokenBuffer(name, src, src.length() / 4 + 16);
+		// Skipped function bodies make no nodes, which is most of the code in a
+		// library.
+		int nodes = src.length() / (lazy ? 32 : 5) + 16;
+		tree = new SyntaxTree(tokens, lexer.getSourceFile(), lexer.getSymbolTable(), nodes);
+		current = -1;
+		type = null;
+		pulling = true;
+		try {
+			advance();
+			skipNewLines();
+			tree.setRoot(tree.add(NodeKind.PROGRAM, -1, statements(NodeKind.PROGRAM, -1), 0));
+			return tree;
+		}
+		finally {
+			tokens = null;
+			tree = null;
+			pulling = false;
+		}
+	}
+	
+	/**
+	 * Parse the body of a function that a lazy parser skipped, reading the
+	 * tokens back from the tree, and add its nodes to the tree.
+	 * @param t The tree the function is in.
+	 * @param start The index of the first token of the body.
+	 * @return The BLOCK node for the body.
+	 */
+	int parseBody(SyntaxTree t, int start) throws SyntaxException {
+		tokens = t.getTokens();
+		tree = t;
+		current = start;
+		type = tokens.getType(start);
+		try {
+			// The scan that skipped the body has already matched its END.
+			return block(NodeKind.BLOCK);
+		}
+		finally {
+			tokens = null;
+			tree = null;
+		}
+	}
+	
+	/**
+	 * Move on to the next token, pulling it from the lexer if it hasn't been
+	 * read yet.
+	 */
+	private void advance() throws SyntaxException {
+		if (type == TokenType.EOF && current >= 0)
+			return;
+		
+		current++;
+		if (pulling && current == tokens.size()) {
+			TokenType t = lexer.advance();
+			long value = 0;
+			if (t == TokenType.INT_LITERAL)
+				value = lexer.getTokenIntValue();
+			else if (t == TokenType.REAL_LITERAL)
+				value = Double.doubleToRawLongBits(lexer.getTokenRealValue());
+			tokens.add(t, lexer.getTokenStart(), lexer.getTokenLength(), lexer.getTokenLine(), lexer.getTokenColumn(), value);
+		}
+		type = tokens.getType(current);
+	}
+	
+	private SyntaxException error(String msg) {
+		int line = tokens.getSourceLine(current);
+		int column = tokens.getSourceColumn(current);
+		if (type == TokenType.NEW_LINE && current > 0 && tokens.getType(current - 1) != TokenType.NEW_LINE) {
+			// A new line is put at the start of its line, so point just past the
+			// end of the line's last token instead, which is where something is
+			// missing.
+			line = tokens.getSourceLine(current - 1);
+			column = tokens.getSourceColumn(current - 1) + tokens.getLength(current - 1);
+		}
+		return new SyntaxException(tree.getSourceFile(), msg, line, column, false);
+	}
+	
+	/**
+	 * Report a syntax error, or throw it if there are no diagnostics.
+	 */
+	private void report(SyntaxException e) throws SyntaxException {
+		if (diagnostics == null)
+			throw e;
+		// The lexer has already reported what is wrong with an ERROR token.
+		if (type != TokenType.ERROR)
+			diagnostics.report(tree.getSourceFile(), e.getMessage(), e.getSourceLine(), e.getSourceColumn());
+	}
+	
+	/**
+	 * Deal with a syntax error in a statement by skipping to the start of the
+	 * next line or to a keyword that ends a block or starts a function or class.
+	 * @param start The index of the first token of the statement.
+	 * @return An ERROR node to stand in for the statement.
+	 */
+	private int recover(SyntaxException e, int start) throws SyntaxException {
+		report(e);
+		int node = tree.add(NodeKind.ERROR, current, -1, 0);
+		
+		// Always move past at least one token so the same error isn't found again.
+		if (current == start && type != TokenType.EOF)
+			advance();
+		while (true) {
+			switch (type) {
+			case NEW_LINE:
+				skipNewLines();
+				return node;
+			case EOF:
+			case END:
+			case ELSEIF:
+			case ELSE:
+			case FUNCTION:
+			case CLASS:
+				return node;
+			default:
+				advance();
+			}
+		}
+	}
+	
+	/**
+	 * Deal with a syntax error in the first line of a block statement by
+	 * skipping the rest of the line, so that the body can still be parsed.
+	 * @return An ERROR node to stand in for what was skipped.
+	 */
+	private int recoverLine(SyntaxException e) throws SyntaxException {
+		report(e);
+		int node = tree.add(NodeKind.ERROR, current, -1, 0);
+		while (type != TokenType.NEW_LINE && type != TokenType.EOF)
+			advance();
+		skipNewLines();
+		return node;
+	}
+	
+	/**
+	 * Consume a token of the given type.
+	 * @return The index of the token.
+	 */
+	private int expect(TokenType t) throws SyntaxException {
+		if (type != t) {
+			if (t == TokenType.IDENTIFIER)
+				throw error("expected an identifier");
+			throw error("expected " + t.getSpelling());
+		}
+		
+		int token = current;
+		advance();
+		return token;
+	}
+	
+	private void skipNewLines() throws SyntaxException {
+		while (type == TokenType.NEW_LINE)
+			advance();
+	}
+	
+	/**
+	 * Consume the new line at the end of a statement along with any blank
+	 * lines after it.
+	 */
+	private void endOfStatement() throws SyntaxException {
+		if (type == TokenType.NEW_LINE)
+			skipNewLines();
+		else if (type != TokenType.EOF)
+			throw error("expected a new line");
+	}
+	
+	/**
+	 * Consume the new line after the header of a block.
+	 */
+	private void newLine() throws SyntaxException {
+		if (type != TokenType.NEW_LINE)
+			throw error("expected a new line");
+		skipNewLines();
+	}
+	
+	/**
+	 * Get the symbol of the identifier being looked at, which is always the
+	 * lexer's current token unless a skipped body is being parsed.
+	 */
+	private int symbol() {
+		if (pulling)
+			return lexer.getTokenSymbol();
+		SymbolTable symbols = tree.getSymbolTable();
+		if (symbols == null || type != TokenType.IDENTIFIER)
+			return -1;
+		return symbols.lookup(tokens.getContent(current));
+	}
+	
+	/**
+	 * Consume an identifier and make a NAME node for it.
+	 */
+	private int name() throws SyntaxException {
+		int token = current;
+		int symbol = symbol();
+		expect(TokenType.IDENTIFIER);
+		return tree.add(NodeKind.NAME, token, -1, symbol);
+	}
+	
+	private int statement() throws SyntaxException {
+		int token = current;
+		switch (type) {
+		case IMPORT: {
+			advance();
+			int module = expect(TokenType.STR_LITERAL);
+			return tree.add(NodeKind.IMPORT, module, -1, 0);
+		}
+		case LET: {
+			advance();
+			int target = postfix();
+			if (tree.getKind(target) != NodeKind.NAME && tree.getKind(target) != NodeKind.MEMBER)
+				throw error("expected a variable");
+			expect(TokenType.EQUALS);
+			tree.link(target, expression());
+			return tree.add(NodeKind.LET, token, target, 0);
+		}
+		case CALL: {
+			advance();
+			int call = expression();
+			if (tree.getKind(call) != NodeKind.INVOCATION)
+				throw error("expected a call");
+			return tree.add(NodeKind.CALL, token, call, 0);
+		}
+		case IF:
+			return ifStatement();
+		case WHILE: {
+			advance();
+			int condition;
+			try {
+				condition = expression();
+				expect(TokenType.DO);
+				newLine();
+			}
+			catch (SyntaxException e) {
+				condition = recoverLine(e);
+			}
+			tree.link(condition, block(NodeKind.BLOCK));
+			end();
+			return tree.add(NodeKind.WHILE, token, condition, 0);
+		}
+		case FOR: {
+			advance();
+			int first;
+			int last;
+			try {
+				first = name();
+				expect(TokenType.IN);
+				last = expression();
+				expect(TokenType.DO);
+				newLine();
+				tree.link(first, last);
+			}
+			catch (SyntaxException e) {
+				first = recoverLine(e);
+				last = first;
+			}
+			tree.link(last, block(NodeKind.BLOCK));
+			end();
+			return tree.add(NodeKind.FOR, token, first, 0);
+		}
+		case CONTINUE:
+			advance();
+			return tree.add(NodeKind.CONTINUE, token, -1, 0);
+		case BREAK:
+			advance();
+			return tree.add(NodeKind.BREAK, token, -1, 0);
+		case RETURN: {
+			advance();
+			int value = -1;
+			if (type != TokenType.NEW_LINE && type != TokenType.EOF && !endsBlock())
+				value = expression();
+			return tree.add(NodeKind.RETURN, token, value, 0);
+		}
+		case FUNCTION:
+			return function();
+		case CLASS:
+			return classStatement();
+		default:
+			if (endsBlock())
+				throw error("unexpected " + type.getSpelling());
+			throw error("expected a statement");
+		}
+	}
+	
+	/**
+	 * Is the token being looked at one that ends a block?
+	 */
+	private boolean endsBlock() {
+		return type == TokenType.END || type == TokenType.ELSE || type == TokenType.ELSEIF;
+	}
+	
+	/**
+	 * Parse statements, or the members of a class, up to the token that ends
+	 * them and link them after a node.
+	 * @param container PROGRAM for statements up to the end of the source code,
+	 * BLOCK for ones up to an END, IF for ones up to an END, ELSEIF or ELSE, and
+	 * CLASS for members up to an END.
+	 * @param last The node to link the statements after or -1.
+	 * @return The first statement or -1 if there are none.
+	 */
+	private int statements(NodeKind container, int last) throws SyntaxException {
+		int first = -1;
+		while (type != TokenType.EOF) {
+			if (container != NodeKind.PROGRAM && type == TokenType.END)
+				break;
+			if (container == NodeKind.IF && (type == TokenType.ELSEIF || type == TokenType.ELSE))
+				break;
+			
+			int start = current;
+			int statement;
+			try {
+				statement = container == NodeKind.CLASS ? member() : statement();
+				endOfStatement();
+			}
+			catch (SyntaxException e) {
+				statement = recover(e, start);
+			}
+			if (last >= 0)
+				tree.link(last, statement);
+			if (first < 0)
+				first = statement;
+			last = statement;
+		}
+		return first;
+	}
+	
+	/**
+	 * Parse the body of a block statement.
+	 * @param container BLOCK or IF, see statements().
+	 */
+	private int block(NodeKind container) throws SyntaxException {
+		return tree.add(NodeKind.BLOCK, -1, statements(container, -1), 0);
+	}
+	
+	/**
+	 * Consume the END of a block statement. The block has been parsed up to
+	 * an END or the end of the source code.
+	 */
+	private void end() throws SyntaxException {
+		if (type == TokenType.END)
+			advance();
+		else
+			report(error("expected END"));
+	}
+	
+	/**
+	 * Parse an IF or an ELSEIF, which is an IF nested inside of the one before
+	 * it that shares its END.
+	 */
+	private int ifStatement() throws SyntaxException {
+		int token = current;
+		advance();
+		int condition;
+		try {
+			condition = expression();
+			expect(TokenType.THEN);
+			newLine();
+		}
+		catch (SyntaxException e) {
+			condition = recoverLine(e);
+		}
+		int body = block(NodeKind.IF);
+		tree.link(condition, body);
+		
+		if (type == TokenType.ELSEIF) {
+			tree.link(body, ifStatement());
+			return tree.add(NodeKind.IF, token, condition, 0);
+		}
+		if (type == TokenType.ELSE) {
+			advance();
+			try {
+				newLine();
+			}
+			catch (SyntaxException e) {
+				recoverLine(e);
+			}
+			tree.link(body, block(NodeKind.BLOCK));
+		}
+		end();
+		return tree.add(NodeKind.IF, token, condition, 0);
+	}
+	
+	private int function() throws SyntaxException {
+		advance();
+		int name = current;
+		int symbol = symbol();
+		int parameters;
+		try {
+			expect(TokenType.IDENTIFIER);
+			int paran = expect(TokenType.LEFT_PARAN);
+			int first = -1;
+			int last = -1;
+			if (type != TokenType.RIGHT_PARAN) {
+				while (true) {
+					int parameter = name();
+					if (last < 0)
+						first = parameter;
+					else
+						tree.link(last, parameter);
+					last = parameter;
+					
+					if (type != TokenType.COMMA)
+						break;
+					advance();
+				}
+			}
+			expect(TokenType.RIGHT_PARAN);
+			newLine();
+			parameters = tree.add(NodeKind.PARAMETERS, paran, first, 0);
+		}
+		catch (SyntaxException e) {
+			parameters = recoverLine(e);
+		}
+		
+		tree.link(parameters, lazy ? skipBody() : block(NodeKind.BLOCK));
+		end();
+		return tree.add(NodeKind.FUNCTION, name, parameters, symbol);
+	}
+	
+	/**
+	 * Skip over the body of a function up to the END that matches it.
+	 * @return An UNPARSED node pointing at the first token of the body.
+	 */
+	private int skipBody() throws SyntaxException {
+		int node = tree.add(NodeKind.UNPARSED, current, -1, 0);
+		int depth = 0;
+		while (type != TokenType.EOF) {
+			switch (type) {
+			case IF:
+			case WHILE:
+			case FOR:
+			case FUNCTION:
+			case CLASS:
+				depth++;
+				break;
+			case END:
+				if (depth == 0)
+					return node;
+				depth--;
+				break;
+			default:
+				break;
+			}
+			advance();
+		}
+		return node;
+	}
+	
+	private int classStatement() throws SyntaxException {
+		advance();
+		int name = current;
+		int symbol = symbol();
+		int first = -1;
+		try {
+			expect(TokenType.IDENTIFIER);
+			if (type == TokenType.EXTENDS) {
+				advance();
+				first = name();
+			}
+			newLine();
+		}
+		catch (SyntaxException e) {
+			first = recoverLine(e);
+		}
+		
+		int members = statements(NodeKind.CLASS, first);
+		if (first < 0)
+			first = members;
+		end();
+		return tree.add(NodeKind.CLASS, name, first, symbol);
+	}
+	
+	/**
+	 * Parse a field or a method of a class along with its access modifier.
+	 */
+	private int member() throws SyntaxException {
+		if (type == TokenType.PUBLIC || type == TokenType.PROTECTED || type == TokenType.PRIVATE)
+			advance();
+		
+		if (type == TokenType.FUNCTION)
+			return function();
+		if (type != TokenType.IDENTIFIER)
+			throw error("expected a field or method");
+		
+		int name = current;
+		int symbol = symbol();
+		advance();
+		int value = -1;
+		if (type == TokenType.EQUALS) {
+			advance();
+			value = expression();
+		}
+		return tree.add(NodeKind.FIELD, name, value, symbol);
+	}
+	
+	/**
+	 * Get how tightly an infix operator binds, or zero if the token type is
+	 * not an infix operator.
+	 */
+	private static int precedence(TokenType t) {
+		switch (t) {
+		case OR:
+			return 1;
+		case AND:
+			return 2;
+		case EQUALS:
+		case LESS_THAN:
+		case GREATER_THAN:
+			return 4;
+		case PLUS:
+		case MINUS:
+			return 5;
+		case STAR:
+		case SLASH:
+			return 6;
+		default:
+			return 0;
+		}
+	}
+	
+	private int expression() throws SyntaxException {
+		return binary(0);
+	}
+	
+	/**
+	 * Parse an expression made of operators that bind more tightly than the
+	 * given precedence. Operators of the same precedence group to the left.
+	 */
+	private int binary(int min) throws SyntaxException {
+		int left = unary();
+		while (true) {
+			int p = precedence(type);
+			if (p <= min)
+				return left;
+			
+			int operator = current;
+			advance();
+			tree.link(left, binary(p));
+			left = tree.add(NodeKind.BINARY, operator, left, 0);
+		}
+	}
+	
+	private int unary() throws SyntaxException {
+		int token = current;
+		if (type == TokenType.NOT) {
+			// NOT binds less tightly than comparisons, so NOT a = b is NOT (a = b).
+			advance();
+			return tree.add(NodeKind.UNARY, token, binary(3), 0);
+		}
+		if (type == TokenType.MINUS) {
+			advance();
+			return tree.add(NodeKind.UNARY, token, unary(), 0);
+		}
+		return postfix();
+	}
+	
+	/**
+	 * Parse a primary expression followed by any number of member accesses
+	 * and calls.
+	 */
+	private int postfix() throws SyntaxException {
+		int expr = primary();
+		while (true) {
+			if (type == TokenType.DOT) {
+				advance();
+				int name = current;
+				int symbol = symbol();
+				expect(TokenType.IDENTIFIER);
+				expr = tree.add(NodeKind.MEMBER, name, expr, symbol);
+			}
+			else if (type == TokenType.LEFT_PARAN) {
+				int paran = current;
+				advance();
+				arguments(expr);
+				expr = tree.add(NodeKind.INVOCATION, paran, expr, 0);
+			}
+			else
+				return expr;
+		}
+	}
+	
+	/**
+	 * Parse the arguments of a call up to and including the closing
+	 * parenthesis, linking them after a node.
+	 * @param last The node to link the arguments after or -1.
+	 * @return The first argument or -1 if there are none.
+	 */
+	private int arguments(int last) throws SyntaxException {
+		int first = -1;
+		if (type != TokenType.RIGHT_PARAN) {
+			while (true) {
+				int argument = expression();
+				if (last >= 0)
+					tree.link(last, argument);
+				if (first < 0)
+					first = argument;
+				last = argument;
+				
+				if (type != TokenType.COMMA)
+					break;
+				advance();
+			}
+		}
+		expect(TokenType.RIGHT_PARAN);
+		return first;
+	}
+	
+	private int primary() throws SyntaxException {
+		int token = current;
+		switch (type) {
+		case INT_LITERAL: {
+			int value = tree.addConstant(tokens.getIntValue(current));
+			advance();
+			return tree.add(NodeKind.LITERAL, token, -1, value);
+		}
+		case REAL_LITERAL: {
+			int value = tree.addConstant(Double.doubleToRawLongBits(tokens.getRealValue(current)));
+			advance();
+			return tree.add(NodeKind.LITERAL, token, -1, value);
+		}
+		case STR_LITERAL:
+		case TRUE_LITERAL:
+		case FALSE_LITERAL:
+		case NULL_LITERAL:
+			advance();
+			return tree.add(NodeKind.LITERAL, token, -1, 0);
+		case IDENTIFIER: {
+			int symbol = symbol();
+			advance();
+			return tree.add(NodeKind.NAME, token, -1, symbol);
+		}
+		case SELF:
+			advance();
+			return tree.add(NodeKind.SELF, token, -1, 0);
+		case SUPER:
+			advance();
+			return tree.add(NodeKind.SUPER, token, -1, 0);
+		case NEW: {
+			advance();
+			int name = current;
+			int symbol = symbol();
+			expect(TokenType.IDENTIFIER);
+			expect(TokenType.LEFT_PARAN);
+			return tree.add(NodeKind.NEW, name, arguments(-1), symbol);
+		}
+		case LEFT_PARAN: {
+			advance();
+			int expr = expression();
+			expect(TokenType.RIGHT_PARAN);
+			return expr;
+		}
+		case ERROR:
+			// Only a lexer with diagnostics gives these, and it has already
+			// reported the error.
+			advance();
+			return tree.add(NodeKind.ERROR, token, -1, 0);
+		default:
+			throw error("expected an expression");
+		}
+	}
+	
+	/**
+	 * Get the diagnostics that syntax errors are reported to.
+	 * @return The diagnostics or null if syntax errors are thrown.
+	 */
+	public Diagnostics getDiagnostics() {
+		return diagnostics;
+	}
+}
@@ -0,0 +1,185 @@
+package tech.gitpicard.jbasic.parser;
+
+import java.util.Arrays;
+
+import tech.gitpicard.jbasic.IllegalOperationException;
+
+/**
+ * A unit of source code along with where each of its lines starts. Tokens
+ * and syntax errors share the source file they were found in and only have
+ * to remember a character offset into it, and the line and column are worked
+ * out from the table of line starts when somebody asks for them. When the
+ * text of the source code is known, the source file can also give back the
+ * text of any line, so that errors can show the line they are on.
+ *
+ * The lexer fills in the table as it finds new lines, so a source file that
+ * is still being lexed should only be looked at from the lexer's thread.
+ * Once lexing is over it never changes again. A source file made for source
+ * code that has already been lexed only looks for its lines the first time
+ * they are needed, from any thread. Source code that is streamed
+ * through the lexer has no table at all, so that lexing it takes the same
+ * memory no matter how long it is, and its tokens remember their own line
+ * and column instead.
+ */
+public final class SourceFile {
+	private final String name;
+	private final CharSequence text;
+	private final int firstLine;
+	// Null when the lines aren't kept.
+	private int[] lineStarts;
+	private int lineCount;
+	// Whether the lines are yet to be found, which is only done once.
+	private volatile boolean unscanned;
+	
+	/**
+	 * Create a source file for some source code. Every line in it is found
+	 * the first time a line, column or line count is asked for.
+	 * @param n The name of the unit of source code.
+	 * @param s The source code.
+	 */
+	public SourceFile(String n, CharSequence s) {
+		this(n, s, 1, 0);
+		unscanned = true;
+	}
+	
+	/**
+	 * Create a source file with only its first line, which is numbered ln
+	 * and starts at offset off, for the lexer to add to.
+	 * @param s The source code or null if it isn't kept.
+	 */
+	SourceFile(String n, CharSequence s, int ln, int off) {
+		name = n;
+		text = s;
+		firstLine = ln;
+		lineStarts = new int[] { off };
+		lineCount = 1;
+	}
+	
+	/**
+	 * Create a source file that only has a name, for source code whose lines
+	 * aren't kept.
+	 */
+	SourceFile(String n) {
+		name = n;
+		text = null;
+		firstLine = 1;
+		lineStarts = null;
+		lineCount = 0;
+	}
+	
+	/**
+	 * Record that a line starts at an offset, which must be past the start of
+	 * every line recorded so far.
+	 */
+	void addLine(int offset) {
+		if (lineCount == lineStarts.length)
+			lineStarts = Arrays.copyOf(lineStarts, Math.max(16, lineCount * 2));
+		lineStarts[lineCount++] = offset;
+	}
+	
+	/**
+	 * Find every line in the source code if that hasn't been done yet.
+	 */
+	private void scan() {
+		if (!unscanned)
+			return;
+		synchronized (this) {
+			if (!unscanned)
+				return;
+			for (int i = 0; i < text.length(); i++) {
+				if (text.charAt(i) == '\n')
+					addLine(i + 1);
+			}
+			unscanned = false;
+		}
+	}
+	
+	/**
+	 * Find the index in the table of the line that an offset is on.
+	 */
+	private int lineIndex(int offset) {
+		scan();
+		if (lineStarts == null)
+			throw new IllegalOperationException("the lines of " + name + " aren't kept");
+		int low = 0;
+		int high = lineCount - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (lineStarts[middle] <= offset)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		return low;
+	}
+	
+	/**
+	 * Get the line that the character at an offset is on.
+	 * @param offset The offset from the start of the source code.
+	 * @return The line counting from one.
+	 */
+	public int getLine(int offset) {
+		return firstLine + lineIndex(offset);
+	}
+	
+	/**
+	 * Get the column that the character at an offset is in.
+	 * @param offset The offset from the start of the source code.
+	 * @return The column counting from one.
+	 */
+	public int getColumn(int offset) {
+		int index = lineIndex(offset);
+		return offset - lineStarts[index] + 1;
+	}
+	
+	/**
+	 * Get the text of a line without its new line.
+	 * @param ln The line counting from one.
+	 * @return The text of the line or null if the source code isn't kept or
+	 * the line isn't in the source file.
+	 */
+	public String getLineText(int ln) {
+		scan();
+		int index = ln - firstLine;
+		if (text == null || lineStarts == null || index < 0 || index >= lineCount)
+			return null;
+		
+		int begin = lineStarts[index];
+		int end = index + 1 < lineCount ? lineStarts[index + 1] - 1 : text.length();
+		for (int i = begin; i < end; i++) {
+			// The last line that the lexer has got to may not be finished.
+			if (text.charAt(i) == '\n') {
+				end = i;
+				break;
+			}
+		}
+		if (end > begin && text.charAt(end - 1) == '\r')
+			end--;
+		return text.subSequence(begin, end).toString();
+	}
+	
+	/**
+	 * Get the number of lines that have been found so far.
+	 * @return The number of lines, which is zero if they aren't kept.
+	 */
+	public int getLineCount() {
+		scan();
+		return lineCount;
+	}
+	
+	/**
+	 * Get the name of the unit of source code. Usually, this is a file name.
+	 * @return The name.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Get the source code.
+	 * @return The source code or null if it isn't kept.
+	 */
+	public CharSequence getText() {
+		return text;
+	}
+}
@@ -0,0 +1,48 @@
+package tech.gitpicard.jbasic.parser;
+
+/**
+ * A read only view of part of a unit of source code. The lexer hands these
+ * out as the content of tokens so that the characters don't have to be
+ * copied out of the source until somebody needs them as a string.
+ */
+final class SourceSlice implements CharSequence {
+	private final CharSequence source;
+	private final int offset;
+	private final int length;
+	
+	/**
+	 * Create a view over src[off, off + len).
+	 * @param src The source code.
+	 * @param off The index of the first character in the view.
+	 * @param len The number of characters in the view.
+	 */
+	SourceSlice(CharSequence src, int off, int len) {
+		source = src;
+		offset = off;
+		length = len;
+	}
+	
+	@Override
+	public int length() {
+		return length;
+	}
+	
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException(index);
+		return source.charAt(offset + index);
+	}
+	
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException();
+		return new SourceSlice(source, offset + start, end - start);
+	}
+	
+	@Override
+	public String toString() {
+		return source.subSequence(offset, offset + length).toString();
+	}
+}
@@ -0,0 +1,180 @@
+package tech.gitpicard.jbasic.parser;
+
+import java.util.Arrays;
+
+/**
+ * Gives every distinct identifier a small integer id. A symbol table can be
+ * shared by any number of lexers, including ones running on other threads,
+ * so that the same name in different units of source code gets the same id
+ * and the same string. Later steps can then look names up by id in an array
+ * rather than hashing and comparing strings. Names are compared with case,
+ * the same way that identifiers are. Ids count up from zero in the order the
+ * names were first seen and are never reused.
+ */
+public final class SymbolTable {
+	/**
+	 * A name along with its id. Entries never change, so they can be read
+	 * from the table without holding the lock.
+	 */
+	private static final class Entry {
+		final String name;
+		final int hash;
+		final int id;
+		
+		Entry(String n, int h, int i) {
+			name = n;
+			hash = h;
+			id = i;
+		}
+	}
+	
+	private volatile Entry[] slots;
+	private volatile String[] names;
+	private int count;
+	
+	/**
+	 * Create an empty symbol table.
+	 */
+	public SymbolTable() {
+		slots = new Entry[64];
+		names = new String[32];
+		count = 0;
+	}
+	
+	private static int hash(char[] buf, int off, int len) {
+		// The same hash as String.hashCode().
+		int h = 0;
+		for (int i = 0; i < len; i++)
+			h = 31 * h + buf[off + i];
+		return h;
+	}
+	
+	private static boolean matches(Entry e, int hash, char[] buf, int off, int len) {
+		if (e.hash != hash || e.name.length() != len)
+			return false;
+		
+		for (int i = 0; i < len; i++) {
+			if (e.name.charAt(i) != buf[off + i])
+				return false;
+		}
+		return true;
+	}
+	
+	private static int mix(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+	
+	private static Entry find(Entry[] table, int hash, char[] buf, int off, int len) {
+		int mask = table.length - 1;
+		for (int i = mix(hash) & mask; ; i = (i + 1) & mask) {
+			Entry e = table[i];
+			if (e == null || matches(e, hash, buf, off, len))
+				return e;
+		}
+	}
+	
+	/**
+	 * Get the id of the name in buf[off, off + len), giving it a new id if
+	 * it hasn't been seen before. Nothing is allocated for names that are
+	 * already in the table.
+	 */
+	int intern(char[] buf, int off, int len) {
+		int hash = hash(buf, off, len);
+		Entry e = find(slots, hash, buf, off, len);
+		if (e != null)
+			return e.id;
+		
+		return add(hash, buf, off, len);
+	}
+	
+	private synchronized int add(int hash, char[] buf, int off, int len) {
+		// Somebody else may have added the name since it was looked for.
+		Entry[] table = slots;
+		Entry e = find(table, hash, buf, off, len);
+		if (e != null)
+			return e.id;
+		
+		if ((count + 1) * 2 > table.length)
+			table = grow(table);
+		
+		e = new Entry(new String(buf, off, len), hash, count);
+		int mask = table.length - 1;
+		int i = mix(hash) & mask;
+		while (table[i] != null)
+			i = (i + 1) & mask;
+		table[i] = e;
+		
+		String[] byId = names;
+		if (count == byId.length)
+			byId = Arrays.copyOf(byId, count * 2);
+		byId[count] = e.name;
+		count++;
+		
+		names = byId;
+		slots = table;
+		return e.id;
+	}
+	
+	private static Entry[] grow(Entry[] table) {
+		Entry[] bigger = new Entry[table.length * 2];
+		int mask = bigger.length - 1;
+		for (Entry e : table) {
+			if (e == null)
+				continue;
+			
+			int i = mix(e.hash) & mask;
+			while (bigger[i] != null)
+				i = (i + 1) & mask;
+			bigger[i] = e;
+		}
+		return bigger;
+	}
+	
+	/**
+	 * Get the id of a name, giving it a new id if it hasn't been seen before.
+	 * @param name The name to look up.
+	 * @return The id of the name.
+	 */
+	public int intern(String name) {
+		return intern(name.toCharArray(), 0, name.length());
+	}
+	
+	/**
+	 * Get the id of a name without adding it to the table.
+	 * @param name The name to look up.
+	 * @return The id of the name or -1 if it is not in the table.
+	 */
+	public int lookup(String name) {
+		char[] chars = name.toCharArray();
+		Entry e = find(slots, name.hashCode(), chars, 0, chars.length);
+		return e == null ? -1 : e.id;
+	}
+	
+	/**
+	 * Get the name that was given an id. Every call with the same id
+	 * returns the same string.
+	 * @param id The id of the name.
+	 * @return The name.
+	 */
+	public String getName(int id) {
+		String[] byId = names;
+		if (id >= 0 && id < byId.length && byId[id] != null)
+			return byId[id];
+		
+		// The id may have been handed out by another thread so recently that
+		// this one hasn't seen the name yet.
+		synchronized (this) {
+			if (id < 0 || id >= count)
+				throw new IndexOutOfBoundsException(id);
+			return names[id];
+		}
+	}
+	
+	/**
+	 * Get the number of names in the table. Ids are always less than this.
+	 * @return The number of names.
+	 */
+	public synchronized int size() {
+		return count;
+	}
+}
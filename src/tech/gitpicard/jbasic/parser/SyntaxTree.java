@@ -0,0 +1,343 @@
+package tech.gitpicard.jbasic.parser;
+
+import java.util.Arrays;
+
+import tech.gitpicard.jbasic.IllegalOperationException;
+import tech.gitpicard.jbasic.SyntaxException;
+
+/**
+ * The abstract syntax tree of a unit of source code. Rather than an object
+ * for every node, the nodes are stored in parallel arrays and referred to by
+ * their index, the same way that a TokenBuffer stores tokens. Each node has
+ * a kind, the index of the token it was made from in the tree's tokens, and
+ * links to its first child and its next sibling. Nodes that need a value of
+ * their own, such as number literals, keep it in a separate table. See
+ * NodeKind for which token and children each kind of node has.
+ *
+ * A tree from a lazy parser doesn't have the bodies of its functions until
+ * getBody() is called for them, which parses the body and adds its nodes to
+ * the end of the tree. That is the only thing that changes a tree once the
+ * parser has finished with it, so it should not be done while another thread
+ * is reading the tree.
+ */
+public final class SyntaxTree {
+	private static final NodeKind[] KINDS = NodeKind.values();
+	
+	private TokenBuffer tokens;
+	private SourceFile source;
+	private SymbolTable symbols;
+	private byte[] kinds;
+	private int[] nodeTokens;
+	private int[] children;
+	private int[] siblings;
+	private int[] data;
+	private int count;
+	private long[] constants;
+	private int constantCount;
+	private int root;
+	
+	/**
+	 * Create an empty tree for the parser to fill in.
+	 * @param toks The tokens that the nodes will point at.
+	 * @param src The source file the tokens were found in.
+	 * @param table The symbol table that identifiers got their ids from, or
+	 * null.
+	 * @param capacity The number of nodes to make room for up front.
+	 */
+	SyntaxTree(TokenBuffer toks, SourceFile src, SymbolTable table, int capacity) {
+		tokens = toks;
+		source = src;
+		symbols = table;
+		capacity = Math.max(capacity, 16);
+		kinds = new byte[capacity];
+		nodeTokens = new int[capacity];
+		children = new int[capacity];
+		siblings = new int[capacity];
+		data = new int[capacity];
+		count = 0;
+		constants = new long[16];
+		constantCount = 0;
+		root = -1;
+	}
+	
+	/**
+	 * Add a node whose children, if it has any, are already linked together.
+	 * @param kind The kind of node.
+	 * @param token The index of the token the node was made from or -1.
+	 * @param first The first child or -1.
+	 * @param value The node's own value, whose meaning depends on the kind.
+	 * @return The index of the new node.
+	 */
+	int add(NodeKind kind, int token, int first, int value) {
+		if (count == kinds.length) {
+			int capacity = count * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			nodeTokens = Arrays.copyOf(nodeTokens, capacity);
+			children = Arrays.copyOf(children, capacity);
+			siblings = Arrays.copyOf(siblings, capacity);
+			data = Arrays.copyOf(data, capacity);
+		}
+		
+		kinds[count] = (byte)kind.ordinal();
+		nodeTokens[count] = token;
+		children[count] = first;
+		siblings[count] = -1;
+		data[count] = value;
+		return count++;
+	}
+	
+	/**
+	 * Make one node the next sibling of another.
+	 */
+	void link(int node, int next) {
+		siblings[node] = next;
+	}
+	
+	/**
+	 * Add a number to the table of constants.
+	 * @return The index of the number in the table.
+	 */
+	int addConstant(long bits) {
+		if (constantCount == constants.length)
+			constants = Arrays.copyOf(constants, constantCount * 2);
+		constants[constantCount] = bits;
+		return constantCount++;
+	}
+	
+	void setRoot(int node) {
+		root = node;
+	}
+	
+	private int index(int node) {
+		if (node < 0 || node >= count)
+			throw new IndexOutOfBoundsException(node);
+		return node;
+	}
+	
+	/**
+	 * Get the number of nodes in the tree.
+	 * @return The number of nodes.
+	 */
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Get the PROGRAM node at the root of the tree.
+	 * @return The index of the root node.
+	 */
+	public int getRoot() {
+		return root;
+	}
+	
+	/**
+	 * Get the tokens that the nodes were made from.
+	 * @return The tokens.
+	 */
+	public TokenBuffer getTokens() {
+		return tokens;
+	}
+	
+	/**
+	 * Get the source file that the tree was parsed from.
+	 * @return The source file.
+	 */
+	public SourceFile getSourceFile() {
+		return source;
+	}
+	
+	/**
+	 * Get the symbol table that identifiers got their ids from.
+	 * @return The symbol table or null if the parser didn't have one.
+	 */
+	public SymbolTable getSymbolTable() {
+		return symbols;
+	}
+	
+	/**
+	 * Get the kind of a node.
+	 * @param node The index of the node.
+	 * @return The kind of node.
+	 */
+	public NodeKind getKind(int node) {
+		return KINDS[kinds[index(node)]];
+	}
+	
+	/**
+	 * Get the index of the token that a node was made from.
+	 * @param node The index of the node.
+	 * @return The index of the token in getTokens() or -1 if there isn't one.
+	 */
+	public int getToken(int node) {
+		return nodeTokens[index(node)];
+	}
+	
+	/**
+	 * Get the type of the token that a node was made from, which for a UNARY
+	 * or BINARY node is its operator and for a LITERAL is the kind of literal.
+	 * @param node The index of the node.
+	 * @return The type of token or null if there isn't one.
+	 */
+	public TokenType getTokenType(int node) {
+		int token = nodeTokens[index(node)];
+		return token < 0 ? null : tokens.getType(token);
+	}
+	
+	/**
+	 * Get the content of the token that a node was made from, such as the
+	 * name of a NAME or the text of a string LITERAL.
+	 * @param node The index of the node.
+	 * @return The content or null if there isn't a token.
+	 */
+	public String getContent(int node) {
+		int token = nodeTokens[index(node)];
+		return token < 0 ? null : tokens.getContent(token);
+	}
+	
+	/**
+	 * Get the first child of a node.
+	 * @param node The index of the node.
+	 * @return The index of the first child or -1 if there are no children.
+	 */
+	public int getFirstChild(int node) {
+		return children[index(node)];
+	}
+	
+	/**
+	 * Get the next child of a node's parent.
+	 * @param node The index of the node.
+	 * @return The index of the next sibling or -1 if it is the last child.
+	 */
+	public int getNextSibling(int node) {
+		return siblings[index(node)];
+	}
+	
+	/**
+	 * Get the number of children a node has.
+	 * @param node The index of the node.
+	 * @return The number of children.
+	 */
+	public int getChildCount(int node) {
+		int n = 0;
+		for (int child = children[index(node)]; child >= 0; child = siblings[child])
+			n++;
+		return n;
+	}
+	
+	/**
+	 * Get one of the children of a node.
+	 * @param node The index of the node.
+	 * @param i Which child to get counting from zero.
+	 * @return The index of the child.
+	 */
+	public int getChild(int node, int i) {
+		int child = children[index(node)];
+		for (int n = 0; n < i && child >= 0; n++)
+			child = siblings[child];
+		if (i < 0 || child < 0)
+			throw new IndexOutOfBoundsException(i);
+		return child;
+	}
+	
+	/**
+	 * Get the BLOCK that is the body of a FUNCTION, parsing it first if a lazy
+	 * parser skipped it.
+	 * @param node The index of the FUNCTION node.
+	 * @return The index of the BLOCK node.
+	 * @throws SyntaxException When there is a syntax error in the body.
+	 */
+	public synchronized int getBody(int node) throws SyntaxException {
+		if (getKind(node) != NodeKind.FUNCTION)
+			throw new IllegalOperationException("node is not a function");
+		
+		int header = children[node];
+		int body = siblings[header];
+		if (kinds[body] == NodeKind.UNPARSED.ordinal()) {
+			Parser parser = new Parser(symbols);
+			// Functions nested in the body are left for later too.
+			parser.setLazy(true);
+			body = parser.parseBody(this, nodeTokens[body]);
+			siblings[header] = body;
+		}
+		return body;
+	}
+	
+	/**
+	 * Get the value of an integer LITERAL.
+	 * @param node The index of the node.
+	 * @return The value of the literal.
+	 */
+	public long getIntValue(int node) {
+		if (getTokenType(node) != TokenType.INT_LITERAL)
+			throw new IllegalOperationException("node is not an integer literal");
+		return constants[data[node]];
+	}
+	
+	/**
+	 * Get the value of a real LITERAL.
+	 * @param node The index of the node.
+	 * @return The value of the literal.
+	 */
+	public double getRealValue(int node) {
+		if (getTokenType(node) != TokenType.REAL_LITERAL)
+			throw new IllegalOperationException("node is not a real literal");
+		return Double.longBitsToDouble(constants[data[node]]);
+	}
+	
+	/**
+	 * Get the id that the parser's symbol table gave the identifier of a NAME,
+	 * MEMBER, FUNCTION, CLASS, FIELD or NEW node.
+	 * @param node The index of the node.
+	 * @return The symbol id or -1 if the parser had no symbol table.
+	 */
+	public int getSymbol(int node) {
+		switch (getKind(node)) {
+		case NAME:
+		case MEMBER:
+		case FUNCTION:
+		case CLASS:
+		case FIELD:
+		case NEW:
+			return data[node];
+		default:
+			throw new IllegalOperationException("node has no identifier");
+		}
+	}
+	
+	/**
+	 * Get the access modifier of a FIELD or of a FUNCTION that is a method.
+	 * @param node The index of the node.
+	 * @return PUBLIC, PROTECTED, PRIVATE or null if none was given.
+	 */
+	public TokenType getModifier(int node) {
+		NodeKind kind = getKind(node);
+		if (kind != NodeKind.FIELD && kind != NodeKind.FUNCTION)
+			throw new IllegalOperationException("node can't have an access modifier");
+		
+		// The modifier comes just before the name of a field or the FUNCTION
+		// keyword of a method.
+		int token = nodeTokens[node] - (kind == NodeKind.FIELD ? 1 : 2);
+		if (token < 0)
+			return null;
+		TokenType t = tokens.getType(token);
+		return t == TokenType.PUBLIC || t == TokenType.PROTECTED || t == TokenType.PRIVATE ? t : null;
+	}
+	
+	/**
+	 * Get the line that the token of a node is on.
+	 * @param node The index of the node.
+	 * @return The line counting from one.
+	 */
+	public int getSourceLine(int node) {
+		return tokens.getSourceLine(nodeTokens[index(node)]);
+	}
+	
+	/**
+	 * Get the column that the token of a node is in.
+	 * @param node The index of the node.
+	 * @return The column counting from one.
+	 */
+	public int getSourceColumn(int node) {
+		return tokens.getSourceColumn(nodeTokens[index(node)]);
+	}
+}
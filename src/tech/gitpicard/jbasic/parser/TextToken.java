@@ -0,0 +1,32 @@
+package tech.gitpicard.jbasic.parser;
+
+/**
+ * A token whose content is different from other tokens of the same type,
+ * such as an identifier or a literal.
+ */
+class TextToken extends Token {
+	private CharSequence content;
+	
+	/**
+	 * Creates a new token whose content may still be a view over the
+	 * source code rather than a string of its own.
+	 */
+	TextToken(Lexeme lex, int off, CharSequence s) {
+		super(lex, off);
+		content = s;
+	}
+	
+	@Override
+	public String getContent() {
+		// Content that was left in the source by the lexer is only turned into
+		// a string the first time it is asked for.
+		if (!(content instanceof String))
+			content = content.toString();
+		return (String)content;
+	}
+	
+	@Override
+	public CharSequence getText() {
+		return content;
+	}
+}
@@ -1,16 +1,23 @@
 package tech.gitpicard.jbasic.parser;
 
+import tech.gitpicard.jbasic.IllegalOperationException;
+
 /**
  * Stores information about a specific token. This class
  * stores the type of token but also where the token is
  * found so that useful error information can be preserved.
+ * The type, source file and, for token types with a fixed
+ * spelling, the content are kept in a lexeme that the lexer
+ * shares between every token of that type, so a keyword or
+ * an operator only has to record where it was found. That
+ * is a single offset into the source file, which works out
+ * the line and column from its table of line starts. Tokens
+ * from streamed source code, which has no such table, have
+ * their line and column in a lexeme of their own.
  */
-public final class Token {
-	private TokenType type;
-	private String fileName;
-	private int line;
-	private int column;
-	private String content;
+public class Token {
+	private Lexeme lexeme;
+	private int offset;
 	
 	/**
 	 * Creates a new token from the provided information.
@@ -21,11 +28,18 @@ public final class Token {
 	 * @param s The characters making up the token.
 	 */
 	public Token(TokenType t, String name, int ln, int col, String s) {
-		type = t;
-		fileName = name;
-		line = ln;
-		column = col;
-		content = s;
+		// The token knows its own line and column, so its source file only
+		// needs a name and costs no more than the name itself.
+		this(new Lexeme(t, new SourceFile(name), s, ln, col), col - 1);
+	}
+	
+	/**
+	 * Creates a new token for a lexeme that may be shared with other tokens.
+	 * @param off The offset of the token in the lexeme's source file.
+	 */
+	Token(Lexeme lex, int off) {
+		lexeme = lex;
+		offset = off;
 	}
 	
 	/**
@@ -33,7 +47,7 @@ public final class Token {
 	 * @return Token type.
 	 */
 	public TokenType getType() {
-		return type;
+		return lexeme.getType();
 	}
 	
 	/**
@@ -42,7 +56,25 @@ public final class Token {
 	 * @return The name of where the token is found.
 	 */
 	public String getSourceName() {
-		return fileName;
+		return lexeme.getSource().getName();
+	}
+	
+	/**
+	 * Get the source file that the token was found in.
+	 * @return The source file.
+	 */
+	public SourceFile getSourceFile() {
+		return lexeme.getSource();
+	}
+	
+	/**
+	 * Get where the token starts counting from the start of the source code.
+	 * A NEW_LINE token is put at the start of the line that it ends, which
+	 * is where the lexer reports it to be.
+	 * @return The offset of the first character of the token.
+	 */
+	public int getOffset() {
+		return offset;
 	}
 	
 	/**
@@ -50,7 +82,8 @@ public final class Token {
 	 * @return The line number.
 	 */
 	public int getSourceLine() {
-		return line;
+		int ln = lexeme.getLine();
+		return ln > 0 ? ln : lexeme.getSource().getLine(offset);
 	}
 	
 	/**
@@ -59,10 +92,61 @@ public final class Token {
 	 * @return The column on the line.
 	 */
 	public int getSourceColumn() {
-		return column;
+		if (lexeme.getLine() > 0)
+			return lexeme.getColumn();
+		return lexeme.getSource().getColumn(offset);
 	}
 	
+	/**
+	 * The characters making up the token. For string literals this is the
+	 * text between the quotes with escape sequences already applied.
+	 * @return The content of the token.
+	 */
 	public String getContent() {
-		return content;
+		return lexeme.getContent();
+	}
+	
+	/**
+	 * The characters making up the token without making a string out of
+	 * them. This is usually a view over the source code, so it costs nothing
+	 * until the characters are looked at. Call getContent() if a string that
+	 * can be kept is needed.
+	 * @return The content of the token.
+	 */
+	public CharSequence getText() {
+		return lexeme.getContent();
+	}
+	
+	/**
+	 * Get the value of an integer literal. Tokens from the lexer or a token
+	 * buffer have the value that the lexer worked out while it read the
+	 * digits. A token made by hand parses its content each time instead.
+	 * @return The value of the literal.
+	 */
+	public long getIntValue() {
+		if (getType() != TokenType.INT_LITERAL)
+			throw new IllegalOperationException("token is not an integer literal");
+		return Long.parseLong(getContent());
+	}
+	
+	/**
+	 * Get the value of a real literal. Tokens from the lexer or a token
+	 * buffer have the value that the lexer worked out while it read the
+	 * digits. A token made by hand parses its content each time instead.
+	 * @return The value of the literal.
+	 */
+	public double getRealValue() {
+		if (getType() != TokenType.REAL_LITERAL)
+			throw new IllegalOperationException("token is not a real literal");
+		return Double.parseDouble(getContent());
+	}
+	
+	/**
+	 * Get the id that the lexer's symbol table gave to an identifier.
+	 * @return The symbol id or -1 if the token is not an identifier or the
+	 * lexer was not given a symbol table.
+	 */
+	public int getSymbol() {
+		return -1;
 	}
 }
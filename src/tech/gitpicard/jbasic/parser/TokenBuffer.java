@@ -0,0 +1,504 @@
+package tech.gitpicard.jbasic.parser;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import tech.gitpicard.jbasic.IllegalOperationException;
+
+/**
+ * Stores a whole stream of tokens in a compact form. Rather than keeping
+ * a Token object for each token, the type, position and extent of every
+ * token are stored in parallel arrays and the content is only cut out of
+ * the source code when it is asked for. The value that the lexer worked out
+ * for each number literal is kept as well. Tokens can be looked up by their
+ * index, and a buffer can be sliced into a smaller buffer that shares the
+ * same arrays without copying them. A buffer never changes once the lexer
+ * has finished filling it in.
+ */
+public final class TokenBuffer {
+	private static final TokenType[] TYPES = TokenType.values();
+	
+	private String sourceName;
+	private String source;
+	private byte[] types;
+	private int[] starts;
+	private int[] lengths;
+	private int[] lines;
+	private int[] columns;
+	// The number literals, kept apart so that other tokens don't pay for
+	// them: the index of each one's token in order, and the value the lexer
+	// worked out for it, with reals stored as their raw bits.
+	private int[] numberTokens;
+	private long[] numberValues;
+	private int numberCount;
+	private int first;
+	private int count;
+	// Made the first time a Token object is asked for, and shared by them all.
+	// Its lines are only found if a token's line or column is asked for.
+	private SourceFile sourceFile;
+	private Lexeme[] lexemes;
+	
+	/**
+	 * Create an empty buffer for the lexer to fill in.
+	 * @param name The name of the unit of source code the tokens are from.
+	 * @param src The source code the tokens are from.
+	 * @param capacity The number of tokens to make room for up front.
+	 */
+	TokenBuffer(String name, String src, int capacity) {
+		sourceName = name;
+		source = src;
+		types = new byte[capacity];
+		starts = new int[capacity];
+		lengths = new int[capacity];
+		lines = new int[capacity];
+		columns = new int[capacity];
+		numberTokens = new int[capacity / 8 + 4];
+		numberValues = new long[numberTokens.length];
+		numberCount = 0;
+		first = 0;
+		count = 0;
+	}
+	
+	private TokenBuffer(TokenBuffer other, int from, int to) {
+		sourceName = other.sourceName;
+		source = other.source;
+		types = other.types;
+		starts = other.starts;
+		lengths = other.lengths;
+		lines = other.lines;
+		columns = other.columns;
+		numberTokens = other.numberTokens;
+		numberValues = other.numberValues;
+		numberCount = other.numberCount;
+		first = other.first + from;
+		count = to - from;
+	}
+	
+	/**
+	 * Read a buffer that was written by write().
+	 * @param name The name of the unit of source code the tokens are from.
+	 * @param src The source code the tokens are from.
+	 * @param in The bytes to read the tokens from.
+	 * @param count The number of tokens to read.
+	 * @param numbers The number of number literals among them.
+	 * @return The tokens or null if they can't be the tokens of src.
+	 */
+	static TokenBuffer read(String name, String src, ByteBuffer in, int count, int numbers) {
+		TokenBuffer tokens = new TokenBuffer(name, src, count);
+		in.get(tokens.types);
+		in.position((in.position() + 3) & ~3);
+		for (int[] array : new int[][] { tokens.starts, tokens.lengths, tokens.lines, tokens.columns }) {
+			in.asIntBuffer().get(array);
+			in.position(in.position() + count * 4);
+		}
+		
+		// Only the values are written, so find the tokens they belong to.
+		tokens.numberTokens = new int[numbers];
+		tokens.numberValues = new long[numbers];
+		for (int i = 0; i < count; i++) {
+			if (isNumber(tokens.types[i])) {
+				if (tokens.numberCount == numbers)
+					return null;
+				tokens.numberTokens[tokens.numberCount++] = i;
+			}
+		}
+		if (tokens.numberCount != numbers)
+			return null;
+		in.asLongBuffer().get(tokens.numberValues);
+		in.position(in.position() + numbers * 8);
+		tokens.count = count;
+		return tokens.isValid() ? tokens : null;
+	}
+	
+	private static boolean isNumber(byte t) {
+		return t == TokenType.INT_LITERAL.ordinal() || t == TokenType.REAL_LITERAL.ordinal();
+	}
+	
+	/**
+	 * Check that every token has a real type other than ERROR and sits inside
+	 * the source code after the one before it, with the EOF token last.
+	 */
+	private boolean isValid() {
+		int end = 0;
+		for (int i = first; i < first + count; i++) {
+			int t = types[i];
+			if (t < 0 || t >= TYPES.length || t == TokenType.ERROR.ordinal() || starts[i] < end || lengths[i] < 0
+					|| lengths[i] > source.length() - starts[i] || lines[i] < 1 || columns[i] < 1)
+				return false;
+			end = starts[i] + lengths[i];
+		}
+		return isWhole();
+	}
+	
+	/**
+	 * Get the number of bytes that write() takes for a number of tokens, of
+	 * which numbers are number literals.
+	 */
+	static long sizeInBytes(int count, int numbers) {
+		return ((count + 3) & ~3) + count * 16L + numbers * 8L;
+	}
+	
+	/**
+	 * Get the number of number literals in the buffer.
+	 */
+	int countNumbers() {
+		return numberAt(first + count) - numberAt(first);
+	}
+	
+	/**
+	 * Write the tokens out as their arrays one after the other: the types
+	 * as bytes, padded to a multiple of four, then the starts, lengths, lines
+	 * and columns as ints and the values of the number literals as longs in
+	 * the byte order of the buffer.
+	 * @param out Where to write the tokens.
+	 */
+	void write(ByteBuffer out) {
+		out.put(types, first, count);
+		while ((out.position() & 3) != 0)
+			out.put((byte)0);
+		for (int[] array : new int[][] { starts, lengths, lines, columns }) {
+			out.asIntBuffer().put(array, first, count);
+			out.position(out.position() + count * 4);
+		}
+		int from = numberAt(first);
+		int numbers = countNumbers();
+		out.asLongBuffer().put(numberValues, from, numbers);
+		out.position(out.position() + numbers * 8);
+	}
+	
+	private void grow(int needed) {
+		int capacity = Math.max(Math.max(16, needed), count * 2);
+		types = Arrays.copyOf(types, capacity);
+		starts = Arrays.copyOf(starts, capacity);
+		lengths = Arrays.copyOf(lengths, capacity);
+		lines = Arrays.copyOf(lines, capacity);
+		columns = Arrays.copyOf(columns, capacity);
+	}
+	
+	private void growNumbers(int needed) {
+		int capacity = Math.max(Math.max(4, needed), numberCount * 2);
+		numberTokens = Arrays.copyOf(numberTokens, capacity);
+		numberValues = Arrays.copyOf(numberValues, capacity);
+	}
+	
+	/**
+	 * Find the first number literal whose token is at or after an index into
+	 * the arrays.
+	 * @return The index into the number arrays or numberCount if there is none.
+	 */
+	private int numberAt(int index) {
+		int low = 0;
+		int high = numberCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (numberTokens[middle] < index)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+	
+	/**
+	 * Add a token to the end of the buffer.
+	 * @param value The value of a number literal, with reals as their raw
+	 * bits, or anything for other tokens.
+	 */
+	void add(TokenType t, int start, int length, int line, int column, long value) {
+		if (count == types.length)
+			grow(count + 1);
+		
+		types[count] = (byte)t.ordinal();
+		starts[count] = start;
+		lengths[count] = length;
+		lines[count] = line;
+		columns[count] = column;
+		if (t == TokenType.INT_LITERAL || t == TokenType.REAL_LITERAL) {
+			if (numberCount == numberTokens.length)
+				growNumbers(numberCount + 1);
+			numberTokens[numberCount] = count;
+			numberValues[numberCount] = value;
+			numberCount++;
+		}
+		count++;
+	}
+	
+	/**
+	 * Add all of the tokens in another buffer from the same source code to
+	 * the end of this one.
+	 * @param other The tokens to add.
+	 * @param lineShift The number to add to the line of each token.
+	 */
+	void addAll(TokenBuffer other, int lineShift) {
+		int total = count + other.count;
+		if (total > types.length)
+			grow(total);
+		
+		System.arraycopy(other.types, other.first, types, count, other.count);
+		System.arraycopy(other.starts, other.first, starts, count, other.count);
+		System.arraycopy(other.lengths, other.first, lengths, count, other.count);
+		System.arraycopy(other.columns, other.first, columns, count, other.count);
+		for (int i = 0; i < other.count; i++)
+			lines[count + i] = other.lines[other.first + i] + lineShift;
+		
+		int from = other.numberAt(other.first);
+		int numbers = other.countNumbers();
+		if (numberCount + numbers > numberTokens.length)
+			growNumbers(numberCount + numbers);
+		System.arraycopy(other.numberValues, from, numberValues, numberCount, numbers);
+		for (int i = 0; i < numbers; i++)
+			numberTokens[numberCount + i] = other.numberTokens[from + i] - other.first + count;
+		numberCount += numbers;
+		count = total;
+	}
+	
+	/**
+	 * Check if the buffer holds every token of its source code, from the
+	 * first one through to the EOF token, rather than being a slice.
+	 */
+	boolean isWhole() {
+		return first == 0 && count > 0 && types[count - 1] == TokenType.EOF.ordinal();
+	}
+	
+	/**
+	 * Find the first token that starts at or after an offset in the source.
+	 * @param offset The offset into the source code.
+	 * @return The index of the token or size() if there is none.
+	 */
+	int indexAt(int offset) {
+		// Tokens never overlap, so they are sorted by where they start.
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (starts[first + middle] < offset)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+	
+	/**
+	 * Make a new buffer with the tokens in [from, to) replaced. The tokens after
+	 * the replaced ones are moved to make up for the text that was changed.
+	 * @param from The index of the first token to replace.
+	 * @param to The index after the last token to replace.
+	 * @param replacement The tokens to put in their place.
+	 * @param src The source code after the change.
+	 * @param offsetShift How far the tokens after the change have moved.
+	 * @param lineShift How many lines the tokens after the change have moved.
+	 * @return The new buffer.
+	 */
+	TokenBuffer splice(int from, int to, TokenBuffer replacement, String src, int offsetShift, int lineShift) {
+		int tail = count - to;
+		TokenBuffer tokens = new TokenBuffer(sourceName, src, from + replacement.count + tail);
+		tokens.addAll(slice(0, from), 0);
+		tokens.addAll(replacement, 0);
+		
+		int at = tokens.count;
+		tokens.addAll(slice(to, count), lineShift);
+		for (int i = at; i < tokens.count; i++)
+			tokens.starts[i] += offsetShift;
+		return tokens;
+	}
+	
+	private int index(int i) {
+		if (i < 0 || i >= count)
+			throw new IndexOutOfBoundsException(i);
+		return first + i;
+	}
+	
+	/**
+	 * Get the number of tokens in the buffer.
+	 * @return The number of tokens.
+	 */
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Get the name of the source code unit that the tokens were found in.
+	 * @return The name of where the tokens are found.
+	 */
+	public String getSourceName() {
+		return sourceName;
+	}
+	
+	/**
+	 * Get the source code that the tokens were found in.
+	 * @return The source code.
+	 */
+	public String getSource() {
+		return source;
+	}
+	
+	/**
+	 * Get the type of a token.
+	 * @param i The index of the token.
+	 * @return Token type.
+	 */
+	public TokenType getType(int i) {
+		return TYPES[types[index(i)]];
+	}
+	
+	/**
+	 * Get the offset into the source code of the first character of a token.
+	 * For string literals this is the opening quote.
+	 * @param i The index of the token.
+	 * @return The offset of the token counting from zero.
+	 */
+	public int getStart(int i) {
+		return starts[index(i)];
+	}
+	
+	/**
+	 * Get the number of characters of source code that a token covers. For
+	 * string literals this includes the quotes.
+	 * @param i The index of the token.
+	 * @return The length of the token in the source code.
+	 */
+	public int getLength(int i) {
+		return lengths[index(i)];
+	}
+	
+	/**
+	 * The line number counting from one where a token is found on.
+	 * @param i The index of the token.
+	 * @return The line number.
+	 */
+	public int getSourceLine(int i) {
+		return lines[index(i)];
+	}
+	
+	/**
+	 * The column on the line that a token is found in counting from one.
+	 * @param i The index of the token.
+	 * @return The column on the line.
+	 */
+	public int getSourceColumn(int i) {
+		return columns[index(i)];
+	}
+	
+	/**
+	 * The characters making up a token. This is the same as the content of
+	 * the Token object that the lexer would have made for it, and is built
+	 * from the source code every time it is called.
+	 * @param i The index of the token.
+	 * @return The content of the token.
+	 */
+	public String getContent(int i) {
+		int index = index(i);
+		TokenType t = TYPES[types[index]];
+		if (t.getSpelling() != null)
+			return t.getSpelling();
+		
+		int start = starts[index];
+		int end = start + lengths[index];
+		if (t == TokenType.STR_LITERAL)
+			return Lexer.unescape(source, start + 1, end - 1);
+		return source.substring(start, end);
+	}
+	
+	/**
+	 * The characters making up a token as a view over the source code. Only
+	 * string literals with escape sequences in them have to be copied.
+	 * @param i The index of the token.
+	 * @return The content of the token.
+	 */
+	public CharSequence getText(int i) {
+		int index = index(i);
+		TokenType t = TYPES[types[index]];
+		if (t.getSpelling() != null)
+			return t.getSpelling();
+		
+		int start = starts[index];
+		int length = lengths[index];
+		if (t == TokenType.STR_LITERAL) {
+			// Leave off the quotes.
+			start++;
+			length -= 2;
+			for (int j = start; j < start + length; j++) {
+				if (source.charAt(j) == '\\')
+					return Lexer.unescape(source, start, start + length);
+			}
+		}
+		return new SourceSlice(source, start, length);
+	}
+	
+	/**
+	 * Get the value of an integer literal, as the lexer worked it out.
+	 * @param i The index of the token.
+	 * @return The value of the literal.
+	 */
+	public long getIntValue(int i) {
+		int index = index(i);
+		if (types[index] != TokenType.INT_LITERAL.ordinal())
+			throw new IllegalOperationException("token is not an integer literal");
+		return numberValues[numberAt(index)];
+	}
+	
+	/**
+	 * Get the value of a real literal, as the lexer worked it out.
+	 * @param i The index of the token.
+	 * @return The value of the literal.
+	 */
+	public double getRealValue(int i) {
+		int index = index(i);
+		if (types[index] != TokenType.REAL_LITERAL.ordinal())
+			throw new IllegalOperationException("token is not a real literal");
+		return Double.longBitsToDouble(numberValues[numberAt(index)]);
+	}
+	
+	/**
+	 * Get the lexeme shared by every token of a type that get() makes.
+	 */
+	private synchronized Lexeme lexeme(TokenType t) {
+		if (lexemes == null) {
+			sourceFile = new SourceFile(sourceName, source);
+			lexemes = new Lexeme[TYPES.length];
+		}
+		Lexeme lex = lexemes[t.ordinal()];
+		if (lex == null) {
+			lex = new Lexeme(t, sourceFile, t.getSpelling());
+			lexemes[t.ordinal()] = lex;
+		}
+		return lex;
+	}
+	
+	/**
+	 * Make a Token object for one of the tokens in the buffer. The tokens
+	 * share one source file, which is made for the buffer's source code the
+	 * first time this is called and only finds its lines once a line or
+	 * column is asked for.
+	 * @param i The index of the token.
+	 * @return The token.
+	 */
+	public Token get(int i) {
+		int index = index(i);
+		TokenType t = TYPES[types[index]];
+		int start = starts[index];
+		if (t == TokenType.NEW_LINE) {
+			// The lexer puts NEW_LINE tokens at the start of the line they end.
+			start = source.lastIndexOf('\n', start - 1) + 1;
+		}
+		if (t.getSpelling() != null)
+			return new Token(lexeme(t), start);
+		if (t == TokenType.INT_LITERAL || t == TokenType.REAL_LITERAL)
+			return new NumberToken(lexeme(t), start, getText(i), numberValues[numberAt(index)]);
+		return new TextToken(lexeme(t), start, getText(i));
+	}
+	
+	/**
+	 * Get a view of some of the tokens in this buffer. The view shares its
+	 * storage with this buffer, so making one is cheap.
+	 * @param from The index of the first token in the view.
+	 * @param to The index after the last token in the view.
+	 * @return The tokens in [from, to).
+	 */
+	public TokenBuffer slice(int from, int to) {
+		if (from < 0 || to > count || from > to)
+			throw new IndexOutOfBoundsException("slice [" + from + ", " + to + ") of " + count + " tokens");
+		return new TokenBuffer(this, from, to);
+	}
+}
@@ -0,0 +1,232 @@
+package tech.gitpicard.jbasic.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import tech.gitpicard.jbasic.IllegalOperationException;
+import tech.gitpicard.jbasic.SyntaxException;
+
+/**
+ * Keeps the tokens of source code in a directory so that source code that
+ * has been seen before doesn't have to be lexed again. Each unit of source
+ * code gets a file named after a hash of its content, holding the token
+ * arrays of its TokenBuffer in a compact binary form that is memory mapped
+ * when it is read back. The files also record the lexer version and the
+ * token types they were made with, so a newer lexer never uses stale tokens.
+ * When the files take up more than the size limit, the ones that were used
+ * least recently are deleted. Only source code without syntax errors is
+ * cached, and a file that doesn't hold sensible tokens for its source code
+ * is treated as if it wasn't there. Any number of caches, in any number of
+ * processes, can share a directory.
+ */
+public final class TokenCache {
+	private static final int MAGIC = 0x4A42544B;	// "JBTK"
+	private static final int HEADER_SIZE = 28;
+	private static final String SUFFIX = ".tok";
+	private static final int TYPES = typesFingerprint();
+	
+	private Path directory;
+	private long maxBytes;
+	
+	/**
+	 * Create a cache that keeps its files in a directory.
+	 * @param dir The directory for the cache files. It is created if it
+	 * doesn't exist yet.
+	 * @param max The most bytes that the cache files may take up.
+	 * @throws IOException If the directory could not be created.
+	 */
+	public TokenCache(Path dir, long max) throws IOException {
+		directory = Files.createDirectories(dir);
+		maxBytes = max;
+	}
+	
+	private static int typesFingerprint() {
+		// Adding, removing or reordering token types changes what the type
+		// bytes in a file mean.
+		int h = 0;
+		for (TokenType t : TokenType.values())
+			h = h * 31 + t.name().hashCode();
+		return h;
+	}
+	
+	private static long hash(String src) {
+		// 64 bit FNV-1a over the characters.
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < src.length(); i++)
+			h = (h ^ src.charAt(i)) * 0x100000001b3L;
+		return h;
+	}
+	
+	private Path file(String src) {
+		return directory.resolve(String.format("%016x-%d%s", hash(src), Lexer.VERSION, SUFFIX));
+	}
+	
+	/**
+	 * Get the tokens of a unit of source code, from the cache if they are in it
+	 * or else by lexing it and adding the tokens to the cache.
+	 * @param name The name of the unit of source code.
+	 * @param src The source code.
+	 * @return Every token in the source code, ending with the EOF token.
+	 * @throws SyntaxException When a syntax error is encountered.
+	 * @throws IOException If the tokens could not be written to the cache.
+	 */
+	public TokenBuffer tokenize(String name, String src) throws SyntaxException, IOException {
+		TokenBuffer tokens = load(name, src);
+		if (tokens == null) {
+			tokens = Lexer.tokenizeAll(name, src);
+			store(tokens);
+		}
+		return tokens;
+	}
+	
+	/**
+	 * Get the tokens of a unit of source code from the cache.
+	 * @param name The name of the unit of source code.
+	 * @param src The source code.
+	 * @return The tokens or null if they are not in the cache.
+	 */
+	public TokenBuffer load(String name, String src) {
+		Path path = file(src);
+		MappedByteBuffer mapped;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		catch (IOException e) {
+			// Missing or unreadable files are simply not cached.
+			return null;
+		}
+		
+		ByteBuffer in = mapped.order(ByteOrder.LITTLE_ENDIAN);
+		if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC || in.getInt() != Lexer.VERSION || in.getInt() != TYPES
+				|| in.getInt() != src.length() || in.getInt() != src.hashCode()) {
+			// A different source with the same hash, or a broken file.
+			return null;
+		}
+		
+		int count = in.getInt();
+		int numbers = in.getInt();
+		if (count < 0 || numbers < 0 || TokenBuffer.sizeInBytes(count, numbers) != in.remaining())
+			return null;
+		
+		try {
+			// Mark the file as used so that it is the last to be evicted.
+			Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+		}
+		catch (IOException e) {
+			// Another cache may have just evicted it, which doesn't matter now.
+		}
+		return TokenBuffer.read(name, src, in, count, numbers);
+	}
+	
+	/**
+	 * Add the tokens of a whole unit of source code to the cache, then delete
+	 * old files if the cache has grown past its size limit. Tokens that are
+	 * too many to fit in one file are not cached.
+	 * @param tokens The tokens as returned by Lexer.tokenizeAll().
+	 * @throws IOException If the tokens could not be written.
+	 */
+	public void store(TokenBuffer tokens) throws IOException {
+		if (!tokens.isWhole())
+			throw new IllegalOperationException("only the tokens of a whole unit of source code can be cached");
+		for (int i = 0; i < tokens.size(); i++) {
+			if (tokens.getType(i) == TokenType.ERROR)
+				throw new IllegalOperationException("tokens with syntax errors can't be cached");
+		}
+		
+		int numbers = tokens.countNumbers();
+		long size = HEADER_SIZE + TokenBuffer.sizeInBytes(tokens.size(), numbers);
+		if (size > Integer.MAX_VALUE)
+			return;
+		
+		String src = tokens.getSource();
+		ByteBuffer out = ByteBuffer.allocate((int)size).order(ByteOrder.LITTLE_ENDIAN);
+		out.putInt(MAGIC);
+		out.putInt(Lexer.VERSION);
+		out.putInt(TYPES);
+		out.putInt(src.length());
+		out.putInt(src.hashCode());
+		out.putInt(tokens.size());
+		out.putInt(numbers);
+		tokens.write(out);
+		out.flip();
+		
+		// Write to a file of our own and move it into place, so that nobody
+		// ever maps a file that is half written.
+		Path temp = Files.createTempFile(directory, "tokens", ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				while (out.hasRemaining())
+					channel.write(out);
+			}
+			Files.move(temp, file(src), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(temp);
+		}
+		
+		evict();
+	}
+	
+	/**
+	 * Delete the least recently used files until the cache fits in its limit.
+	 */
+	private void evict() throws IOException {
+		Map<Path, BasicFileAttributes> files = new HashMap<>();
+		long total = 0;
+		try (DirectoryStream<Path> dir = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+			for (Path path : dir) {
+				try {
+					BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+					files.put(path, attrs);
+					total += attrs.size();
+				}
+				catch (NoSuchFileException e) {
+					// Evicted by somebody else while we were looking.
+				}
+			}
+		}
+		if (total <= maxBytes)
+			return;
+		
+		List<Path> oldest = new ArrayList<>(files.keySet());
+		oldest.sort(Comparator.comparing(path -> files.get(path).lastModifiedTime()));
+		for (Path path : oldest) {
+			if (total <= maxBytes)
+				break;
+			Files.deleteIfExists(path);
+			total -= files.get(path).size();
+		}
+	}
+	
+	/**
+	 * Get the directory that the cache keeps its files in.
+	 * @return The directory.
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * Get the most bytes that the cache files may take up.
+	 * @return The size limit.
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+}
@@ -0,0 +1,57 @@
+package tech.gitpicard.jbasic.parser;
+
+/**
+ * The result of lexing a piece of source code again after it was edited.
+ * Along with the new tokens, this says which tokens changed so that an
+ * editor only has to update what is different. The tokens in [0, getStart())
+ * are the same as before. The tokens in [getStart(), getOldEnd()) of the old
+ * buffer were replaced with the tokens in [getStart(), getNewEnd()) of the new
+ * one. The tokens after that are the same as before except that they may
+ * have moved to a different line and offset.
+ */
+public final class TokenEdit {
+	private TokenBuffer tokens;
+	private int start;
+	private int oldEnd;
+	private int newEnd;
+	
+	TokenEdit(TokenBuffer t, int s, int oe, int ne) {
+		tokens = t;
+		start = s;
+		oldEnd = oe;
+		newEnd = ne;
+	}
+	
+	/**
+	 * Get all of the tokens in the edited source code.
+	 * @return The new tokens.
+	 */
+	public TokenBuffer getTokens() {
+		return tokens;
+	}
+	
+	/**
+	 * Get the index of the first token that was changed.
+	 * @return The index of the first changed token.
+	 */
+	public int getStart() {
+		return start;
+	}
+	
+	/**
+	 * Get the index after the last token in the old buffer that was replaced.
+	 * @return The end of the replaced tokens.
+	 */
+	public int getOldEnd() {
+		return oldEnd;
+	}
+	
+	/**
+	 * Get the index after the last token in the new buffer that replaced
+	 * the old ones.
+	 * @return The end of the new tokens.
+	 */
+	public int getNewEnd() {
+		return newEnd;
+	}
+}
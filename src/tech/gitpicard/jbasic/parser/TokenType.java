@@ -6,51 +6,100 @@ package tech.gitpicard.jbasic.parser;
  * operators, identifiers, etc.
  */
 public enum TokenType {
-	EOF,
-	NEW_LINE,
+	EOF(""),
+	NEW_LINE("\n"),
 	INT_LITERAL,
 	REAL_LITERAL,
 	STR_LITERAL,
-	TRUE_LITERAL,
-	FALSE_LITERAL,
-	NULL_LITERAL,
+	TRUE_LITERAL("TRUE"),
+	FALSE_LITERAL("FALSE"),
+	NULL_LITERAL("NULL"),
 	IDENTIFIER,
-	IF,
-	THEN,
-	ELSE,
-	ELSEIF,
-	END,
-	WHILE,
-	DO,
-	FOR,
-	IN,
-	CONTINUE,
-	BREAK,
-	RETURN,
-	FUNCTION,
-	IMPORT,
-	LET,
-	CALL,
-	NEW,
-	CLASS,
-	PRIVATE,
-	PROTECTED,
-	PUBLIC,
-	EXTENDS,
-	SUPER,
-	SELF,
-	AND,
-	OR,
-	NOT,
-	DOT,	
-	PLUS,
-	MINUS,
-	STAR,
-	SLASH,
-	EQUALS,
-	LESS_THAN,
-	GREATER_THAN,
-	COMMA,
-	LEFT_PARAN,
-	RIGHT_PARAN
+	IF("IF"),
+	THEN("THEN"),
+	ELSE("ELSE"),
+	ELSEIF("ELSEIF"),
+	END("END"),
+	WHILE("WHILE"),
+	DO("DO"),
+	FOR("FOR"),
+	IN("IN"),
+	CONTINUE("CONTINUE"),
+	BREAK("BREAK"),
+	RETURN("RETURN"),
+	FUNCTION("FUNCTION"),
+	IMPORT("IMPORT"),
+	LET("LET"),
+	CALL("CALL"),
+	NEW("NEW"),
+	CLASS("CLASS"),
+	PRIVATE("PRIVATE"),
+	PROTECTED("PROTECTED"),
+	PUBLIC("PUBLIC"),
+	EXTENDS("EXTENDS"),
+	SUPER("SUPER"),
+	SELF("SELF"),
+	AND("AND"),
+	OR("OR"),
+	NOT("NOT"),
+	DOT("."),
+	PLUS("+"),
+	MINUS("-"),
+	STAR("*"),
+	SLASH("/"),
+	EQUALS("="),
+	LESS_THAN("<"),
+	GREATER_THAN(">"),
+	COMMA(","),
+	LEFT_PARAN("("),
+	RIGHT_PARAN(")"),
+	ERROR;
+	
+	private final String spelling;
+	private final boolean keyword;
+	
+	private TokenType() {
+		this(null);
+	}
+	
+	private TokenType(String s) {
+		spelling = s;
+		keyword = s != null && !s.isEmpty() && Character.isLetter(s.charAt(0));
+	}
+	
+	/**
+	 * Get the content that every token of this type has. Keywords are
+	 * spelled in upper case no matter how they were written in the source.
+	 * @return The spelling or null if the content differs from token to token.
+	 */
+	public String getSpelling() {
+		return spelling;
+	}
+	
+	/**
+	 * Get the upper case spelling of the keyword that this token type is
+	 * lexed from. Keywords are matched without regard to case.
+	 * @return The keyword or null if the token type is not a keyword.
+	 */
+	public String getKeyword() {
+		return keyword ? spelling : null;
+	}
+	
+	/**
+	 * Is this token type a literal value written straight into the source code?
+	 * @return True for number, string, boolean and null literals.
+	 */
+	public boolean isLiteral() {
+		switch (this) {
+		case INT_LITERAL:
+		case REAL_LITERAL:
+		case STR_LITERAL:
+		case TRUE_LITERAL:
+		case FALSE_LITERAL:
+		case NULL_LITERAL:
+			return true;
+		default:
+			return false;
+		}
+	}
 }
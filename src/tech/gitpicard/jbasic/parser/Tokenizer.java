@@ -0,0 +1,202 @@
+package tech.gitpicard.jbasic.parser;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import tech.gitpicard.jbasic.Diagnostics;
+import tech.gitpicard.jbasic.SyntaxException;
+import tech.gitpicard.jbasic.UncheckedSyntaxException;
+
+/**
+ * Turns source code into streams of tokens. Unlike a Lexer, a tokenizer
+ * holds no state of its own, so one tokenizer can be shared by any number
+ * of threads and used for any number of units of source code at the same
+ * time. Each stream gets lexers of its own as it is walked.
+ * 
+ * Tokens never cross from one line to the next, so the streams can be split
+ * at line boundaries, which lets parallel() streams lex a large unit of
+ * source code on several threads at once. The tokens are the same, and
+ * are encountered in the same order, as the ones from Lexer.next().
+ */
+public final class Tokenizer {
+	// Splitting off less than this costs more than lexing it in one go.
+	private static final int MIN_SPLIT_SIZE = 16 * 1024;
+	
+	private final SymbolTable symbols;
+	
+	/**
+	 * Create a tokenizer that doesn't give identifiers ids.
+	 */
+	public Tokenizer() {
+		this(null);
+	}
+	
+	/**
+	 * Create a tokenizer that gives identifiers ids from a symbol table.
+	 * @param table The symbol table to add identifiers to.
+	 */
+	public Tokenizer(SymbolTable table) {
+		symbols = table;
+	}
+	
+	/**
+	 * Get a spliterator over the tokens of a unit of source code. Syntax errors
+	 * are thrown as an UncheckedSyntaxException while the tokens are walked.
+	 * @param name The name of the unit of source code to lex.
+	 * @param src The source code to lex.
+	 * @return The tokens, ending with the EOF token.
+	 */
+	public Spliterator<Token> spliterator(String name, String src) {
+		return new TokenSpliterator(name, src, 0, src.length(), 1, true, null);
+	}
+	
+	/**
+	 * Get a spliterator over the tokens of a unit of source code that reports
+	 * syntax errors to the diagnostics, leaving an ERROR token in their place.
+	 * When the tokens are walked on several threads, the errors are reported
+	 * one at a time but not necessarily in the order they are found in the
+	 * source code.
+	 * @param name The name of the unit of source code to lex.
+	 * @param src The source code to lex.
+	 * @param diag Where to report syntax errors.
+	 * @return The tokens, ending with the EOF token.
+	 */
+	public Spliterator<Token> spliterator(String name, String src, Diagnostics diag) {
+		return new TokenSpliterator(name, src, 0, src.length(), 1, true, diag);
+	}
+	
+	/**
+	 * Get a sequential stream of the tokens of a unit of source code. See
+	 * spliterator(String, String).
+	 * @param name The name of the unit of source code to lex.
+	 * @param src The source code to lex.
+	 * @return The tokens, ending with the EOF token.
+	 */
+	public Stream<Token> tokens(String name, String src) {
+		return StreamSupport.stream(spliterator(name, src), false);
+	}
+	
+	/**
+	 * Get a sequential stream of the tokens of a unit of source code that
+	 * reports syntax errors to the diagnostics. See
+	 * spliterator(String, String, Diagnostics).
+	 * @param name The name of the unit of source code to lex.
+	 * @param src The source code to lex.
+	 * @param diag Where to report syntax errors.
+	 * @return The tokens, ending with the EOF token.
+	 */
+	public Stream<Token> tokens(String name, String src, Diagnostics diag) {
+		return StreamSupport.stream(spliterator(name, src, diag), false);
+	}
+	
+	/**
+	 * Get the symbol table that identifiers are given ids from.
+	 * @return The symbol table or null if there isn't one.
+	 */
+	public SymbolTable getSymbolTable() {
+		return symbols;
+	}
+	
+	/**
+	 * Walks the tokens of src[begin, end), which starts at the beginning of
+	 * line firstLine. The lexer isn't made until the first token is wanted,
+	 * and after that the range can no longer be split.
+	 */
+	private final class TokenSpliterator implements Spliterator<Token> {
+		private final String name;
+		private final String src;
+		private final Diagnostics diagnostics;
+		private int begin;
+		private final int end;
+		private int firstLine;
+		// Only the range at the end of the source code keeps its EOF token.
+		private final boolean last;
+		private Lexer lexer;
+		private Diagnostics errors;
+		private boolean done;
+		
+		TokenSpliterator(String n, String s, int b, int e, int ln, boolean l, Diagnostics diag) {
+			name = n;
+			src = s;
+			begin = b;
+			end = e;
+			firstLine = ln;
+			last = l;
+			diagnostics = diag;
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super Token> action) {
+			if (done)
+				return false;
+			if (lexer == null) {
+				// Errors go to diagnostics of our own first, so that each one can be
+				// handed on while holding the lock on the shared diagnostics.
+				errors = diagnostics == null ? null : new Diagnostics();
+				lexer = new Lexer(symbols, errors);
+				lexer.start(name, src, begin, end, firstLine);
+			}
+			
+			Token t;
+			try {
+				t = lexer.next();
+			}
+			catch (SyntaxException e) {
+				done = true;
+				throw new UncheckedSyntaxException(e);
+			}
+			
+			if (t.getType() == TokenType.ERROR) {
+				synchronized (diagnostics) {
+					for (int i = 0; i < errors.size(); i++)
+						diagnostics.report(errors.getSourceFile(i), errors.getMessage(i), errors.getSourceLine(i), errors.getSourceColumn(i));
+				}
+				errors.clear();
+			}
+			else if (t.getType() == TokenType.EOF) {
+				done = true;
+				if (!last)
+					return false;
+			}
+			
+			action.accept(t);
+			return true;
+		}
+		
+		@Override
+		public Spliterator<Token> trySplit() {
+			if (lexer != null || end - begin < MIN_SPLIT_SIZE * 2)
+				return null;
+			
+			// Cut just after the new line nearest the middle.
+			int newLine = src.indexOf('\n', begin + (end - begin) / 2);
+			if (newLine < 0 || newLine + 1 >= end)
+				return null;
+			
+			int cut = newLine + 1;
+			int lines = 0;
+			for (int i = begin; i < cut; i++) {
+				if (src.charAt(i) == '\n')
+					lines++;
+			}
+			
+			TokenSpliterator prefix = new TokenSpliterator(name, src, begin, cut, firstLine, false, diagnostics);
+			begin = cut;
+			firstLine += lines;
+			return prefix;
+		}
+		
+		@Override
+		public long estimateSize() {
+			// Source code averages a little over four characters a token.
+			return done ? 0 : (end - begin) / 4 + 1;
+		}
+		
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL | IMMUTABLE;
+		}
+	}
+}
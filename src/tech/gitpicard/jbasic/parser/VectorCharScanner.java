@@ -0,0 +1,82 @@
+package tech.gitpicard.jbasic.parser;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Scans runs of characters with the vector API, comparing a whole vector of
+ * characters at a time. Setting up a vector costs more than checking a few
+ * characters one by one, and most runs are short, so each method looks at the
+ * first SHORT_RUN characters with the scalar code and only turns to vectors
+ * when the run is longer than that. The few characters left over at the end
+ * go back to the scalar code. Only ever loaded by name from CharScanner,
+ * after checking that the module is there.
+ */
+final class VectorCharScanner extends CharScanner {
+	private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+	private static final int LANES = SPECIES.length();
+	private static final int SHORT_RUN = 32;
+	
+	@Override
+	boolean isUseful() {
+		// Without real vector registers the API is emulated and very slow.
+		return LANES >= 8;
+	}
+	
+	@Override
+	int skipSpaces(char[] buf, int from, int to) {
+		int shortEnd = Math.min(to, from + SHORT_RUN);
+		int i = super.skipSpaces(buf, from, shortEnd);
+		if (i < shortEnd)
+			return i;
+		
+		for (; i + LANES <= to; i += LANES) {
+			ShortVector v = ShortVector.fromCharArray(SPECIES, buf, i);
+			VectorMask<Short> other = v.compare(VectorOperators.NE, (short)' ')
+					.and(v.compare(VectorOperators.NE, (short)'\t'));
+			if (other.anyTrue())
+				return i + other.firstTrue();
+		}
+		return super.skipSpaces(buf, i, to);
+	}
+	
+	@Override
+	int findNewLine(char[] buf, int from, int to) {
+		int shortEnd = Math.min(to, from + SHORT_RUN);
+		int i = super.findNewLine(buf, from, shortEnd);
+		if (i < shortEnd)
+			return i;
+		
+		for (; i + LANES <= to; i += LANES) {
+			VectorMask<Short> newLine = ShortVector.fromCharArray(SPECIES, buf, i).compare(VectorOperators.EQ, (short)'\n');
+			if (newLine.anyTrue())
+				return i + newLine.firstTrue();
+		}
+		return super.findNewLine(buf, i, to);
+	}
+	
+	@Override
+	int skipIdentifier(char[] buf, int from, int to) {
+		int shortEnd = Math.min(to, from + SHORT_RUN);
+		int i = super.skipIdentifier(buf, from, shortEnd);
+		if (i < shortEnd)
+			return i;
+		
+		for (; i + LANES <= to; i += LANES) {
+			ShortVector v = ShortVector.fromCharArray(SPECIES, buf, i);
+			// Setting the 0x20 bit folds upper case letters into lower case ones.
+			// Characters past 0x7FFF come out negative, which no range takes in.
+			ShortVector lower = v.or((short)0x20);
+			VectorMask<Short> letter = lower.compare(VectorOperators.GE, (short)'a')
+					.and(lower.compare(VectorOperators.LE, (short)'z'));
+			VectorMask<Short> digit = v.compare(VectorOperators.GE, (short)'0')
+					.and(v.compare(VectorOperators.LE, (short)'9'));
+			VectorMask<Short> other = letter.or(digit).or(v.compare(VectorOperators.EQ, (short)'_')).not();
+			if (other.anyTrue())
+				return i + other.firstTrue();
+		}
+		return super.skipIdentifier(buf, i, to);
+	}
+}
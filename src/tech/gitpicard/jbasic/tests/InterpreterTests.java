@@ -0,0 +1,191 @@
+package tech.gitpicard.jbasic.tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.jupiter.api.Test;
+
+import tech.gitpicard.jbasic.InterpreterException;
+import tech.gitpicard.jbasic.SyntaxException;
+import tech.gitpicard.jbasic.interpreter.Interpreter;
+import tech.gitpicard.jbasic.parser.Parser;
+
+class InterpreterTests {
+	private static Interpreter run(String source) throws SyntaxException {
+		Interpreter interpreter = new Interpreter();
+		interpreter.run(new Parser().parse("unitTest", source));
+		return interpreter;
+	}
+	
+	private static String output(String source) throws SyntaxException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new Interpreter(new PrintStream(bytes, true)).run(new Parser().parse("unitTest", source));
+		return bytes.toString().replace(System.lineSeparator(), "\n");
+	}
+	
+	private static void expectError(String source, String message, int line, int column) {
+		InterpreterException e = assertThrows(InterpreterException.class, () -> run(source));
+		assertEquals(message, e.getMessage());
+		assertEquals(line, e.getSourceLine());
+		assertEquals(column, e.getSourceColumn());
+	}
+	
+	@Test
+	public void testArithmetic() throws SyntaxException {
+		Interpreter interpreter = run(
+				"LET a = 1 + 2 * 3\n" +
+				"LET b = 7 / 2 - -1\n" +
+				"LET c = 1.5 * 2.0\n" +
+				"LET d = 1 + 0.5\n" +
+				"LET e = \"a\" + \"b\" + 1 + TRUE + NULL\n" +
+				"LET f = 1 < 2 AND NOT 2.5 > 3.0 AND \"a\" < \"b\" AND 1 = 1.0\n" +
+				"LET g = \"x\" = \"x\" OR 1 / 0 = 0");
+		assertEquals(7L, interpreter.getGlobal("a"));
+		assertEquals(4L, interpreter.getGlobal("b"));
+		assertEquals(3.0, interpreter.getGlobal("c"));
+		assertEquals(1.5, interpreter.getGlobal("d"));
+		assertEquals("ab1TRUENULL", interpreter.getGlobal("e"));
+		assertEquals(Boolean.TRUE, interpreter.getGlobal("f"));
+		assertEquals(Boolean.TRUE, interpreter.getGlobal("g"));
+	}
+	
+	@Test
+	public void testSpecialization() throws SyntaxException {
+		// The same nodes see integers, then reals, then strings, then integers
+		// again, and give the right answer every time.
+		Interpreter interpreter = run(
+				"FUNCTION add(a, b)\n" +
+				"\tLET sum = a + b\n" +
+				"\tRETURN sum\n" +
+				"END\n" +
+				"FUNCTION less(a, b)\n" +
+				"\tRETURN a < b\n" +
+				"END\n" +
+				"LET i = add(1, 2)\n" +
+				"LET r = add(1.5, 2.25)\n" +
+				"LET s = add(\"a\", \"b\")\n" +
+				"LET m = add(1, 0.5)\n" +
+				"LET j = add(3, 4)\n" +
+				"LET l1 = less(1, 2)\n" +
+				"LET l2 = less(2.5, 1.5)\n" +
+				"LET l3 = less(\"a\", \"b\")\n" +
+				"LET l4 = less(1, 1.5)\n" +
+				"LET total = 0\n" +
+				"LET n = 0\n" +
+				"WHILE n < 10 DO\n" +
+				"\tIF n = 5 THEN\n" +
+				"\t\tLET total = total + 0.5\n" +
+				"\tEND\n" +
+				"\tLET total = total + n\n" +
+				"\tLET n = n + 1\n" +
+				"END");
+		assertEquals(3L, interpreter.getGlobal("i"));
+		assertEquals(3.75, interpreter.getGlobal("r"));
+		assertEquals("ab", interpreter.getGlobal("s"));
+		assertEquals(1.5, interpreter.getGlobal("m"));
+		assertEquals(7L, interpreter.getGlobal("j"));
+		assertEquals(Boolean.TRUE, interpreter.getGlobal("l1"));
+		assertEquals(Boolean.FALSE, interpreter.getGlobal("l2"));
+		assertEquals(Boolean.TRUE, interpreter.getGlobal("l3"));
+		assertEquals(Boolean.TRUE, interpreter.getGlobal("l4"));
+		assertEquals(45.5, interpreter.getGlobal("total"));
+	}
+	
+	@Test
+	public void testControlFlow() throws SyntaxException {
+		Interpreter interpreter = run(
+				"FUNCTION find(items, wanted)\n" +
+				"\tLET i = 0\n" +
+				"\tFOR item IN items DO\n" +
+				"\t\tIF item = wanted THEN\n" +
+				"\t\t\tRETURN i\n" +
+				"\t\tEND\n" +
+				"\t\tLET i = i + 1\n" +
+				"\tEND\n" +
+				"\tRETURN -1\n" +
+				"END\n" +
+				"LET items = NEW list()\n" +
+				"LET n = 0\n" +
+				"WHILE TRUE DO\n" +
+				"\tLET n = n + 1\n" +
+				"\tIF n > 10 THEN\n" +
+				"\t\tBREAK\n" +
+				"\tELSEIF n = 3 THEN\n" +
+				"\t\tCONTINUE\n" +
+				"\tEND\n" +
+				"\tCALL items.add(n * n)\n" +
+				"END\n" +
+				"LET found = find(items, 49)\n" +
+				"LET missing = find(items, 9)\n" +
+				"LET size = items.size()");
+		assertEquals(5L, interpreter.getGlobal("found"));
+		assertEquals(-1L, interpreter.getGlobal("missing"));
+		assertEquals(9L, interpreter.getGlobal("size"));
+	}
+	
+	@Test
+	public void testClosuresAndClasses() throws SyntaxException {
+		String source =
+				"IMPORT \"io\"\n" +
+				"FUNCTION counter()\n" +
+				"\tLET n = 0\n" +
+				"\tFUNCTION next()\n" +
+				"\t\tLET n = n + 1\n" +
+				"\t\tRETURN n\n" +
+				"\tEND\n" +
+				"\tRETURN next\n" +
+				"END\n" +
+				"CLASS Shape\n" +
+				"\tPUBLIC name = \"shape\"\n" +
+				"\tFUNCTION area()\n" +
+				"\t\tRETURN 0\n" +
+				"\tEND\n" +
+				"\tFUNCTION describe()\n" +
+				"\t\tRETURN SELF.name + \" \" + SELF.area()\n" +
+				"\tEND\n" +
+				"END\n" +
+				"CLASS Square EXTENDS Shape\n" +
+				"\tPRIVATE side\n" +
+				"\tFUNCTION init(s)\n" +
+				"\t\tLET SELF.side = s\n" +
+				"\t\tLET SELF.name = \"square\"\n" +
+				"\tEND\n" +
+				"\tFUNCTION area()\n" +
+				"\t\tRETURN SELF.side * SELF.side + SUPER.area()\n" +
+				"\tEND\n" +
+				"END\n" +
+				"LET a = counter()\n" +
+				"LET b = counter()\n" +
+				"CALL a()\n" +
+				"CALL a()\n" +
+				"CALL io.print(a(), \" \", b())\n" +
+				"LET shapes = NEW list()\n" +
+				"CALL shapes.add(NEW Shape())\n" +
+				"CALL shapes.add(NEW Square(3))\n" +
+				"CALL shapes.add(NEW Square(1.5))\n" +
+				"FOR shape IN shapes DO\n" +
+				"\tCALL io.print(shape.describe())\n" +
+				"END\n" +
+				"CALL io.print(shapes.size(), \" \", shapes.get(1).name, \" \", NEW list())";
+		assertEquals("3 1\nshape 0\nsquare 9\nsquare 2.25\n3 square []\n", output(source));
+	}
+	
+	@Test
+	public void testErrors() {
+		expectError("LET x = 1 + NULL", "can't add an integer and NULL", 1, 11);
+		expectError("LET x = 1\nLET y = x / 0", "division by zero", 2, 11);
+		expectError("LET x = 9223372036854775807\nLET y = x + 1", "integer overflow", 2, 11);
+		expectError("LET x = y", "y is not defined", 1, 9);
+		expectError("IF 1 THEN\nEND", "expected TRUE or FALSE but got an integer", 1, 4);
+		expectError("FUNCTION f(a)\nEND\nCALL f()", "f takes 1 argument but was given 0", 3, 7);
+		expectError("CLASS A\nEND\nLET a = NEW A()\nCALL a.m()", "an object of class A has no method m", 4, 9);
+		expectError("LET a = NEW list()\nLET b = a.x", "a list has no field x", 2, 11);
+		expectError("IMPORT \"net\"", "there is no module named net", 1, 8);
+		
+		// Once a node has stopped expecting integers it still reports errors.
+		expectError("FUNCTION add(a, b)\n\tRETURN a + b\nEND\nLET x = add(1, 2)\nLET y = add(1, \"a\")\nLET z = add(TRUE, 1)",
+				"can't add a boolean and an integer", 2, 11);
+	}
+}
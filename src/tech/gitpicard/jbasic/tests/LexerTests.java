@@ -2,21 +2,113 @@ package tech.gitpicard.jbasic.tests;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import org.junit.jupiter.api.Test;
 
+import tech.gitpicard.jbasic.Diagnostics;
+import tech.gitpicard.jbasic.IllegalOperationException;
 import tech.gitpicard.jbasic.SyntaxException;
+import tech.gitpicard.jbasic.UncheckedSyntaxException;
+import tech.gitpicard.jbasic.parser.LexStatistics;
 import tech.gitpicard.jbasic.parser.Lexer;
+import tech.gitpicard.jbasic.parser.SourceFile;
+import tech.gitpicard.jbasic.parser.SymbolTable;
 import tech.gitpicard.jbasic.parser.Token;
+import tech.gitpicard.jbasic.parser.TokenBuffer;
+import tech.gitpicard.jbasic.parser.TokenEdit;
 import tech.gitpicard.jbasic.parser.TokenType;
+import tech.gitpicard.jbasic.parser.Tokenizer;
 
 class LexerTests {
+	/**
+	 * Hands out the source one character per read so that every token
+	 * straddles a buffer refill when the lexer is streaming.
+	 */
+	private static final class TrickleReader extends Reader {
+		private final Reader inner;
+		
+		TrickleReader(String source) {
+			inner = new StringReader(source);
+		}
+		
+		@Override
+		public int read(char[] cbuf, int off, int len) throws java.io.IOException {
+			return inner.read(cbuf, off, Math.min(len, 1));
+		}
+		
+		@Override
+		public void close() {
+		}
+	}
+	
 	private void expect(String source, Token[] expected, boolean ignoreLoc) throws SyntaxException {
 		Lexer lexer = new Lexer();
-		LinkedList<Token> tokens = new LinkedList<>();
+		lexer.start("unitTest", source);
+		expect(lexer, expected, ignoreLoc);
 		
+		// Streaming the same source must give exactly the same tokens.
+		lexer.start("unitTest", new TrickleReader(source));
+		expect(lexer, expected, ignoreLoc);
+		
+		// So must lexing it directly from UTF-8 bytes.
+		lexer.start("unitTest", ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+		expect(lexer, expected, ignoreLoc);
+		
+		// Tokenizing everything up front must also agree.
+		TokenBuffer buffer = Lexer.tokenizeAll("unitTest", source);
+		assertEquals(expected.length, buffer.size());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i].getType(), buffer.getType(i));
+			assertEquals(expected[i].getSourceName(), buffer.get(i).getSourceName());
+			if (!ignoreLoc) {
+				assertEquals(expected[i].getSourceLine(), buffer.getSourceLine(i));
+				assertEquals(expected[i].getSourceColumn(), buffer.getSourceColumn(i));
+			}
+			assertEquals(expected[i].getContent(), buffer.getContent(i));
+			assertEquals(expected[i].getContent(), buffer.getText(i).toString());
+		}
+		
+		// And so must walking over the tokens with the cursor, streamed or not.
 		lexer.start("unitTest", source);
+		expectCursor(lexer, buffer, expected, ignoreLoc);
+		lexer.start("unitTest", new TrickleReader(source));
+		expectCursor(lexer, buffer, expected, ignoreLoc);
+	}
+	
+	private void expectCursor(Lexer lexer, TokenBuffer buffer, Token[] expected, boolean ignoreLoc) throws SyntaxException {
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i].getType(), lexer.advance());
+			assertEquals(expected[i].getType(), lexer.getTokenType());
+			assertEquals(buffer.getStart(i), lexer.getTokenStart());
+			assertEquals(buffer.getLength(i), lexer.getTokenLength());
+			if (!ignoreLoc) {
+				assertEquals(expected[i].getSourceLine(), lexer.getTokenLine());
+				assertEquals(expected[i].getSourceColumn(), lexer.getTokenColumn());
+			}
+			assertEquals(expected[i].getContent(), lexer.getTokenText().toString());
+		}
+		assertFalse(lexer.isLexing());
+	}
+	
+	private void expect(Lexer lexer, Token[] expected, boolean ignoreLoc) throws SyntaxException {
+		LinkedList<Token> tokens = new LinkedList<>();
 		
 		while (true) {
 			Token t = lexer.next();
@@ -37,6 +129,7 @@ class LexerTests {
 				assertEquals(expected[i].getSourceLine(), tokens.get(i).getSourceLine());
 				assertEquals(expected[i].getSourceColumn(), tokens.get(i).getSourceColumn());
 			}
+			assertEquals(expected[i].getContent(), tokens.get(i).getText().toString());
 			assertTrue(expected[i].getContent().equals(tokens.get(i).getContent()));
 		}
 	}
@@ -243,4 +336,669 @@ class LexerTests {
 		};
 		expect("' comment \ntest", expected1, true);
 	}
+	
+	@Test
+	public void testLineAndColumn() throws SyntaxException {
+		Token[] expected = {
+				new Token(TokenType.LET, "unitTest", 1, 1, "LET"),
+				new Token(TokenType.IDENTIFIER, "unitTest", 1, 5, "x"),
+				new Token(TokenType.EQUALS, "unitTest", 1, 7, "="),
+				new Token(TokenType.INT_LITERAL, "unitTest", 1, 9, "10"),
+				new Token(TokenType.NEW_LINE, "unitTest", 1, 1, "\n"),
+				new Token(TokenType.STR_LITERAL, "unitTest", 2, 3, "a\tb"),
+				new Token(TokenType.COMMA, "unitTest", 2, 9, ","),
+				new Token(TokenType.NEW_LINE, "unitTest", 2, 1, "\n"),
+				new Token(TokenType.EOF, "unitTest", 3, 1, "")
+		};
+		expect("LET x = 10 ' set\n  \"a\\tb\",\n", expected, false);
+	}
+	
+	@Test
+	public void testStreaming() throws SyntaxException {
+		// Build tokens that are longer than the lexer's buffer so they have to
+		// be stitched together across refills.
+		StringBuilder ident = new StringBuilder("x");
+		StringBuilder str = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			ident.append(i % 10);
+			str.append((char)('a' + i % 26));
+		}
+		
+		Token[] expected = {
+				new Token(TokenType.IDENTIFIER, "unitTest", 1, 1, ident.toString()),
+				new Token(TokenType.STR_LITERAL, "unitTest", 1, ident.length() + 2, str.toString()),
+				new Token(TokenType.EOF, "unitTest", 1, ident.length() + str.length() + 4, "")
+		};
+		String source = ident + " \"" + str + "\"";
+		
+		Lexer lexer = new Lexer();
+		lexer.start("unitTest", new StringReader(source));
+		expect(lexer, expected, false);
+		
+		// Multi-byte characters coming through a channel are decoded before lexing.
+		Token[] expected1 = {
+				new Token(TokenType.STR_LITERAL, "unitTest", 1, 1, "h\u00e9llo \u4e16\u754c"),
+				new Token(TokenType.EOF, "unitTest", 1, 1, "")
+		};
+		byte[] bytes = "\"h\u00e9llo \u4e16\u754c\"".getBytes(StandardCharsets.UTF_8);
+		lexer.start("unitTest", Channels.newChannel(new ByteArrayInputStream(bytes)));
+		expect(lexer, expected1, true);
+	}
+	
+	@Test
+	public void testMappedFile() throws SyntaxException, java.io.IOException {
+		// Mix multi-byte characters in with ASCII tokens on either side of them
+		// and make the file long enough to need more than one refill.
+		StringBuilder source = new StringBuilder();
+		for (int i = 0; i < 2000; i++)
+			source.append("LET caf\u00e9").append(i).append(" = \"\u4e16\" + name").append(i).append(" ' \u00fc\n");
+		
+		Lexer lexer = new Lexer();
+		Path file = Files.createTempFile("jbasic", ".bas");
+		try {
+			Files.write(file, source.toString().getBytes(StandardCharsets.UTF_8));
+			lexer.start(file);
+			
+			for (int i = 0; i < 2000; i++) {
+				assertEquals(TokenType.LET, lexer.next().getType());
+				assertEquals("caf\u00e9" + i, lexer.next().getContent());
+				assertEquals(TokenType.EQUALS, lexer.next().getType());
+				assertEquals("\u4e16", lexer.next().getContent());
+				assertEquals(TokenType.PLUS, lexer.next().getType());
+				
+				Token t = lexer.next();
+				assertEquals(TokenType.IDENTIFIER, t.getType());
+				assertEquals(i + 1, t.getSourceLine());
+				assertEquals(18 + String.valueOf(i).length(), t.getSourceColumn());
+				assertEquals("name" + i, t.getContent());
+				assertEquals(TokenType.NEW_LINE, lexer.next().getType());
+			}
+			assertEquals(TokenType.EOF, lexer.next().getType());
+		}
+		finally {
+			Files.delete(file);
+		}
+		
+		// Bytes that are not valid UTF-8 become replacement characters.
+		byte[] bad = { '"', (byte)0xC3, '"', ' ', '"', (byte)0xE4, (byte)0xB8, (byte)0x96, (byte)0xFF, '"' };
+		lexer.start("unitTest", ByteBuffer.wrap(bad));
+		assertEquals("\ufffd", lexer.next().getContent());
+		assertEquals("\u4e16\ufffd", lexer.next().getContent());
+	}
+	
+	@Test
+	public void testKeywords() throws SyntaxException {
+		for (TokenType type : TokenType.values()) {
+			if (type.getKeyword() == null)
+				continue;
+			
+			Token[] expected = {
+					new Token(type, "unitTest", 1, 1, type.getKeyword()),
+					new Token(TokenType.EOF, "unitTest", 1, 1, "")
+			};
+			String word = type.getKeyword();
+			expect(word, expected, true);
+			expect(word.toLowerCase(), expected, true);
+			expect(word.charAt(0) + word.substring(1).toLowerCase(), expected, true);
+			
+			// Words that are close to a keyword are still identifiers.
+			Token[] expected1 = {
+					new Token(TokenType.IDENTIFIER, "unitTest", 1, 1, word + "s"),
+					new Token(TokenType.EOF, "unitTest", 1, 1, "")
+			};
+			expect(word + "s", expected1, true);
+			
+			boolean isKeyword = false;
+			for (TokenType other : TokenType.values())
+				isKeyword |= word.substring(1).equals(other.getKeyword());
+			
+			if (!isKeyword) {
+				Token[] expected2 = {
+						new Token(TokenType.IDENTIFIER, "unitTest", 1, 1, word.substring(1)),
+						new Token(TokenType.EOF, "unitTest", 1, 1, "")
+				};
+				expect(word.substring(1), expected2, true);
+			}
+		}
+		
+		// Case is ignored the same way as String.equalsIgnoreCase().
+		Token[] expected = {
+				new Token(TokenType.IF, "unitTest", 1, 1, "IF"),
+				new Token(TokenType.EOF, "unitTest", 1, 1, "")
+		};
+		expect("\u0131f", expected, true);
+	}
+	
+	@Test
+	public void testSpellings() throws SyntaxException {
+		// Every token type with a fixed spelling lexes back from that spelling.
+		for (TokenType type : TokenType.values()) {
+			if (type.getSpelling() == null || type == TokenType.EOF)
+				continue;
+			
+			Token[] expected = {
+					new Token(type, "unitTest", 1, 1, type.getSpelling()),
+					new Token(TokenType.EOF, "unitTest", 1, 1, "")
+			};
+			expect(type.getSpelling(), expected, true);
+		}
+	}
+	
+	@Test
+	public void testTokenBuffer() throws SyntaxException {
+		String source = "LET s = \"a\\\"b\"\nCALL f(s, 12.5)\n";
+		TokenBuffer tokens = Lexer.tokenizeAll("unitTest", source);
+		
+		assertEquals(14, tokens.size());
+		assertEquals(TokenType.STR_LITERAL, tokens.getType(3));
+		assertEquals("a\"b", tokens.getContent(3));
+		assertEquals("\"a\\\"b\"", source.substring(tokens.getStart(3), tokens.getStart(3) + tokens.getLength(3)));
+		assertEquals(TokenType.EOF, tokens.getType(13));
+		assertEquals(source.length(), tokens.getStart(13));
+		
+		// Slices share the same tokens with new indexes.
+		TokenBuffer call = tokens.slice(5, 12);
+		assertEquals(7, call.size());
+		assertEquals(TokenType.CALL, call.getType(0));
+		assertEquals(2, call.getSourceLine(0));
+		assertEquals("12.5", call.getContent(5));
+		assertEquals(TokenType.REAL_LITERAL, call.get(5).getType());
+		assertEquals(12.5, call.getRealValue(5));
+		assertEquals(12.5, call.get(5).getRealValue());
+		assertEquals(2, call.get(5).getSourceLine());
+		assertEquals(TokenType.IDENTIFIER, call.slice(2, 4).getType(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> call.getType(7));
+		assertThrows(IndexOutOfBoundsException.class, () -> call.slice(3, 8));
+	}
+	
+	private Token lexOne(String source) throws SyntaxException {
+		Lexer lexer = new Lexer();
+		lexer.start("unitTest", source);
+		return lexer.next();
+	}
+	
+	@Test
+	public void testNumberValues() throws SyntaxException {
+		assertEquals(0, lexOne("0").getIntValue());
+		assertEquals(893252, lexOne("893252").getIntValue());
+		assertEquals(Long.MAX_VALUE, lexOne("9223372036854775807").getIntValue());
+		assertEquals(42, lexOne("\u0664\u0662").getIntValue());
+		
+		String[] reals = {
+				"5.3", "0.0", "0.1", "189.9", "5.", "123456789.123456789",
+				"3.14159265358979323846264338327950288", "0.000000000000000000000000001",
+				"9007199254740993.0", "1797693134862315708145274237317043567980.5"
+		};
+		for (String real : reals)
+			assertEquals(Double.parseDouble(real), lexOne(real).getRealValue());
+		
+		// Tokens made by hand still have a value.
+		assertEquals(12, new Token(TokenType.INT_LITERAL, "unitTest", 1, 1, "12").getIntValue());
+		assertThrows(IllegalOperationException.class, () -> lexOne("1.5").getIntValue());
+		assertThrows(IllegalOperationException.class, () -> lexOne("x").getRealValue());
+		
+		// Numbers that don't fit are reported where the literal starts.
+		SyntaxException e = assertThrows(SyntaxException.class, () -> lexOne("  9223372036854775808"));
+		assertEquals(1, e.getSourceLine());
+		assertEquals(3, e.getSourceColumn());
+		
+		StringBuilder huge = new StringBuilder();
+		for (int i = 0; i < 400; i++)
+			huge.append('9');
+		assertThrows(SyntaxException.class, () -> lexOne(huge + ".0"));
+	}
+	
+	@Test
+	public void testSymbols() throws SyntaxException {
+		SymbolTable table = new SymbolTable();
+		Lexer lexer = new Lexer(table);
+		
+		lexer.start("first", "LET count = count + total");
+		assertEquals(-1, lexer.next().getSymbol());
+		Token count = lexer.next();
+		assertEquals(0, count.getSymbol());
+		lexer.next();
+		assertEquals(0, lexer.next().getSymbol());
+		lexer.next();
+		Token total = lexer.next();
+		assertEquals(1, total.getSymbol());
+		
+		// Other units of source code share the ids and the strings.
+		lexer.start("second", "Count count");
+		Token upper = lexer.next();
+		assertEquals(2, upper.getSymbol());
+		assertEquals("Count", upper.getContent());
+		Token again = lexer.next();
+		assertEquals(0, again.getSymbol());
+		assertSame(count.getContent(), again.getContent());
+		
+		assertEquals(3, table.size());
+		assertEquals("total", table.getName(1));
+		assertEquals(1, table.lookup("total"));
+		assertEquals(-1, table.lookup("missing"));
+		assertEquals(3, table.intern("missing"));
+		
+		// Lexers without a table don't give out ids.
+		assertEquals(-1, lexOne("count").getSymbol());
+	}
+	
+	@Test
+	public void testSymbolsShared() throws Exception {
+		SymbolTable table = new SymbolTable();
+		Thread[] threads = new Thread[4];
+		int[][] ids = new int[threads.length][1000];
+		for (int t = 0; t < threads.length; t++) {
+			int[] out = ids[t];
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < out.length; i++)
+					out[i] = table.intern("name" + i);
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads)
+			t.join();
+		
+		assertEquals(1000, table.size());
+		for (int i = 0; i < 1000; i++) {
+			for (int t = 1; t < threads.length; t++)
+				assertEquals(ids[0][i], ids[t][i]);
+			assertEquals("name" + i, table.getName(ids[0][i]));
+		}
+	}
+	
+	@Test
+	public void testParallel() throws SyntaxException {
+		// Make the source big enough that it gets split into several chunks.
+		StringBuilder source = new StringBuilder();
+		for (int i = 0; i < 40000; i++)
+			source.append("LET x").append(i).append(" = \"a\\tb\" + ").append(i).append(".5 ' note\n");
+		
+		TokenBuffer expected = Lexer.tokenizeAll("unitTest", source.toString());
+		TokenBuffer actual = Lexer.tokenizeParallel("unitTest", source.toString(), new ForkJoinPool(4));
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getType(i), actual.getType(i));
+			assertEquals(expected.getStart(i), actual.getStart(i));
+			assertEquals(expected.getLength(i), actual.getLength(i));
+			assertEquals(expected.getSourceLine(i), actual.getSourceLine(i));
+			assertEquals(expected.getSourceColumn(i), actual.getSourceColumn(i));
+		}
+		assertEquals("x39999", actual.getContent(actual.size() - 7));
+		
+		// The first error is reported at its real line.
+		source.append("LET y = {\n");
+		for (int i = 0; i < 40000; i++)
+			source.append("\"unterminated\n");
+		SyntaxException e = assertThrows(SyntaxException.class, () -> Lexer.tokenizeParallel("unitTest", source.toString(), new ForkJoinPool(4)));
+		assertEquals(40001, e.getSourceLine());
+		assertEquals(10, e.getSourceColumn());
+	}
+	
+	@Test
+	public void testTokenizer() throws Exception {
+		StringBuilder source = new StringBuilder();
+		for (int i = 0; i < 20000; i++)
+			source.append("LET x").append(i).append(" = \"a\\tb\" + ").append(i).append(".5 ' note\n");
+		String src = source.toString();
+		
+		TokenBuffer expected = Lexer.tokenizeAll("unitTest", src);
+		Tokenizer tokenizer = new Tokenizer(new SymbolTable());
+		Spliterator<Token> tokens = tokenizer.spliterator("unitTest", src);
+		assertTrue(tokens.estimateSize() > expected.size() / 2);
+		assertNotNull(tokens.trySplit());
+		
+		// Walked on several threads, the tokens still come out the same and in order.
+		ForkJoinPool pool = new ForkJoinPool(4);
+		List<Token> actual = pool.submit(() -> tokenizer.tokens("unitTest", src).parallel().collect(Collectors.toList())).get();
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Token t = actual.get(i);
+			assertEquals(expected.getType(i), t.getType());
+			assertEquals(expected.getSourceLine(i), t.getSourceLine());
+			assertEquals(expected.getSourceColumn(i), t.getSourceColumn());
+			assertEquals(expected.getContent(i), t.getContent());
+		}
+		assertEquals(TokenType.EOF, actual.get(actual.size() - 1).getType());
+		assertEquals(tokenizer.getSymbolTable().lookup("x19999"), actual.get(actual.size() - 7).getSymbol());
+		
+		// Errors are thrown, or reported when there are diagnostics.
+		String bad = src + "LET y = {\n" + src;
+		UncheckedSyntaxException e = assertThrows(UncheckedSyntaxException.class,
+				() -> tokenizer.tokens("unitTest", bad).parallel().count());
+		assertEquals(20001, e.getCause().getSourceLine());
+		assertEquals(10, e.getCause().getSourceColumn());
+		
+		Diagnostics diag = new Diagnostics();
+		assertEquals(1, tokenizer.tokens("unitTest", bad, diag).parallel().filter(t -> t.getType() == TokenType.ERROR).count());
+		assertEquals(1, diag.size());
+		assertEquals(20001, diag.getSourceLine(0));
+	}
+	
+	@Test
+	public void testSourceFile() throws SyntaxException {
+		String source = "LET x = 1\r\n\tCALL f(\"a\")\n\nEND";
+		Lexer lexer = new Lexer();
+		lexer.start("unitTest", source);
+		TokenBuffer buffer = Lexer.tokenizeAll("unitTest", source);
+		for (int i = 0; i < buffer.size(); i++) {
+			Token t = lexer.next();
+			assertSame(lexer.getSourceFile(), t.getSourceFile());
+			// A NEW_LINE token is put at the start of the line it ends.
+			int start = buffer.getStart(i);
+			if (t.getType() == TokenType.NEW_LINE)
+				start = source.lastIndexOf('\n', start - 1) + 1;
+			assertEquals(start, t.getOffset());
+			assertEquals(buffer.getSourceLine(i), t.getSourceLine());
+			assertEquals(buffer.getSourceColumn(i), t.getSourceColumn());
+			
+			// The buffer makes the same token, sharing one source file.
+			Token copy = buffer.get(i);
+			assertSame(buffer.get(0).getSourceFile(), copy.getSourceFile());
+			assertEquals(start, copy.getOffset());
+			assertEquals(t.getSourceLine(), copy.getSourceLine());
+			assertEquals(t.getSourceColumn(), copy.getSourceColumn());
+			assertEquals(t.getContent(), copy.getContent());
+		}
+		
+		SourceFile file = lexer.getSourceFile();
+		assertEquals(4, file.getLineCount());
+		assertEquals("LET x = 1", file.getLineText(1));
+		assertEquals("\tCALL f(\"a\")", file.getLineText(2));
+		assertEquals("", file.getLineText(3));
+		assertEquals("END", file.getLineText(4));
+		assertNull(file.getLineText(5));
+		assertEquals(2, file.getLine(11));
+		assertEquals(1, file.getColumn(11));
+		assertEquals(4, file.getLine(source.length()));
+		assertEquals(new SourceFile("unitTest", source).getLine(source.length()), 4);
+		
+		// Errors show the line they are on.
+		lexer.start("unitTest", "LET x = 1\n\tLET y = {\n");
+		lexer.next();
+		SyntaxException e = assertThrows(SyntaxException.class, () -> {
+			while (true)
+				lexer.next();
+		});
+		assertEquals(2, e.getSourceLine());
+		assertEquals("\tLET y = {\n\t         ^", e.getSnippet());
+		
+		Diagnostics diag = new Diagnostics();
+		Lexer.tokenizeAll("unitTest", "CALL f(\"never closed", diag);
+		assertSame(diag.getSourceFile(0), diag.toException(0).getSourceFile());
+		assertEquals("CALL f(\"never closed\n" + " ".repeat(20) + "^", diag.toException(0).getSnippet());
+		
+		// Streamed source code isn't kept, so there is nothing to show.
+		lexer.start("unitTest", new StringReader("LET x = {"));
+		e = assertThrows(SyntaxException.class, () -> {
+			while (true)
+				lexer.next();
+		});
+		assertEquals(1, e.getSourceLine());
+		assertNull(e.getSnippet());
+		
+		// Nor are its lines, but its tokens still know where they are.
+		lexer.start("unitTest", new TrickleReader("LET x = 1\n\tEND"));
+		for (int i = 0; i < 5; i++)
+			lexer.next();
+		Token end = lexer.next();
+		assertEquals(TokenType.END, end.getType());
+		assertEquals(2, end.getSourceLine());
+		assertEquals(2, end.getSourceColumn());
+		assertEquals(0, lexer.getSourceFile().getLineCount());
+		
+		// Tokens made by hand keep the line and column they are given.
+		Token newLine = new Token(TokenType.NEW_LINE, "unitTest", 2, 5, "\n");
+		assertEquals(2, newLine.getSourceLine());
+		assertEquals(5, newLine.getSourceColumn());
+		assertEquals("unitTest", newLine.getSourceFile().getName());
+		assertEquals(0, newLine.getSourceFile().getLineCount());
+	}
+	
+	private static void expectRelex(String source, int offset, int removed, String inserted) throws SyntaxException {
+		TokenBuffer before = Lexer.tokenizeAll("unitTest", source);
+		String edited = source.substring(0, offset) + inserted + source.substring(offset + removed);
+		TokenBuffer expected = Lexer.tokenizeAll("unitTest", edited);
+		TokenEdit edit = Lexer.relex(before, offset, removed, inserted);
+		TokenBuffer actual = edit.getTokens();
+		
+		assertEquals(edited, actual.getSource());
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getType(i), actual.getType(i));
+			assertEquals(expected.getStart(i), actual.getStart(i));
+			assertEquals(expected.getLength(i), actual.getLength(i));
+			assertEquals(expected.getSourceLine(i), actual.getSourceLine(i));
+			assertEquals(expected.getSourceColumn(i), actual.getSourceColumn(i));
+			assertEquals(expected.getContent(i), actual.getContent(i));
+		}
+		
+		// Everything outside of the changed range is the same as before.
+		int tail = before.size() - edit.getOldEnd();
+		assertEquals(actual.size() - edit.getNewEnd(), tail);
+		for (int i = 0; i < edit.getStart(); i++)
+			assertEquals(before.getContent(i), actual.getContent(i));
+		for (int i = 0; i < tail; i++)
+			assertEquals(before.getContent(edit.getOldEnd() + i), actual.getContent(edit.getNewEnd() + i));
+	}
+	
+	@Test
+	public void testRelex() throws SyntaxException {
+		String source = "LET x = 1\n  LET y = \"a b\" ' note\n\nPRINT x + y\n";
+		
+		// Change a token in the middle of a line.
+		expectRelex(source, 8, 1, "42");
+		// Remove and add lines.
+		expectRelex(source, 10, 0, "LET z = 2\nLET w = 3\n");
+		expectRelex(source, 9, 26, "");
+		// Edit the first and last lines.
+		expectRelex(source, 0, 3, "CONST");
+		expectRelex(source, source.length(), 0, "END");
+		expectRelex(source, 0, source.length(), "x");
+		// Join two lines and split one.
+		expectRelex(source, 9, 1, " +");
+		expectRelex(source, 14, 0, "\n");
+		
+		TokenBuffer before = Lexer.tokenizeAll("unitTest", source);
+		TokenEdit edit = Lexer.relex(before, 8, 1, "42");
+		assertEquals(0, edit.getStart());
+		assertEquals(5, edit.getOldEnd());
+		assertEquals(5, edit.getNewEnd());
+		assertEquals("42", edit.getTokens().getContent(3));
+		
+		assertThrows(SyntaxException.class, () -> Lexer.relex(before, 10, 0, "\"open"));
+		assertThrows(IndexOutOfBoundsException.class, () -> Lexer.relex(before, 8, 100, ""));
+		assertThrows(IllegalOperationException.class, () -> Lexer.relex(before.slice(0, 3), 0, 0, ""));
+	}
+	
+	@Test
+	public void testDiagnostics() throws SyntaxException {
+		String source = "LET a = {\nCALL \"open\nx = 99999999999999999999 + 1 ~\n\"bad\\q";
+		TokenType[] types = {
+			TokenType.LET, TokenType.IDENTIFIER, TokenType.EQUALS, TokenType.ERROR, TokenType.NEW_LINE,
+			TokenType.CALL, TokenType.ERROR, TokenType.NEW_LINE,
+			TokenType.IDENTIFIER, TokenType.EQUALS, TokenType.ERROR, TokenType.PLUS, TokenType.INT_LITERAL, TokenType.ERROR, TokenType.NEW_LINE,
+			TokenType.ERROR, TokenType.EOF
+		};
+		
+		Diagnostics diag = new Diagnostics();
+		Lexer lex = new Lexer(null, diag);
+		lex.start("unitTest", source);
+		LinkedList<Token> tokens = new LinkedList<Token>();
+		while (lex.isLexing())
+			tokens.add(lex.next());
+		assertEquals(types.length, tokens.size());
+		for (int i = 0; i < types.length; i++)
+			assertEquals(types[i], tokens.get(i).getType());
+		
+		// The characters in error are kept as the content of the token.
+		assertEquals("{", tokens.get(3).getContent());
+		assertEquals(9, tokens.get(3).getSourceColumn());
+		assertEquals("\"open", tokens.get(6).getContent());
+		assertEquals(2, tokens.get(6).getSourceLine());
+		assertEquals(6, tokens.get(6).getSourceColumn());
+		assertEquals("99999999999999999999", tokens.get(10).getContent());
+		assertEquals("\"bad\\q", tokens.get(15).getContent());
+		
+		String[] messages = { "unexpected {", "expected \"", "integer literal is too big", "unexpected ~", "unexpected escape characterq" };
+		int[] lines = { 1, 3, 3, 3, 4 };
+		int[] columns = { 10, 1, 5, 31, 7 };
+		assertEquals(messages.length, diag.size());
+		for (int i = 0; i < messages.length; i++) {
+			assertEquals("unitTest", diag.getSourceName(i));
+			assertEquals(messages[i], diag.getMessage(i));
+			assertEquals(lines[i], diag.getSourceLine(i));
+			assertEquals(columns[i], diag.getSourceColumn(i));
+		}
+		
+		// The same errors are found when lexing into a buffer.
+		Diagnostics bufferDiag = new Diagnostics();
+		TokenBuffer buffer = Lexer.tokenizeAll("unitTest", source, bufferDiag);
+		assertEquals(types.length, buffer.size());
+		for (int i = 0; i < types.length; i++) {
+			assertEquals(types[i], buffer.getType(i));
+			assertEquals(tokens.get(i).getContent(), buffer.getContent(i));
+		}
+		assertEquals(diag.size(), bufferDiag.size());
+		
+		// Errors come without a stack trace, whether they are collected or thrown.
+		SyntaxException e = diag.toException(1);
+		assertEquals("expected \"", e.getMessage());
+		assertEquals(0, e.getStackTrace().length);
+		e = assertThrows(SyntaxException.class, () -> lexOne("~"));
+		assertEquals(0, e.getStackTrace().length);
+		
+		diag.clear();
+		assertTrue(diag.isEmpty());
+		assertThrows(IndexOutOfBoundsException.class, () -> diag.getMessage(0));
+	}
+	
+	@Test
+	public void testCursor() throws SyntaxException {
+		SymbolTable table = new SymbolTable();
+		Lexer lexer = new Lexer(table);
+		assertThrows(IllegalOperationException.class, () -> lexer.advance());
+		
+		lexer.start("unitTest", "LET count = 42 + 1.5 + \"a\\tb\"");
+		assertThrows(IllegalOperationException.class, () -> lexer.getTokenType());
+		assertEquals(TokenType.LET, lexer.advance());
+		assertEquals(-1, lexer.getTokenSymbol());
+		assertEquals(TokenType.IDENTIFIER, lexer.advance());
+		assertEquals(table.lookup("count"), lexer.getTokenSymbol());
+		
+		// The same view is handed out for every token and moves along with the lexer.
+		CharSequence text = lexer.getTokenText();
+		assertEquals("count", text.toString());
+		assertEquals("ou", text.subSequence(1, 3).toString());
+		assertEquals(TokenType.EQUALS, lexer.advance());
+		assertEquals(TokenType.INT_LITERAL, lexer.advance());
+		assertSame(text, lexer.getTokenText());
+		assertEquals("42", text.toString());
+		assertEquals(42, lexer.getTokenIntValue());
+		assertThrows(IllegalOperationException.class, () -> lexer.getTokenRealValue());
+		
+		// The cursor and next() can be mixed.
+		assertEquals(TokenType.PLUS, lexer.next().getType());
+		assertEquals(TokenType.REAL_LITERAL, lexer.advance());
+		assertEquals(1.5, lexer.getTokenRealValue());
+		assertEquals(TokenType.PLUS, lexer.advance());
+		assertEquals(TokenType.STR_LITERAL, lexer.advance());
+		assertEquals("a\tb", lexer.getTokenText().toString());
+		assertEquals(TokenType.EOF, lexer.advance());
+		assertEquals("", lexer.getTokenText());
+		assertThrows(IllegalOperationException.class, () -> lexer.advance());
+	}
+	
+	@Test
+	public void testCharacterClasses() throws SyntaxException {
+		// ASCII has a few control characters that count as white space, and
+		// letters and digits outside of ASCII are still recognized.
+		Token[] expected = {
+				new Token(TokenType.IDENTIFIER, "unitTest", 1, 1, "\u00f1ame_2"),
+				new Token(TokenType.INT_LITERAL, "unitTest", 1, 8, "\u0661\u0662"),
+				new Token(TokenType.IDENTIFIER, "unitTest", 1, 12, "\u03b1\u0663"),
+				new Token(TokenType.EOF, "unitTest", 1, 14, "")
+		};
+		expect("\u00f1ame_2\u001f\u0661\u0662\u000b\u001c\u03b1\u0663", expected, false);
+		assertEquals(12, lexOne("\u0661\u0662").getIntValue());
+		assertThrows(SyntaxException.class, () -> lexOne("\u00a0"));
+	}
+	
+	@Test
+	public void testLongRuns() throws SyntaxException {
+		// Runs longer than any vector, with the interesting character landing
+		// at every position in one.
+		for (int n = 60; n < 140; n += 7) {
+			String indent = " \t".repeat(n / 2);
+			String name = "a_Z9".repeat(n / 4) + "\u00e9" + "x".repeat(n % 5);
+			String comment = "' " + "-".repeat(n) + " \"unclosed {";
+			String source = indent + name + comment + "\n" + indent + "\u000b" + indent + "END";
+			Token[] expected = {
+					new Token(TokenType.IDENTIFIER, "unitTest", 1, indent.length() + 1, name),
+					new Token(TokenType.NEW_LINE, "unitTest", 1, 1, "\n"),
+					new Token(TokenType.END, "unitTest", 2, indent.length() * 2 + 2, "END"),
+					new Token(TokenType.EOF, "unitTest", 2, indent.length() * 2 + 5, "")
+			};
+			expect(source, expected, false);
+		}
+	}
+	
+	@Test
+	public void testStatistics() throws Exception {
+		LexStatistics stats = new LexStatistics();
+		Lexer lexer = new Lexer(null, new Diagnostics());
+		lexer.setStatistics(stats);
+		
+		Path file = Files.createTempFile("jbasic", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("jbasic.Lex");
+			recording.start();
+			
+			for (int i = 0; i < 2; i++) {
+				lexer.start("unit" + i, "LET x = 1 + \"a\"\nIF TRUE THEN { ~\n");
+				while (lexer.isLexing())
+					lexer.advance();
+			}
+			// Units that are never finished are not counted.
+			lexer.start("unfinished", "LET y");
+			lexer.advance();
+			
+			recording.stop();
+			recording.dump(file);
+		}
+		
+		LexStatistics snapshot = stats.snapshot();
+		assertEquals(2, snapshot.getUnits());
+		assertEquals(2 * 33, snapshot.getCharacters());
+		assertEquals(2 * 14, snapshot.getTokenCount());
+		assertEquals(2, snapshot.getTokenCount(TokenType.LET));
+		assertEquals(4, snapshot.getTokenCount(TokenType.NEW_LINE));
+		assertEquals(4, snapshot.getTokenCount(TokenType.ERROR));
+		assertEquals(Long.valueOf(2), snapshot.getErrors().get("unexpected {"));
+		assertEquals(Long.valueOf(2), snapshot.getErrors().get("unexpected ~"));
+		assertTrue(snapshot.getMaxNanos() > 0);
+		assertTrue(snapshot.getNanos() >= snapshot.getMaxNanos());
+		
+		// The snapshot doesn't change as the lexer carries on.
+		while (lexer.isLexing())
+			lexer.advance();
+		assertEquals(2, snapshot.getUnits());
+		assertEquals(3, stats.getUnits());
+		stats.reset();
+		assertEquals(0, stats.getTokenCount());
+		
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		Files.delete(file);
+		assertEquals(2, events.size());
+		RecordedEvent event = events.get(1);
+		assertEquals("jbasic.Lex", event.getEventType().getName());
+		assertEquals("unit1", event.getString("source"));
+		assertEquals(33, event.getLong("characters"));
+		assertEquals(14, event.getLong("tokens"));
+		assertEquals(2, event.getLong("lines"));
+		assertEquals(1, event.getLong("identifiers"));
+		assertEquals(3, event.getLong("keywords"));
+		assertEquals(3, event.getLong("literals"));
+		assertEquals(2, event.getLong("operators"));
+		assertEquals(2, event.getLong("errors"));
+	}
 }
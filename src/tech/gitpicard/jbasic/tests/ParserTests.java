@@ -0,0 +1,292 @@
+package tech.gitpicard.jbasic.tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import tech.gitpicard.jbasic.Diagnostics;
+import tech.gitpicard.jbasic.SyntaxException;
+import tech.gitpicard.jbasic.parser.NodeKind;
+import tech.gitpicard.jbasic.parser.Parser;
+import tech.gitpicard.jbasic.parser.SymbolTable;
+import tech.gitpicard.jbasic.parser.SyntaxTree;
+import tech.gitpicard.jbasic.parser.TokenType;
+
+class ParserTests {
+	/**
+	 * Write a node and its children out as nested lists, such as
+	 * (BINARY + (NAME a) (LITERAL 1)).
+	 */
+	private static void dump(SyntaxTree tree, int node, StringBuilder out) {
+		out.append('(').append(tree.getKind(node));
+		if (tree.getToken(node) >= 0 && tree.getKind(node) != NodeKind.IF && tree.getKind(node) != NodeKind.PARAMETERS)
+			out.append(' ').append(tree.getContent(node));
+		for (int child = tree.getFirstChild(node); child >= 0; child = tree.getNextSibling(child)) {
+			out.append(' ');
+			dump(tree, child, out);
+		}
+		out.append(')');
+	}
+	
+	private static String parse(String source) throws SyntaxException {
+		return dump(new Parser().parse("unitTest", source));
+	}
+	
+	private static String dump(SyntaxTree tree) {
+		StringBuilder out = new StringBuilder();
+		for (int child = tree.getFirstChild(tree.getRoot()); child >= 0; child = tree.getNextSibling(child)) {
+			if (out.length() > 0)
+				out.append('\n');
+			dump(tree, child, out);
+		}
+		return out.toString();
+	}
+	
+	private static void expectError(String source, String message, int line, int column) {
+		SyntaxException e = assertThrows(SyntaxException.class, () -> new Parser().parse("unitTest", source));
+		assertEquals(message, e.getMessage());
+		assertEquals(line, e.getSourceLine());
+		assertEquals(column, e.getSourceColumn());
+	}
+	
+	@Test
+	public void testEmpty() throws SyntaxException {
+		assertEquals("", parse(""));
+		assertEquals("", parse("\n\n' just a comment\n"));
+	}
+	
+	@Test
+	public void testPrecedence() throws SyntaxException {
+		assertEquals("(LET LET (NAME x) (BINARY + (LITERAL 1) (BINARY * (LITERAL 2) (LITERAL 3))))", parse("LET x = 1 + 2 * 3"));
+		assertEquals("(LET LET (NAME x) (BINARY - (BINARY - (LITERAL 1) (LITERAL 2)) (LITERAL 3)))", parse("LET x = 1 - 2 - 3"));
+		assertEquals("(LET LET (NAME x) (BINARY * (BINARY + (LITERAL 1) (LITERAL 2)) (LITERAL 3)))", parse("LET x = (1 + 2) * 3"));
+		assertEquals("(LET LET (NAME x) (BINARY OR (BINARY AND (BINARY < (NAME a) (NAME b)) (UNARY NOT (BINARY = (NAME c) (LITERAL 1)))) (NAME d)))",
+				parse("LET x = a < b AND NOT c = 1 OR d"));
+		assertEquals("(LET LET (NAME x) (BINARY * (UNARY - (MEMBER b (NAME a))) (UNARY - (LITERAL 2.5))))", parse("LET x = -a.b * -2.5"));
+	}
+	
+	@Test
+	public void testPostfix() throws SyntaxException {
+		assertEquals("(CALL CALL (INVOCATION ( (MEMBER print (NAME io)) (LITERAL hi) (NAME x)))", parse("CALL io.print(\"hi\", x)"));
+		assertEquals("(CALL CALL (INVOCATION ( (INVOCATION ( (NAME f))))", parse("CALL f()()"));
+		assertEquals("(LET LET (MEMBER total (SELF SELF)) (NEW Point (LITERAL 1) (LITERAL TRUE)))", parse("LET SELF.total = NEW Point(1, TRUE)"));
+		assertEquals("(CALL CALL (INVOCATION ( (MEMBER init (SUPER SUPER))))", parse("CALL SUPER.init()"));
+		assertEquals("(IMPORT io)", parse("IMPORT \"io\""));
+	}
+	
+	@Test
+	public void testStatements() throws SyntaxException {
+		String source =
+				"IF x > 1 THEN\n" +
+				"\tLET y = 1\n" +
+				"ELSEIF x > 0 THEN\n" +
+				"\n" +
+				"ELSE\n" +
+				"\tLET y = 3\n" +
+				"END\n" +
+				"WHILE y < 10 DO\n" +
+				"\tLET y = y + 1\n" +
+				"\tCONTINUE\n" +
+				"END\n" +
+				"FOR item IN list DO\n" +
+				"\tBREAK\n" +
+				"END\n";
+		assertEquals(
+				"(IF (BINARY > (NAME x) (LITERAL 1)) (BLOCK (LET LET (NAME y) (LITERAL 1))) " +
+				"(IF (BINARY > (NAME x) (LITERAL 0)) (BLOCK) (BLOCK (LET LET (NAME y) (LITERAL 3)))))\n" +
+				"(WHILE WHILE (BINARY < (NAME y) (LITERAL 10)) (BLOCK (LET LET (NAME y) (BINARY + (NAME y) (LITERAL 1))) (CONTINUE CONTINUE)))\n" +
+				"(FOR FOR (NAME item) (NAME list) (BLOCK (BREAK BREAK)))",
+				parse(source));
+	}
+	
+	@Test
+	public void testFunctionsAndClasses() throws SyntaxException {
+		String source =
+				"FUNCTION add(a, b)\n" +
+				"\tRETURN a + b\n" +
+				"END\n" +
+				"CLASS Point EXTENDS Shape\n" +
+				"\tPRIVATE x = 0\n" +
+				"\ty\n" +
+				"\tPUBLIC FUNCTION clear()\n" +
+				"\t\tRETURN\n" +
+				"\tEND\n" +
+				"END";
+		assertEquals(
+				"(FUNCTION add (PARAMETERS (NAME a) (NAME b)) (BLOCK (RETURN RETURN (BINARY + (NAME a) (NAME b)))))\n" +
+				"(CLASS Point (NAME Shape) (FIELD x (LITERAL 0)) (FIELD y) (FUNCTION clear (PARAMETERS) (BLOCK (RETURN RETURN))))",
+				parse(source));
+		
+		SyntaxTree tree = new Parser(new SymbolTable()).parse("unitTest", source);
+		int point = tree.getChild(tree.getRoot(), 1);
+		assertEquals(TokenType.PRIVATE, tree.getModifier(tree.getChild(point, 1)));
+		assertNull(tree.getModifier(tree.getChild(point, 2)));
+		assertEquals(TokenType.PUBLIC, tree.getModifier(tree.getChild(point, 3)));
+		assertNull(tree.getModifier(tree.getChild(tree.getRoot(), 0)));
+		
+		// Names share symbols and nodes point back at their tokens.
+		int add = tree.getChild(tree.getRoot(), 0);
+		int a = tree.getChild(tree.getChild(add, 0), 0);
+		int sum = tree.getFirstChild(tree.getFirstChild(tree.getChild(add, 1)));
+		assertEquals(tree.getSymbol(a), tree.getSymbol(tree.getFirstChild(sum)));
+		assertNotEquals(-1, tree.getSymbol(a));
+		assertEquals(2, tree.getSourceLine(sum));
+		assertEquals(11, tree.getSourceColumn(sum));
+		assertEquals(3, tree.getChildCount(point) - 1);
+	}
+	
+	@Test
+	public void testLiteralValues() throws SyntaxException {
+		SyntaxTree tree = new Parser().parse("unitTest", "CALL f(42, 1.5, \"a\\tb\", NULL)");
+		int call = tree.getFirstChild(tree.getFirstChild(tree.getRoot()));
+		assertEquals(42, tree.getIntValue(tree.getChild(call, 1)));
+		assertEquals(1.5, tree.getRealValue(tree.getChild(call, 2)));
+		assertEquals("a\tb", tree.getContent(tree.getChild(call, 3)));
+		assertEquals(TokenType.NULL_LITERAL, tree.getTokenType(tree.getChild(call, 4)));
+	}
+	
+	@Test
+	public void testErrors() {
+		expectError("LET x = ", "expected an expression", 1, 9);
+		expectError("LET 1 = 2", "expected a variable", 1, 7);
+		expectError("CALL x", "expected a call", 1, 7);
+		expectError("IF x\nEND", "expected THEN", 1, 5);
+		expectError("WHILE x DO\n\tLET y = 1\n", "expected END", 3, 1);
+		expectError("FUNCTION f(a b)\nEND", "expected )", 1, 14);
+		expectError("LET x = 1 2", "expected a new line", 1, 11);
+		expectError("x = 1", "expected a statement", 1, 1);
+		expectError("CLASS A\n\tCALL f()\nEND", "expected a field or method", 2, 2);
+	}
+	
+	@Test
+	public void testRecovery() throws SyntaxException {
+		String source =
+				"LET x = \n" +
+				"IF x THEN oops\n" +
+				"\tLET y = 1 2\n" +
+				"END\n" +
+				"WHILE x DO\n" +
+				"\tELSE\n" +
+				"\tLET y = 2\n" +
+				"END\n" +
+				"CALL f(\"bad \\q\")\n" +
+				"FUNCTION g(a b)\n" +
+				"\tRETURN a +\n" +
+				"END\n" +
+				"CLASS A\n" +
+				"\t1\n" +
+				"\tPUBLIC b = 2\n" +
+				"END\n" +
+				"END\n" +
+				"IF y THEN\n" +
+				"\tLET z = {\n";
+		
+		// Every error is found in one go, lexer errors included, and none of
+		// them twice.
+		Diagnostics diag = new Diagnostics();
+		SyntaxTree tree = new Parser(null, diag).parse("unitTest", source);
+		String[] expected = {
+				"1:8 expected an expression",
+				"2:11 expected a new line",
+				"3:12 expected a new line",
+				"6:2 unexpected ELSE",
+				"9:15 unexpected escape characterq",
+				"10:1 expected \"",
+				"10:14 expected )",
+				"11:12 expected an expression",
+				"14:2 expected a field or method",
+				"17:1 unexpected END",
+				"19:11 unexpected {",
+				"20:1 expected END"
+		};
+		assertEquals(expected.length, diag.size());
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(expected[i], diag.getSourceLine(i) + ":" + diag.getSourceColumn(i) + " " + diag.getMessage(i));
+		
+		// Block statements with errors in them are still there, along with
+		// the good parts of their bodies.
+		StringBuilder kinds = new StringBuilder();
+		for (int child = tree.getFirstChild(tree.getRoot()); child >= 0; child = tree.getNextSibling(child))
+			kinds.append(tree.getKind(child)).append(' ');
+		assertEquals("ERROR IF WHILE ERROR FUNCTION CLASS ERROR IF ", kinds.toString());
+		int loop = tree.getChild(tree.getRoot(), 2);
+		int body = tree.getChild(loop, 1);
+		assertEquals(NodeKind.ERROR, tree.getKind(tree.getChild(body, 0)));
+		assertEquals(NodeKind.LET, tree.getKind(tree.getChild(body, 1)));
+		int point = tree.getChild(tree.getRoot(), 5);
+		assertEquals(NodeKind.FIELD, tree.getKind(tree.getChild(point, 1)));
+		assertEquals(TokenType.PUBLIC, tree.getModifier(tree.getChild(point, 1)));
+		
+		// Without diagnostics the first error is thrown.
+		expectError(source, "expected an expression", 1, 8);
+		assertSame(diag, new Parser(null, diag).getDiagnostics());
+	}
+	
+	@Test
+	public void testLazy() throws SyntaxException {
+		String source =
+				"FUNCTION f(a)\n" +
+				"\tIF a THEN\n" +
+				"\t\tWHILE a DO\n" +
+				"\t\t\tLET a = a - 1\n" +
+				"\t\tEND\n" +
+				"\tELSEIF a < 0 THEN\n" +
+				"\t\tFOR i IN a DO\n" +
+				"\t\tEND\n" +
+				"\tEND\n" +
+				"\tFUNCTION g()\n" +
+				"\t\tRETURN 2.5\n" +
+				"\tEND\n" +
+				"\tRETURN a\n" +
+				"END\n" +
+				"CLASS A\n" +
+				"\tFUNCTION m()\n" +
+				"\tEND\n" +
+				"END\n" +
+				"CALL f(1)";
+		SymbolTable symbols = new SymbolTable();
+		Parser parser = new Parser(symbols);
+		parser.setLazy(true);
+		assertTrue(parser.isLazy());
+		SyntaxTree tree = parser.parse("unitTest", source);
+		
+		// The bodies are skipped to their own END.
+		int f = tree.getChild(tree.getRoot(), 0);
+		int m = tree.getChild(tree.getChild(tree.getRoot(), 1), 0);
+		assertEquals(NodeKind.UNPARSED, tree.getKind(tree.getChild(f, 1)));
+		assertEquals(NodeKind.UNPARSED, tree.getKind(tree.getChild(m, 1)));
+		assertEquals(NodeKind.CALL, tree.getKind(tree.getChild(tree.getRoot(), 2)));
+		
+		// Once parsed, the tree is the same as one that was parsed all at once.
+		int body = tree.getBody(f);
+		assertEquals(body, tree.getBody(f));
+		assertEquals(body, tree.getChild(f, 1));
+		int g = tree.getChild(body, 1);
+		assertEquals(NodeKind.UNPARSED, tree.getKind(tree.getChild(g, 1)));
+		tree.getBody(g);
+		tree.getBody(m);
+		assertEquals(parse(source), dump(tree));
+		assertEquals(2.5, tree.getRealValue(tree.getFirstChild(tree.getFirstChild(tree.getBody(g)))));
+		int a = tree.getFirstChild(tree.getChild(body, 2));
+		assertEquals(tree.getSymbol(tree.getFirstChild(tree.getFirstChild(f))), tree.getSymbol(a));
+		assertEquals(13, tree.getSourceLine(a));
+		
+		// Literals in a body have the values the lexer gave them, even when
+		// they are written with digits that aren't ASCII.
+		tree = parser.parse("unitTest", "FUNCTION h()\n\tRETURN \u0664\u0662 + \u0661.\u0665\nEND");
+		int sum = tree.getFirstChild(tree.getFirstChild(tree.getBody(tree.getFirstChild(tree.getRoot()))));
+		assertEquals(42, tree.getIntValue(tree.getFirstChild(sum)));
+		assertEquals(1.5, tree.getRealValue(tree.getChild(sum, 1)));
+		
+		// Syntax errors in a body are found when it is parsed.
+		parser = new Parser();
+		parser.setLazy(true);
+		tree = parser.parse("unitTest", "FUNCTION f()\n\tLET x = \nEND\n");
+		SyntaxTree lazy = tree;
+		SyntaxException e = assertThrows(SyntaxException.class, () -> lazy.getBody(lazy.getFirstChild(lazy.getRoot())));
+		assertEquals("expected an expression", e.getMessage());
+		assertEquals(2, e.getSourceLine());
+		assertEquals(9, e.getSourceColumn());
+		expectError("FUNCTION f()\n\tIF x THEN\nEND", "expected END", 3, 4);
+	}
+}
@@ -0,0 +1,135 @@
+package tech.gitpicard.jbasic.tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import tech.gitpicard.jbasic.IllegalOperationException;
+import tech.gitpicard.jbasic.SyntaxException;
+import tech.gitpicard.jbasic.interpreter.Resolver;
+import tech.gitpicard.jbasic.interpreter.Scopes;
+import tech.gitpicard.jbasic.parser.NodeKind;
+import tech.gitpicard.jbasic.parser.Parser;
+import tech.gitpicard.jbasic.parser.SyntaxTree;
+
+class ResolverTests {
+	private static final String SOURCE =
+			"IMPORT \"io\"\n" +
+			"LET total = 0\n" +
+			"FUNCTION counter(start)\n" +
+			"\tLET n = start\n" +
+			"\tFUNCTION next()\n" +
+			"\t\tLET n = n + 1\n" +
+			"\t\tRETURN n\n" +
+			"\tEND\n" +
+			"\tFOR i IN io.range(3) DO\n" +
+			"\t\tLET total = total + i\n" +
+			"\tEND\n" +
+			"\tIF n > 0 THEN\n" +
+			"\t\tLET a = 1\n" +
+			"\tELSE\n" +
+			"\t\tLET b = 2\n" +
+			"\tEND\n" +
+			"\tRETURN next\n" +
+			"END\n" +
+			"CLASS Counter\n" +
+			"\tcount = total\n" +
+			"\tFUNCTION add()\n" +
+			"\t\tLET SELF.count = SELF.count + 1\n" +
+			"\t\tRETURN NEW Counter()\n" +
+			"\tEND\n" +
+			"END";
+	
+	/**
+	 * Write where every bound node with a name is, in the order they are in
+	 * the source code, as gN for a global or depth:slot for a local.
+	 */
+	private static String bindings(Scopes scopes, String name) {
+		SyntaxTree tree = scopes.getTree();
+		ArrayList<Integer> nodes = new ArrayList<>();
+		for (int node = 0; node < tree.size(); node++) {
+			if (scopes.isBound(node) && name.equals(tree.getContent(node)))
+				nodes.add(node);
+		}
+		nodes.sort((a, b) -> Integer.compare(tree.getToken(a), tree.getToken(b)));
+		
+		StringBuilder out = new StringBuilder();
+		for (int node : nodes) {
+			if (out.length() > 0)
+				out.append(' ');
+			if (scopes.isGlobal(node))
+				out.append('g').append(scopes.getGlobal(node));
+			else
+				out.append(scopes.getDepth(node)).append(':').append(scopes.getSlot(node));
+		}
+		return out.toString();
+	}
+	
+	private static void check(Scopes scopes) throws SyntaxException {
+		assertEquals("g0 g0", bindings(scopes, "io"));
+		// LET in a function gives it a local of its own.
+		assertEquals("g1 0:4 g1 g1", bindings(scopes, "total"));
+		assertEquals("g2", bindings(scopes, "counter"));
+		assertEquals("0:0 0:0", bindings(scopes, "start"));
+		assertEquals("0:1 1:1 1:1 1:1 0:1", bindings(scopes, "n"));
+		assertEquals("0:2 0:2", bindings(scopes, "next"));
+		assertEquals("0:3 0:3", bindings(scopes, "i"));
+		// The block is over, but the captured n keeps its slot.
+		assertEquals("0:3", bindings(scopes, "a"));
+		assertEquals("0:3", bindings(scopes, "b"));
+		assertEquals("g3 g3", bindings(scopes, "Counter"));
+		assertEquals("", bindings(scopes, "count"));
+		
+		SyntaxTree tree = scopes.getTree();
+		int counter = tree.getChild(tree.getRoot(), 2);
+		assertEquals(5, scopes.getFrameSize(counter));
+		int next = tree.getChild(tree.getBody(counter), 1);
+		assertEquals(NodeKind.FUNCTION, tree.getKind(next));
+		assertEquals(0, scopes.getFrameSize(next));
+		int n = tree.getFirstChild(tree.getFirstChild(tree.getBody(counter)));
+		assertTrue(scopes.isCaptured(n));
+		assertFalse(scopes.isCaptured(tree.getFirstChild(tree.getFirstChild(counter))));
+		assertEquals(4, scopes.getGlobalCount());
+		assertEquals("Counter", scopes.getGlobalName(3));
+	}
+	
+	private static void expectError(String source, String message, int line, int column) throws SyntaxException {
+		SyntaxTree tree = new Parser().parse("unitTest", source);
+		SyntaxException e = assertThrows(SyntaxException.class, () -> new Resolver().resolve(tree));
+		assertEquals(message, e.getMessage());
+		assertEquals(line, e.getSourceLine());
+		assertEquals(column, e.getSourceColumn());
+	}
+	
+	@Test
+	public void testResolve() throws SyntaxException {
+		Resolver resolver = new Resolver();
+		check(resolver.resolve(new Parser().parse("unitTest", SOURCE)));
+		
+		// Bodies that a lazy parser skipped are parsed on the way.
+		Parser parser = new Parser();
+		parser.setLazy(true);
+		check(resolver.resolve(parser.parse("unitTest", SOURCE)));
+		
+		// Names are found by symbol, so the tree has to have a symbol table.
+		SyntaxTree tree = new Parser(null).parse("unitTest", SOURCE);
+		assertThrows(IllegalOperationException.class, () -> resolver.resolve(tree));
+	}
+	
+	@Test
+	public void testErrors() throws SyntaxException {
+		expectError("BREAK", "BREAK outside of a loop", 1, 1);
+		expectError("WHILE x DO\n\tFUNCTION f()\n\t\tCONTINUE\n\tEND\nEND", "CONTINUE outside of a loop", 3, 3);
+		expectError("RETURN 1", "RETURN outside of a function", 1, 1);
+		expectError("FUNCTION f()\n\tRETURN SELF\nEND", "SELF outside of a method", 2, 9);
+		
+		// Every slot of a frame is taken, so the last local has nowhere to go.
+		StringBuilder source = new StringBuilder("FUNCTION f()\n");
+		for (int i = 0; i <= 65536; i++)
+			source.append("\tLET v").append(i).append(" = 0\n");
+		source.append("END");
+		expectError(source.toString(), "too many variables in a function", 65538, 6);
+	}
+}
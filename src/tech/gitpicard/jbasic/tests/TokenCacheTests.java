@@ -0,0 +1,126 @@
+package tech.gitpicard.jbasic.tests;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import tech.gitpicard.jbasic.Diagnostics;
+import tech.gitpicard.jbasic.IllegalOperationException;
+import tech.gitpicard.jbasic.SyntaxException;
+import tech.gitpicard.jbasic.parser.Lexer;
+import tech.gitpicard.jbasic.parser.TokenBuffer;
+import tech.gitpicard.jbasic.parser.TokenCache;
+import tech.gitpicard.jbasic.parser.TokenType;
+
+class TokenCacheTests {
+	private static Path[] files(TokenCache cache) throws Exception {
+		try (Stream<Path> files = Files.list(cache.getDirectory())) {
+			return files.sorted().toArray(Path[]::new);
+		}
+	}
+	
+	private static void clear(Path dir) throws Exception {
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path f : (Iterable<Path>)files::iterator)
+				Files.delete(f);
+		}
+		Files.delete(dir);
+	}
+	
+	private static void assertSameTokens(TokenBuffer expected, TokenBuffer actual) {
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.getSourceName(), actual.getSourceName());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getType(i), actual.getType(i));
+			assertEquals(expected.getStart(i), actual.getStart(i));
+			assertEquals(expected.getLength(i), actual.getLength(i));
+			assertEquals(expected.getSourceLine(i), actual.getSourceLine(i));
+			assertEquals(expected.getSourceColumn(i), actual.getSourceColumn(i));
+			assertEquals(expected.getContent(i), actual.getContent(i));
+			if (expected.getType(i) == TokenType.INT_LITERAL)
+				assertEquals(expected.getIntValue(i), actual.getIntValue(i));
+			else if (expected.getType(i) == TokenType.REAL_LITERAL)
+				assertEquals(expected.getRealValue(i), actual.getRealValue(i));
+		}
+	}
+	
+	@Test
+	public void testRoundTrip() throws Exception {
+		Path dir = Files.createTempDirectory("jbasic-cache");
+		try {
+			TokenCache cache = new TokenCache(dir, 1 << 20);
+			String source = "LET x = 1.5 + \"a\\tb\"\nIF x > 2 THEN\n\tCALL print(x) ' note\nEND\n";
+			TokenBuffer expected = Lexer.tokenizeAll("unitTest", source);
+			
+			assertNull(cache.load("unitTest", source));
+			assertSameTokens(expected, cache.tokenize("unitTest", source));
+			assertEquals(1, files(cache).length);
+			
+			// The second time the tokens come from the file.
+			TokenBuffer cached = cache.load("other", source);
+			assertNotNull(cached);
+			assertEquals("other", cached.getSourceName());
+			assertSameTokens(expected, cache.tokenize("unitTest", source));
+			assertEquals(1, files(cache).length);
+			
+			// Different source code is not found, and neither is a broken file.
+			assertNull(cache.load("unitTest", source + " "));
+			Files.write(files(cache)[0], new byte[] { 1, 2, 3 });
+			assertNull(cache.load("unitTest", source));
+			
+			// Nor is a file whose tokens don't fit the source code, such as one
+			// with a type that doesn't exist or a token past the end.
+			for (int at : new int[] { 28, 28 + ((expected.size() + 3) & ~3) + 3 }) {
+				cache.store(expected);
+				byte[] bytes = Files.readAllBytes(files(cache)[0]);
+				bytes[at] = 127;
+				Files.write(files(cache)[0], bytes);
+				assertNull(cache.load("unitTest", source));
+			}
+			
+			// Source code with errors isn't cached.
+			assertThrows(SyntaxException.class, () -> cache.tokenize("unitTest", "LET {"));
+			assertThrows(IllegalOperationException.class, () -> cache.store(expected.slice(0, 3)));
+			TokenBuffer errors = Lexer.tokenizeAll("unitTest", "LET {", new Diagnostics());
+			assertThrows(IllegalOperationException.class, () -> cache.store(errors));
+		}
+		finally {
+			clear(dir);
+		}
+	}
+	
+	@Test
+	public void testEviction() throws Exception {
+		Path dir = Files.createTempDirectory("jbasic-cache");
+		try {
+			// Each of these takes up 224 bytes.
+			TokenCache cache = new TokenCache(dir, 500);
+			String[] sources = { "LET a = 1 + 2 + 3\n", "LET b = 1 + 2 + 3\n", "LET c = 1 + 2 + 3\n" };
+			cache.tokenize("a", sources[0]);
+			cache.tokenize("b", sources[1]);
+			Path[] before = files(cache);
+			assertEquals(2, before.length);
+			
+			// Make the first one look old, then use it so it is new again.
+			for (Path f : before)
+				Files.setLastModifiedTime(f, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+			Files.setLastModifiedTime(before[0], FileTime.fromMillis(System.currentTimeMillis() - 120000));
+			assertNotNull(cache.load("a", sources[0]));
+			
+			// Adding a third pushes out the one used least recently.
+			cache.tokenize("c", sources[2]);
+			assertEquals(2, files(cache).length);
+			assertNotNull(cache.load("a", sources[0]));
+			assertNull(cache.load("b", sources[1]));
+			assertNotNull(cache.load("c", sources[2]));
+		}
+		finally {
+			clear(dir);
+		}
+	}
+}